@@ -0,0 +1,220 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Internal class that writes arbitrary beans and records straight to a {@link JsonSink}, without building an
+ * intermediate {@link JsonObject}. Serializers are created once per class and cached.
+ *
+ * Beans are written through their public fields and public {@code getXyz}/{@code isXyz} methods, records through
+ * their component accessors. Classes of the JDK are never treated as beans, as their getters expose implementation
+ * state rather than a JSON form; a {@link JsonSerializer} can be registered for them instead.
+ */
+final class BeanSerializer {
+	private static final ClassValue<BeanSerializer> SERIALIZERS = new ClassValue<BeanSerializer>() {
+		@Override
+		protected BeanSerializer computeValue(Class<?> type) {
+			return new BeanSerializer(type);
+		}
+	};
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	/**
+	 * How deeply beans may nest inside one another before writing fails.
+	 */
+	static final int MAX_DEPTH = 256;
+
+	/**
+	 * The beans being written on each thread, to detect cycles.
+	 */
+	private static final ThreadLocal<Map<Object, Boolean>> WRITING = ThreadLocal.withInitial(IdentityHashMap::new);
+
+	private static final String[] JDK_PACKAGES = { "java.", "javax.", "jdk.", "sun.", "com.sun." };
+
+	private final Property[] properties;
+
+	private BeanSerializer(Class<?> type) {
+		this.properties = introspect(type);
+	}
+
+	/**
+	 * Returns the serializer for the given class, or null if the class exposes no readable properties.
+	 */
+	static BeanSerializer of(Class<?> type) {
+		String name = type.getName();
+		for (String prefix : JDK_PACKAGES)
+			if (name.startsWith(prefix))
+				return null;
+		BeanSerializer serializer = SERIALIZERS.get(type);
+		return serializer.properties.length == 0 ? null : serializer;
+	}
+
+	/**
+	 * Writes the bean as a JSON object, prefixed with the key if it is non-null.
+	 *
+	 * @throws JsonWriterException
+	 *             if the bean contains itself, or beans nest more than {@link #MAX_DEPTH} deep.
+	 */
+	void write(JsonSink<?> sink, String key, Object bean) {
+		Map<Object, Boolean> writing = WRITING.get();
+		if (writing.size() >= MAX_DEPTH)
+			throw new JsonWriterException("Beans nested more than " + MAX_DEPTH + " deep");
+		if (writing.put(bean, Boolean.TRUE) != null)
+			throw new JsonWriterException("Cycle detected while writing " + bean.getClass().getName());
+		try {
+			if (key == null)
+				sink.object();
+			else
+				sink.object(key);
+			for (Property p : properties)
+				p.write(sink, bean);
+		} catch (JsonWriterException | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new JsonWriterException(t);
+		} finally {
+			writing.remove(bean);
+		}
+		sink.end();
+	}
+
+	/**
+	 * A readable property, accessed through a getter or field {@link MethodHandle} typed as {@code (Object)V}.
+	 * Primitive properties are written without boxing, and the name is written as a pre-encoded {@link JsonKey}.
+	 */
+	private abstract static class Property {
+		final JsonKey key;
+		final MethodHandle getter;
+
+		Property(String name, MethodHandle getter) {
+			this.key = JsonKey.of(name);
+			this.getter = getter;
+		}
+
+		abstract void write(JsonSink<?> sink, Object bean) throws Throwable;
+
+		static Property create(String name, MethodHandle getter) {
+			Class<?> c = getter.type().returnType();
+			if (c == int.class) {
+				return new Property(name, getter.asType(MethodType.methodType(int.class, Object.class))) {
+					@Override
+					void write(JsonSink<?> sink, Object bean) throws Throwable {
+						sink.value(this.key, (int) this.getter.invokeExact(bean));
+					}
+				};
+			}
+			if (c == long.class) {
+				return new Property(name, getter.asType(MethodType.methodType(long.class, Object.class))) {
+					@Override
+					void write(JsonSink<?> sink, Object bean) throws Throwable {
+						sink.value(this.key, (long) this.getter.invokeExact(bean));
+					}
+				};
+			}
+			if (c == double.class) {
+				return new Property(name, getter.asType(MethodType.methodType(double.class, Object.class))) {
+					@Override
+					void write(JsonSink<?> sink, Object bean) throws Throwable {
+						sink.value(this.key, (double) this.getter.invokeExact(bean));
+					}
+				};
+			}
+			if (c == boolean.class) {
+				return new Property(name, getter.asType(MethodType.methodType(boolean.class, Object.class))) {
+					@Override
+					void write(JsonSink<?> sink, Object bean) throws Throwable {
+						sink.value(this.key, (boolean) this.getter.invokeExact(bean));
+					}
+				};
+			}
+			if (c == String.class) {
+				return new Property(name, getter.asType(MethodType.methodType(String.class, Object.class))) {
+					@Override
+					void write(JsonSink<?> sink, Object bean) throws Throwable {
+						sink.value(this.key, (String) this.getter.invokeExact(bean));
+					}
+				};
+			}
+			return new Property(name, getter.asType(MethodType.methodType(Object.class, Object.class))) {
+				@Override
+				void write(JsonSink<?> sink, Object bean) throws Throwable {
+					sink.value(this.key, (Object) this.getter.invokeExact(bean));
+				}
+			};
+		}
+	}
+
+	private static Property[] introspect(Class<?> c) {
+		try {
+			Map<String, MethodHandle> getters = new LinkedHashMap<>();
+			if (Introspection.isRecord(c)) {
+				for (Method m : Introspection.recordAccessors(c))
+					getters.put(m.getName(), LOOKUP.unreflect(Introspection.accessible(m)));
+			} else if (!c.isAnonymousClass() && !c.isSynthetic()) {
+				for (Field f : c.getFields()) {
+					int mod = f.getModifiers();
+					if (!Modifier.isStatic(mod) && !Modifier.isTransient(mod))
+						getters.put(f.getName(), LOOKUP.unreflectGetter(Introspection.accessible(f)));
+				}
+				// getMethods() has no stable order, so getters are written sorted by name
+				Method[] methods = c.getMethods();
+				Arrays.sort(methods, Comparator.comparing(Method::getName));
+				for (Method m : methods) {
+					String name = getterName(m);
+					if (name != null)
+						getters.put(name, LOOKUP.unreflect(Introspection.accessible(m)));
+				}
+			}
+
+			List<Property> properties = new ArrayList<>();
+			for (Map.Entry<String, MethodHandle> e : getters.entrySet())
+				properties.add(Property.create(e.getKey(), e.getValue()));
+			return properties.toArray(new Property[0]);
+		} catch (ReflectiveOperationException e) {
+			throw new JsonWriterException(e);
+		}
+	}
+
+	/**
+	 * Returns the property name for a bean getter, or null if the method isn't one.
+	 */
+	private static String getterName(Method m) {
+		if (Modifier.isStatic(m.getModifiers()) || m.getParameterCount() != 0 || m.isBridge()
+				|| m.getDeclaringClass() == Object.class || m.getReturnType() == void.class)
+			return null;
+		String name = m.getName();
+		if (name.length() > 3 && name.startsWith("get"))
+			return Introspection.decapitalize(name.substring(3));
+		if (name.length() > 2 && name.startsWith("is") && m.getReturnType() == boolean.class)
+			return Introspection.decapitalize(name.substring(2));
+		return null;
+	}
+}
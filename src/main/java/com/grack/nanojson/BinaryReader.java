@@ -0,0 +1,490 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.function.Function;
+
+/**
+ * Internal class that implements the pull API of {@link JsonReader} for binary formats, tracking the structure of the
+ * input and buffering it from an {@link InputStream}. Users only see the public subclasses, {@link CborReader} and
+ * {@link MessagePackReader}, which decode each item into the current value.
+ */
+abstract class BinaryReader implements Closeable {
+	static final int KIND_LONG = 0;
+	static final int KIND_FLOAT = 1;
+	static final int KIND_DOUBLE = 2;
+	static final int KIND_BIG = 3;
+
+	private static final int INITIAL_DEPTH = 16;
+
+	private InputStream in;
+	private final byte[] buffer;
+	private int position;
+	private int limit;
+	private long consumed;
+
+	// The current value, as decoded by readItem()
+	protected JsonReader.Type type;
+	protected int kind;
+	protected long integer;
+	protected double floating;
+	protected Number big;
+	protected boolean bool;
+	protected byte[] text = new byte[JsonWriterBase.BUFFER_SIZE];
+	protected int textLength;
+	protected boolean binary;
+	protected long size;
+	protected boolean unentered;
+
+	/**
+	 * True while the items read are being skipped, so strings need not be copied.
+	 */
+	protected boolean skipping;
+
+	private String key;
+	private long[] remaining = new long[INITIAL_DEPTH];
+	private final BitSet states = new BitSet();
+	private int depth;
+	private boolean inObject;
+
+	BinaryReader(InputStream in, byte[] buffer, int limit) {
+		this.in = in;
+		this.buffer = buffer;
+		this.limit = limit;
+	}
+
+	/**
+	 * Reads the head of the next item into the current value and, for anything but an array or object, its contents.
+	 * An array or object sets {@link #size}, or -1 for an indefinite length, and {@link #unentered}.
+	 */
+	abstract void readItem() throws JsonParserException;
+
+	/**
+	 * Consumes the end of an array or object of indefinite length if it is next.
+	 */
+	boolean atBreak() throws JsonParserException {
+		return false;
+	}
+
+	/**
+	 * Returns to the array or object structure above the current one, and advances to the next key or value.
+	 */
+	public boolean pop() throws JsonParserException {
+		// CHECKSTYLE_OFF: EmptyStatement
+		while (next())
+			;
+		// CHECKSTYLE_ON: EmptyStatement
+		return depth > 0 && next();
+	}
+
+	/**
+	 * Returns the current type of the value.
+	 */
+	public JsonReader.Type current() throws JsonParserException {
+		if (type == null)
+			throw error("No current value");
+		return type;
+	}
+
+	/**
+	 * Starts reading an object at the current value.
+	 */
+	public void object() throws JsonParserException {
+		if (type != JsonReader.Type.OBJECT || !unentered)
+			throw error("Expected an object");
+		enter(true);
+	}
+
+	/**
+	 * Reads the key for the object at the current value. Does not advance to the next value.
+	 */
+	public String key() throws JsonParserException {
+		if (!inObject)
+			throw error("Not reading an object");
+		return key;
+	}
+
+	/**
+	 * Starts reading an array at the current value.
+	 */
+	public void array() throws JsonParserException {
+		if (type != JsonReader.Type.ARRAY || !unentered)
+			throw error("Expected an array");
+		enter(false);
+	}
+
+	/**
+	 * Returns the current value.
+	 */
+	public Object value() throws JsonParserException {
+		if (type == null)
+			throw error("No current value");
+		switch (type) {
+			case BOOLEAN:
+				return bool;
+			case NULL:
+				return null;
+			case NUMBER:
+				return number();
+			case STRING:
+				return string();
+			default:
+				throw error("Expected a value, was " + type);
+		}
+	}
+
+	//@formatter:off
+	/**
+	 * Copies the current value, including all of the contents of an object or array, to a {@link JsonSink}, leaving
+	 * the reader as if the value had been read. Positioned at the root, this copies the whole document.
+	 *
+	 * <pre>
+	 * try (CborReader reader = CborReader.from(in)) {
+	 *     reader.transferTo(JsonWriter.on(out)).done();
+	 * }
+	 * </pre>
+	 *
+	 * Binary values are written as strings in unpadded base64url, as {@link #string()} returns them.
+	 */
+	//@formatter:on
+	public <T extends JsonSink<T>> T transferTo(T sink) throws JsonParserException {
+		return transferTo(sink, null);
+	}
+
+	/**
+	 * Copies the current value to a {@link JsonSink} like {@link #transferTo(JsonSink)}, passing each object key
+	 * through a function that returns the key to write, or null to drop the member and its value.
+	 */
+	public <T extends JsonSink<T>> T transferTo(T sink, Function<String, String> keys) throws JsonParserException {
+		transfer(sink, keys);
+		return sink;
+	}
+
+	private void transfer(JsonSink<?> sink, Function<String, String> keys) throws JsonParserException {
+		switch (current()) {
+			case OBJECT:
+				object();
+				sink.object();
+				while (next()) {
+					String k = keys == null ? key : keys.apply(key);
+					if (k == null) {
+						skipValue();
+						continue;
+					}
+					sink.key(k);
+					transfer(sink, keys);
+				}
+				sink.end();
+				break;
+			case ARRAY:
+				array();
+				sink.array();
+				while (next())
+					transfer(sink, keys);
+				sink.end();
+				break;
+			case STRING:
+				sink.value(string());
+				break;
+			case NUMBER:
+				sink.value(number());
+				break;
+			case BOOLEAN:
+				sink.value(bool);
+				break;
+			default:
+				sink.nul();
+				break;
+		}
+	}
+
+	/**
+	 * Skips the current value, including all of the contents of an object or array.
+	 */
+	void skipValue() throws JsonParserException {
+		if (unentered)
+			skipContents(type == JsonReader.Type.OBJECT, size);
+	}
+
+	/**
+	 * Parses the current value as a null.
+	 */
+	public void nul() throws JsonParserException {
+		if (type != JsonReader.Type.NULL)
+			throw error("Expected null");
+	}
+
+	/**
+	 * Parses the current value as a string. Binary values are returned in unpadded base64url.
+	 */
+	public String string() throws JsonParserException {
+		if (type == JsonReader.Type.NULL)
+			return null;
+		if (type != JsonReader.Type.STRING)
+			throw error("Expected a string");
+		if (binary)
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(text, textLength));
+		return new String(text, 0, textLength, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Parses the current value as a boolean.
+	 */
+	public boolean bool() throws JsonParserException {
+		if (type != JsonReader.Type.BOOLEAN)
+			throw error("Expected a boolean");
+		return bool;
+	}
+
+	/**
+	 * Parses the current value as a {@link Number}.
+	 */
+	public Number number() throws JsonParserException {
+		if (type == JsonReader.Type.NULL)
+			return null;
+		expectNumber();
+		switch (kind) {
+			case KIND_LONG:
+				return (int) integer == integer ? (Number) (int) integer : (Number) integer;
+			case KIND_FLOAT:
+				return (float) floating;
+			case KIND_DOUBLE:
+				return floating;
+			default:
+				return big;
+		}
+	}
+
+	/**
+	 * Parses the current value as a long.
+	 */
+	public long longVal() throws JsonParserException {
+		expectNumber();
+		return kind == KIND_LONG ? integer : number().longValue();
+	}
+
+	/**
+	 * Parses the current value as an integer.
+	 */
+	public int intVal() throws JsonParserException {
+		expectNumber();
+		return kind == KIND_LONG ? (int) integer : number().intValue();
+	}
+
+	/**
+	 * Parses the current value as a float.
+	 */
+	public float floatVal() throws JsonParserException {
+		return (float) doubleVal();
+	}
+
+	/**
+	 * Parses the current value as a double.
+	 */
+	public double doubleVal() throws JsonParserException {
+		expectNumber();
+		if (kind == KIND_LONG)
+			return integer;
+		return kind == KIND_BIG ? big.doubleValue() : floating;
+	}
+
+	/**
+	 * Advance to the next value in this array or object. An array or object that was not started with
+	 * {@link #array()} or {@link #object()} is skipped. If no values remain, return to the parent array or object.
+	 *
+	 * @return true if we still have values to read in this array or object, false if we have completed this object
+	 *         (and implicitly moved back to the parent array or object)
+	 */
+	public boolean next() throws JsonParserException {
+		if (depth == 0)
+			throw error("Unable to call next() at the root");
+		if (unentered)
+			skipContents(type == JsonReader.Type.OBJECT, size);
+		unentered = false;
+
+		long left = remaining[depth - 1];
+		if (left == 0 || left < 0 && atBreak()) {
+			depth--;
+			inObject = states.get(depth);
+			type = null;
+			return false;
+		}
+		if (left > 0)
+			remaining[depth - 1] = left - 1;
+		if (inObject) {
+			readItem();
+			if (type != JsonReader.Type.STRING || binary)
+				throw error("Object keys must be text strings");
+			key = new String(text, 0, textLength, StandardCharsets.UTF_8);
+		}
+		readItem();
+		return true;
+	}
+
+	/**
+	 * Releases resources used by this reader. Should be called when done reading.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (in != null) {
+			in.close();
+			in = null;
+		}
+	}
+
+	private void enter(boolean object) {
+		if (depth == remaining.length)
+			remaining = Arrays.copyOf(remaining, depth * 2);
+		remaining[depth] = size;
+		states.set(depth, inObject);
+		depth++;
+		inObject = object;
+		unentered = false;
+	}
+
+	private void expectNumber() throws JsonParserException {
+		if (type != JsonReader.Type.NUMBER)
+			throw error("Expected a number");
+	}
+
+	/**
+	 * Skips the items of an array or object whose head has been read, given its size or -1 for an indefinite length.
+	 */
+	private void skipContents(boolean object, long count) throws JsonParserException {
+		int items = object ? 2 : 1;
+		boolean nested = skipping;
+		skipping = true;
+		try {
+			for (long i = 0; count < 0 ? !atBreak() : i < count; i++) {
+				for (int j = 0; j < items; j++) {
+					readItem();
+					if (unentered)
+						skipContents(type == JsonReader.Type.OBJECT, size);
+				}
+			}
+		} finally {
+			skipping = nested;
+		}
+		unentered = false;
+	}
+
+	/**
+	 * Appends the given number of bytes to the text buffer.
+	 */
+	void readChunk(long length) throws JsonParserException {
+		if (length < 0 || length > Integer.MAX_VALUE - textLength)
+			throw error("Unsupported string length");
+		int end = textLength + (int) length;
+		if (end > text.length)
+			text = Arrays.copyOf(text, Math.max(end, (int) Math.min(Integer.MAX_VALUE, text.length * 2L)));
+		while (textLength < end) {
+			if (position == limit && !fill())
+				throw error("Unexpected end of input");
+			int n = Math.min(end - textLength, limit - position);
+			System.arraycopy(buffer, position, text, textLength, n);
+			position += n;
+			textLength += n;
+		}
+	}
+
+	/**
+	 * Steps over the given number of bytes.
+	 */
+	void skip(long length) throws JsonParserException {
+		for (long left = length; left > 0;) {
+			if (position == limit && !fill())
+				throw error("Unexpected end of input");
+			int n = (int) Math.min(left, limit - position);
+			position += n;
+			left -= n;
+		}
+	}
+
+	/**
+	 * Reads a big-endian value of the given width.
+	 */
+	long fixed(int bytes) throws JsonParserException {
+		long v = 0;
+		for (int i = 0; i < bytes; i++)
+			v = v << 8 | readByte();
+		return v;
+	}
+
+	int readByte() throws JsonParserException {
+		if (position == limit && !fill())
+			throw error("Unexpected end of input");
+		return buffer[position++] & 0xff;
+	}
+
+	/**
+	 * Returns the next byte without consuming it.
+	 */
+	int peekByte() throws JsonParserException {
+		if (position == limit && !fill())
+			throw error("Unexpected end of input");
+		return buffer[position] & 0xff;
+	}
+
+	/**
+	 * Steps back over the byte just read, so that an error points at it.
+	 */
+	void unread() {
+		position--;
+	}
+
+	private boolean fill() throws JsonParserException {
+		if (in == null)
+			return false;
+		consumed += limit;
+		position = 0;
+		limit = 0;
+		try {
+			int n = in.read(buffer);
+			if (n <= 0)
+				return false;
+			limit = n;
+			return true;
+		} catch (IOException e) {
+			throw new JsonParserException(e, "IOException", 1, (int) consumed + 1, (int) consumed);
+		}
+	}
+
+	/**
+	 * The number of elements or entries of the array or object at the current value.
+	 */
+	long size() {
+		return size;
+	}
+
+	/**
+	 * Returns true if nothing follows the current value.
+	 */
+	boolean atEnd() throws JsonParserException {
+		return position == limit && !fill();
+	}
+
+	JsonParserException error(String message) {
+		int offset = (int) (consumed + position);
+		return new JsonParserException(null, message + " at offset " + offset, 1, offset + 1, offset);
+	}
+}
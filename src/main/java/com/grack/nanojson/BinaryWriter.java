@@ -0,0 +1,560 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Internal class that implements the {@link JsonSink} API for binary formats, tracking the structure of the output
+ * and buffering it for an {@link OutputStream}. Users only see the public subclasses, {@link CborWriter} and
+ * {@link MessagePackWriter}, which encode the items.
+ *
+ * @param <SELF>
+ *            A subclass of {@link BinaryWriter}.
+ */
+abstract class BinaryWriter<SELF extends BinaryWriter<SELF>> implements JsonSink<SELF> {
+	private final OutputStream out;
+	private final String format;
+	protected byte[] buffer = new byte[JsonWriterBase.BUFFER_SIZE];
+	protected int position;
+	private final BitSet states = new BitSet();
+	private int stateIndex;
+	private boolean inObject;
+	private boolean first = true;
+	private String pendingKey;
+
+	BinaryWriter(OutputStream out, String format) {
+		this.out = out;
+		this.format = format;
+	}
+
+	/**
+	 * Writes a null.
+	 */
+	abstract void nullValue();
+
+	/**
+	 * Writes a boolean.
+	 */
+	abstract void booleanValue(boolean b);
+
+	/**
+	 * Writes an integer in its shortest form.
+	 */
+	abstract void integer(long l);
+
+	/**
+	 * Writes a float in single precision.
+	 */
+	abstract void floating(float f);
+
+	/**
+	 * Writes a double in double precision.
+	 */
+	abstract void floating(double d);
+
+	/**
+	 * Writes any other {@link Number}.
+	 */
+	abstract void number(Number n);
+
+	/**
+	 * Writes a text string.
+	 */
+	abstract void text(String s);
+
+	/**
+	 * Writes the head of the array or object at the given depth, given its size or -1 if it is not yet known.
+	 */
+	abstract void startHead(int depth, boolean object, int size);
+
+	/**
+	 * Completes the array or object at the given depth.
+	 */
+	abstract void endHead(int depth);
+
+	/**
+	 * Called as each element or entry is added to the array or object at the given depth.
+	 */
+	void element(int depth) {
+	}
+
+	/**
+	 * Makes room for n bytes in the buffer.
+	 */
+	void ensure(int n) {
+		if (buffer.length - position < n)
+			flush();
+	}
+
+	/**
+	 * This is guaranteed to be safe as the type of "this" will always be the type of "SELF".
+	 */
+	@SuppressWarnings("unchecked")
+	private SELF castThis() {
+		return (SELF) this;
+	}
+
+	/**
+	 * Ensures that every array and object has been ended, then flushes the output.
+	 *
+	 * @throws JsonWriterException
+	 *             if the output is unbalanced or nothing was written, or the stream fails.
+	 */
+	public void done() {
+		if (stateIndex > 0)
+			throw new JsonWriterException("Unclosed objects and/or arrays when closing writer");
+		if (first)
+			throw new JsonWriterException("Nothing was written to the " + format + " writer");
+		flush();
+		try {
+			out.flush();
+		} catch (IOException e) {
+			throw new JsonWriterException(e);
+		}
+	}
+
+	@Override
+	public SELF array(Collection<?> c) {
+		return array(null, c);
+	}
+
+	@Override
+	public SELF array(String key, Collection<?> c) {
+		start(key, false, c.size());
+		for (Object o : c)
+			value(o);
+		return end();
+	}
+
+	@Override
+	public SELF object(Map<?, ?> map) {
+		return object(null, map);
+	}
+
+	@Override
+	public SELF object(String key, Map<?, ?> map) {
+		start(key, true, map.size());
+		for (Map.Entry<?, ?> entry : map.entrySet()) {
+			if (!(entry.getKey() instanceof String))
+				throw new JsonWriterException("Invalid key type for map: "
+						+ (entry.getKey() == null ? "null" : entry.getKey().getClass()));
+			value((String) entry.getKey(), entry.getValue());
+		}
+		return end();
+	}
+
+	@Override
+	public SELF nul() {
+		preValue();
+		nullValue();
+		return castThis();
+	}
+
+	@Override
+	public SELF nul(String key) {
+		return key(key).nul();
+	}
+
+	@Override
+	public SELF value(Object o) {
+		if (o == null)
+			return nul();
+		ValueDispatch dispatch = ValueDispatch.of(o.getClass());
+		switch (dispatch.kind) {
+			case ValueDispatch.STRING:
+				return value((String) o);
+			case ValueDispatch.LAZY_STRING:
+				return value(o.toString());
+			case ValueDispatch.RAW:
+				try {
+					return value(JsonParser.any().from(o.toString()));
+				} catch (JsonParserException e) {
+					throw new JsonWriterException(e);
+				}
+			case ValueDispatch.NUMBER:
+				return value((Number) o);
+			case ValueDispatch.BOOLEAN:
+				return value((boolean) (Boolean) o);
+			case ValueDispatch.COLLECTION:
+				return array((Collection<?>) o);
+			case ValueDispatch.NUMERIC_ARRAY:
+				return numbers((NumericJsonArray) o);
+			case ValueDispatch.MAP:
+				return object((Map<?, ?>) o);
+			case ValueDispatch.INT_ARRAY:
+				return value((int[]) o);
+			case ValueDispatch.LONG_ARRAY:
+				return value((long[]) o);
+			case ValueDispatch.DOUBLE_ARRAY:
+				return value((double[]) o);
+			case ValueDispatch.FLOAT_ARRAY:
+				float[] floats = (float[]) o;
+				start(null, false, floats.length);
+				for (float f : floats)
+					floating(f);
+				return end();
+			case ValueDispatch.BOOLEAN_ARRAY:
+				boolean[] booleans = (boolean[]) o;
+				start(null, false, booleans.length);
+				for (boolean b : booleans)
+					booleanValue(b);
+				return end();
+			case ValueDispatch.ARRAY:
+				int length = Array.getLength(o);
+				start(null, false, length);
+				for (int i = 0; i < length; i++)
+					value(Array.get(o, i));
+				return end();
+			case ValueDispatch.CONVERTIBLE:
+				return value(((JsonConvertible) o).toJsonValue());
+			case ValueDispatch.ENUM:
+				return value(((Enum<?>) o).name());
+			case ValueDispatch.SERIALIZER:
+				dispatch.serializer.write(this, o);
+				return castThis();
+			case ValueDispatch.BEAN:
+				dispatch.bean.write(this, null, o);
+				return castThis();
+			default:
+				throw new JsonWriterException("Unable to handle type: " + o.getClass());
+		}
+	}
+
+	@Override
+	public SELF value(String key, Object o) {
+		return key(key).value(o);
+	}
+
+	@Override
+	public SELF value(String s) {
+		if (s == null)
+			return nul();
+		preValue();
+		text(s);
+		return castThis();
+	}
+
+	@Override
+	public SELF value(int i) {
+		preValue();
+		integer(i);
+		return castThis();
+	}
+
+	@Override
+	public SELF value(long l) {
+		preValue();
+		integer(l);
+		return castThis();
+	}
+
+	@Override
+	public SELF value(boolean b) {
+		preValue();
+		booleanValue(b);
+		return castThis();
+	}
+
+	@Override
+	public SELF value(double d) {
+		preValue();
+		floating(d);
+		return castThis();
+	}
+
+	@Override
+	public SELF value(float f) {
+		preValue();
+		floating(f);
+		return castThis();
+	}
+
+	@Override
+	public SELF value(Number n) {
+		if (n == null)
+			return nul();
+		preValue();
+		number(n);
+		return castThis();
+	}
+
+	@Override
+	public SELF value(int[] values) {
+		if (values == null)
+			return nul();
+		start(null, false, values.length);
+		for (int v : values)
+			integer(v);
+		return end();
+	}
+
+	@Override
+	public SELF value(long[] values) {
+		if (values == null)
+			return nul();
+		start(null, false, values.length);
+		for (long v : values)
+			integer(v);
+		return end();
+	}
+
+	@Override
+	public SELF value(double[] values) {
+		if (values == null)
+			return nul();
+		start(null, false, values.length);
+		for (double v : values)
+			floating(v);
+		return end();
+	}
+
+	@Override
+	public SELF value(String key, String s) {
+		return key(key).value(s);
+	}
+
+	@Override
+	public SELF value(String key, int i) {
+		return key(key).value(i);
+	}
+
+	@Override
+	public SELF value(String key, long l) {
+		return key(key).value(l);
+	}
+
+	@Override
+	public SELF value(String key, boolean b) {
+		return key(key).value(b);
+	}
+
+	@Override
+	public SELF value(String key, double d) {
+		return key(key).value(d);
+	}
+
+	@Override
+	public SELF value(String key, float f) {
+		return key(key).value(f);
+	}
+
+	@Override
+	public SELF value(String key, Number n) {
+		return key(key).value(n);
+	}
+
+	@Override
+	public SELF value(String key, int[] values) {
+		return key(key).value(values);
+	}
+
+	@Override
+	public SELF value(String key, long[] values) {
+		return key(key).value(values);
+	}
+
+	@Override
+	public SELF value(String key, double[] values) {
+		return key(key).value(values);
+	}
+
+	@Override
+	public SELF array() {
+		return start(null, false, -1);
+	}
+
+	@Override
+	public SELF object() {
+		return start(null, true, -1);
+	}
+
+	@Override
+	public SELF array(String key) {
+		return start(key, false, -1);
+	}
+
+	@Override
+	public SELF object(String key) {
+		return start(key, true, -1);
+	}
+
+	@Override
+	public SELF end() {
+		if (stateIndex == 0)
+			throw new JsonWriterException("Invalid call to end()");
+		stateIndex--;
+		endHead(stateIndex);
+		inObject = states.get(stateIndex);
+		return castThis();
+	}
+
+	@Override
+	public SELF key(String key) {
+		if (key == null)
+			throw new NullPointerException("key");
+		if (pendingKey != null)
+			throw new JsonWriterException("Invalid call to emit a key immediately after emitting a key");
+		pendingKey = key;
+		return castThis();
+	}
+
+	/**
+	 * Starts an array or object, with its size up front or, given a negative size, one left for {@link #end()}.
+	 */
+	private SELF start(String key, boolean object, int size) {
+		if (key == null)
+			preValue();
+		else
+			preValue(key);
+		startHead(stateIndex, object, size);
+		states.set(stateIndex, inObject);
+		stateIndex++;
+		inObject = object;
+		return castThis();
+	}
+
+	/**
+	 * Writes the elements of a parsed numeric array straight from its primitive storage.
+	 */
+	private SELF numbers(NumericJsonArray array) {
+		if (array.ints() != null)
+			return value(array.ints());
+		if (array.longs() != null)
+			return value(array.longs());
+		if (array.doubles() != null)
+			return value(array.doubles());
+		return array((Collection<?>) array);
+	}
+
+	private void pre() {
+		if (stateIndex == 0) {
+			if (!first)
+				throw new JsonWriterException("Invalid call to emit a value in a finished " + format + " writer");
+			first = false;
+		} else {
+			element(stateIndex - 1);
+		}
+	}
+
+	private void preValue() {
+		if (pendingKey != null) {
+			String key = pendingKey;
+			pendingKey = null;
+			preValue(key);
+			return;
+		}
+		if (inObject)
+			throw new JsonWriterException("Invalid call to emit a keyless value while writing an object");
+		pre();
+	}
+
+	private void preValue(String key) {
+		if (!inObject)
+			throw new JsonWriterException("Invalid call to emit a key value while not writing an object");
+		if (pendingKey != null)
+			throw new JsonWriterException("Invalid call to emit a key value immediately after emitting a key");
+		pre();
+		text(key);
+	}
+
+	/**
+	 * The UTF-8 length of a string, rejecting unpaired surrogates like the JSON writers.
+	 */
+	static int utf8Length(String s) {
+		int length = s.length();
+		int n = 0;
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				n++;
+			} else if (c < 0x800) {
+				n += 2;
+			} else if (Character.isHighSurrogate(c)) {
+				if (i + 1 >= length)
+					throw new JsonWriterException("Invalid high surrogate at end of string");
+				if (!Character.isLowSurrogate(s.charAt(++i)))
+					throw new JsonWriterException("Invalid surrogate pair: high surrogate not followed by low surrogate");
+				n += 4;
+			} else if (Character.isLowSurrogate(c)) {
+				throw new JsonWriterException("Invalid low surrogate without preceding high surrogate");
+			} else {
+				n += 3;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Writes a string, whose length has been checked with {@link #utf8Length(String)}, as UTF-8, making room as it
+	 * goes so that long strings need no more than the buffer.
+	 */
+	void utf8(String s) {
+		int length = s.length();
+		for (int i = 0; i < length; i++) {
+			if (buffer.length - position < 4)
+				ensure(4);
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				buffer[position++] = (byte) c;
+			} else if (c < 0x800) {
+				buffer[position++] = (byte) (0xc0 | c >> 6);
+				buffer[position++] = (byte) (0x80 | c & 0x3f);
+			} else if (Character.isHighSurrogate(c)) {
+				int cp = Character.toCodePoint(c, s.charAt(++i));
+				buffer[position++] = (byte) (0xf0 | cp >> 18);
+				buffer[position++] = (byte) (0x80 | cp >> 12 & 0x3f);
+				buffer[position++] = (byte) (0x80 | cp >> 6 & 0x3f);
+				buffer[position++] = (byte) (0x80 | cp & 0x3f);
+			} else {
+				buffer[position++] = (byte) (0xe0 | c >> 12);
+				buffer[position++] = (byte) (0x80 | c >> 6 & 0x3f);
+				buffer[position++] = (byte) (0x80 | c & 0x3f);
+			}
+		}
+	}
+
+	/**
+	 * Writes bytes through the buffer, or straight to the output if they do not fit once it has been flushed.
+	 */
+	void write(byte[] b, int offset, int length) {
+		ensure(length);
+		if (length > buffer.length - position) {
+			try {
+				out.write(b, offset, length);
+			} catch (IOException e) {
+				throw new JsonWriterException(e);
+			}
+		} else {
+			System.arraycopy(b, offset, buffer, position, length);
+			position += length;
+		}
+	}
+
+	void flush() {
+		try {
+			out.write(buffer, 0, position);
+			position = 0;
+		} catch (IOException e) {
+			throw new JsonWriterException(e);
+		}
+	}
+}
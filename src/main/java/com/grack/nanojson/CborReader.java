@@ -0,0 +1,232 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Streaming reader for CBOR (RFC 8949) documents, with the pull API of {@link JsonReader}. Reads the output of
+ * {@link CborWriter}, and any other CBOR whose map keys are text strings.
+ *
+ * Integers are returned as {@link Integer} or {@link Long}, or {@link BigInteger} beyond 64 bits, floats as
+ * {@link Float} or {@link Double} and decimal fractions as {@link BigDecimal}. Byte strings are read as strings in
+ * unpadded base64url, as RFC 8949 suggests for converting to JSON, undefined is read as null and other tags are
+ * ignored in favour of the values they wrap.
+ *
+ * A {@link CborReader} is not a {@link JsonReader}, so it cannot be handed to {@link JsonBinder},
+ * {@link JsonColumns} or {@link JsonPathScanner}. To use those on CBOR input, or to convert it to JSON, copy it with
+ * {@link #transferTo(JsonSink)}.
+ */
+public final class CborReader extends BinaryReader {
+	private CborReader(InputStream in, byte[] buffer, int limit) throws JsonParserException {
+		super(in, buffer, limit);
+		readItem();
+	}
+
+	/**
+	 * Create a {@link CborReader} from an {@link InputStream}.
+	 */
+	public static CborReader from(InputStream in) throws JsonParserException {
+		return new CborReader(in, new byte[JsonWriterBase.BUFFER_SIZE], 0);
+	}
+
+	/**
+	 * Create a {@link CborReader} from a byte array.
+	 */
+	public static CborReader from(byte[] bytes) throws JsonParserException {
+		return new CborReader(null, bytes, bytes.length);
+	}
+
+	/**
+	 * Reads the head of the next item and, for anything but an array or object, its contents.
+	 */
+	@Override
+	void readItem() throws JsonParserException {
+		int initial = readByte();
+		int major = initial & CborWriter.SIMPLE;
+		int info = initial & CborWriter.INDEFINITE;
+		unentered = false;
+		switch (major) {
+			case CborWriter.UNSIGNED:
+				type = JsonReader.Type.NUMBER;
+				integer(false, argument(info));
+				break;
+			case CborWriter.NEGATIVE:
+				type = JsonReader.Type.NUMBER;
+				integer(true, argument(info));
+				break;
+			case CborWriter.BYTES:
+			case CborWriter.TEXT:
+				type = JsonReader.Type.STRING;
+				binary = major == CborWriter.BYTES;
+				readString(major, info);
+				break;
+			case CborWriter.ARRAY:
+			case CborWriter.MAP:
+				type = major == CborWriter.MAP ? JsonReader.Type.OBJECT : JsonReader.Type.ARRAY;
+				size = info == CborWriter.INDEFINITE ? -1 : argument(info);
+				if (info != CborWriter.INDEFINITE && size < 0)
+					throw error("Unsupported size");
+				unentered = true;
+				break;
+			case CborWriter.TAG:
+				tagged(argument(info));
+				break;
+			default:
+				simple(initial);
+				break;
+		}
+	}
+
+	private void integer(boolean negative, long arg) {
+		kind = KIND_LONG;
+		if (arg >= 0) {
+			integer = negative ? -1 - arg : arg;
+			return;
+		}
+		// The argument is unsigned, and beyond the range of a long
+		BigInteger magnitude = BigInteger.valueOf(arg & Long.MAX_VALUE).setBit(Long.SIZE - 1);
+		kind = KIND_BIG;
+		big = negative ? magnitude.not() : magnitude;
+	}
+
+	/**
+	 * Reads the item wrapped by a tag, interpreting bignums and decimal fractions.
+	 */
+	private void tagged(long tag) throws JsonParserException {
+		readItem();
+		if (tag == CborWriter.TAG_POSITIVE_BIGNUM || tag == CborWriter.TAG_NEGATIVE_BIGNUM) {
+			if (type != JsonReader.Type.STRING || !binary)
+				throw error("Expected a byte string for a bignum");
+			BigInteger magnitude = new BigInteger(1, Arrays.copyOf(text, textLength));
+			type = JsonReader.Type.NUMBER;
+			kind = KIND_BIG;
+			big = tag == CborWriter.TAG_NEGATIVE_BIGNUM ? magnitude.not() : magnitude;
+		} else if (tag == CborWriter.TAG_DECIMAL_FRACTION) {
+			if (type != JsonReader.Type.ARRAY || size != 2)
+				throw error("Expected an array of two integers for a decimal fraction");
+			readItem();
+			if (type != JsonReader.Type.NUMBER || kind != KIND_LONG || (int) integer != integer)
+				throw error("Invalid exponent for a decimal fraction");
+			int exponent = (int) integer;
+			readItem();
+			if (type != JsonReader.Type.NUMBER || kind != KIND_LONG && kind != KIND_BIG)
+				throw error("Invalid mantissa for a decimal fraction");
+			BigInteger mantissa = kind == KIND_LONG ? BigInteger.valueOf(integer) : (BigInteger) big;
+			kind = KIND_BIG;
+			big = new BigDecimal(mantissa, -exponent);
+		}
+	}
+
+	private void simple(int initial) throws JsonParserException {
+		switch (initial) {
+			case CborWriter.FALSE:
+			case CborWriter.TRUE:
+				type = JsonReader.Type.BOOLEAN;
+				bool = initial == CborWriter.TRUE;
+				break;
+			case CborWriter.NULL:
+			case CborWriter.UNDEFINED:
+				type = JsonReader.Type.NULL;
+				break;
+			case CborWriter.HALF:
+				type = JsonReader.Type.NUMBER;
+				kind = KIND_FLOAT;
+				floating = half((int) fixed(2));
+				break;
+			case CborWriter.FLOAT:
+				type = JsonReader.Type.NUMBER;
+				kind = KIND_FLOAT;
+				floating = Float.intBitsToFloat((int) fixed(4));
+				break;
+			case CborWriter.DOUBLE:
+				type = JsonReader.Type.NUMBER;
+				kind = KIND_DOUBLE;
+				floating = Double.longBitsToDouble(fixed(8));
+				break;
+			case CborWriter.BREAK:
+				unread();
+				throw error("Unexpected break");
+			default:
+				unread();
+				throw error("Unsupported simple value " + initial);
+		}
+	}
+
+	private static float half(int bits) {
+		int exponent = bits >> 10 & 0x1f;
+		int mantissa = bits & 0x3ff;
+		float value;
+		if (exponent == 0)
+			value = Math.scalb((float) mantissa, -24);
+		else if (exponent == 0x1f)
+			value = mantissa == 0 ? Float.POSITIVE_INFINITY : Float.NaN;
+		else
+			value = Math.scalb((float) (mantissa | 0x400), exponent - 25);
+		return (bits & 0x8000) != 0 ? -value : value;
+	}
+
+	/**
+	 * Reads the argument of an item head, which is unsigned and so negative if it is beyond the range of a long.
+	 */
+	private long argument(int info) throws JsonParserException {
+		if (info < 24)
+			return info;
+		switch (info) {
+			case 24:
+				return fixed(1);
+			case 25:
+				return fixed(2);
+			case 26:
+				return fixed(4);
+			case 27:
+				return fixed(8);
+			default:
+				throw error("Invalid additional information " + info);
+		}
+	}
+
+	/**
+	 * Reads a byte or text string into the text buffer, joining the chunks of an indefinite-length string.
+	 */
+	private void readString(int major, int info) throws JsonParserException {
+		textLength = 0;
+		if (info != CborWriter.INDEFINITE) {
+			readChunk(argument(info));
+			return;
+		}
+		while (!atBreak()) {
+			int initial = readByte();
+			if ((initial & CborWriter.SIMPLE) != major || (initial & CborWriter.INDEFINITE) == CborWriter.INDEFINITE)
+				throw error("Invalid chunk in an indefinite-length string");
+			readChunk(argument(initial & CborWriter.INDEFINITE));
+		}
+	}
+
+	/**
+	 * Consumes a break if it is the next byte.
+	 */
+	@Override
+	boolean atBreak() throws JsonParserException {
+		if (peekByte() != CborWriter.BREAK)
+			return false;
+		readByte();
+		return true;
+	}
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.BitSet;
+
+//@formatter:off
+/**
+ * Writer that emits CBOR (RFC 8949) through the same {@link JsonSink} API as the JSON writers, so code written
+ * against one can switch formats without changes. Read the output with {@link CborReader}.
+ *
+ * <pre>
+ * OutputStream out = ...;
+ * CborWriter.on(out)
+ *     .object()
+ *         .array("a")
+ *             .value(1)
+ *             .value(2)
+ *         .end()
+ *         .value("b", false)
+ *     .end()
+ * .done();
+ * </pre>
+ *
+ * Arrays and objects started with {@link #array()} and {@link #object()} are written with indefinite lengths, while
+ * collections, maps and Java arrays are written with their sizes up front. Integers take the shortest form, floats
+ * and doubles keep their own precision so they read back as the same type, {@link BigInteger} values beyond 64 bits
+ * are written as bignums and {@link BigDecimal} values with a scale as decimal fractions. Unlike JSON text, NaN and
+ * the infinities are written as themselves rather than as null. {@link JsonRaw} fragments are parsed and re-encoded.
+ */
+//@formatter:on
+public final class CborWriter extends BinaryWriter<CborWriter> {
+	static final int UNSIGNED = 0x00;
+	static final int NEGATIVE = 0x20;
+	static final int BYTES = 0x40;
+	static final int TEXT = 0x60;
+	static final int ARRAY = 0x80;
+	static final int MAP = 0xa0;
+	static final int TAG = 0xc0;
+	static final int SIMPLE = 0xe0;
+	static final int INDEFINITE = 0x1f;
+	static final int FALSE = 0xf4;
+	static final int TRUE = 0xf5;
+	static final int NULL = 0xf6;
+	static final int UNDEFINED = 0xf7;
+	static final int HALF = 0xf9;
+	static final int FLOAT = 0xfa;
+	static final int DOUBLE = 0xfb;
+	static final int BREAK = 0xff;
+	static final int TAG_POSITIVE_BIGNUM = 2;
+	static final int TAG_NEGATIVE_BIGNUM = 3;
+	static final int TAG_DECIMAL_FRACTION = 4;
+
+	/**
+	 * Room for the longest item head: the initial byte and an eight-byte argument.
+	 */
+	private static final int MAX_HEAD = 9;
+
+	/**
+	 * Whether each open array or object was started with its size, or needs a break to end it.
+	 */
+	private final BitSet counted = new BitSet();
+
+	CborWriter(OutputStream out) {
+		super(out, "CBOR");
+	}
+
+	/**
+	 * Creates a writer that emits CBOR to an {@link OutputStream}. Call {@link #done()} when finished.
+	 */
+	public static CborWriter on(OutputStream out) {
+		if (out == null)
+			throw new NullPointerException("out");
+		return new CborWriter(out);
+	}
+
+	/**
+	 * Encodes a value as CBOR.
+	 *
+	 * @throws JsonWriterException
+	 *             if the value contains an unsupported type.
+	 */
+	public static byte[] bytes(Object value) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new CborWriter(bytes).value(value).done();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Writes the head of an array or object, with an indefinite length that {@link #end()} terminates if its size is
+	 * not known.
+	 */
+	@Override
+	void startHead(int depth, boolean object, int size) {
+		if (size < 0)
+			simple((object ? MAP : ARRAY) | INDEFINITE);
+		else
+			head(object ? MAP : ARRAY, size);
+		counted.set(depth, size >= 0);
+	}
+
+	@Override
+	void endHead(int depth) {
+		if (!counted.get(depth))
+			simple(BREAK);
+	}
+
+	@Override
+	void nullValue() {
+		simple(NULL);
+	}
+
+	@Override
+	void booleanValue(boolean b) {
+		simple(b ? TRUE : FALSE);
+	}
+
+	@Override
+	void number(Number n) {
+		if (n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte) {
+			integer(n.longValue());
+		} else if (n instanceof Float) {
+			floating(n.floatValue());
+		} else if (n instanceof Double) {
+			floating(n.doubleValue());
+		} else if (n instanceof JsonLazyNumber) {
+			JsonLazyNumber lazy = (JsonLazyNumber) n;
+			if (lazy.isDouble())
+				floating(lazy.doubleValue());
+			else if (lazy.chars().length <= JsonReader.MAX_EXACT_LONG_CHARS)
+				integer(lazy.longValue());
+			else
+				bigInteger(new BigInteger(lazy.toString()));
+		} else if (n instanceof BigInteger) {
+			bigInteger((BigInteger) n);
+		} else if (n instanceof BigDecimal) {
+			decimal((BigDecimal) n);
+		} else {
+			String text = n.toString();
+			if (text.indexOf('.') >= 0 || text.indexOf('e') >= 0 || text.indexOf('E') >= 0)
+				decimal(new BigDecimal(text));
+			else
+				bigInteger(new BigInteger(text));
+		}
+	}
+
+	@Override
+	void integer(long l) {
+		if (l >= 0)
+			head(UNSIGNED, l);
+		else
+			head(NEGATIVE, -1 - l);
+	}
+
+	/**
+	 * Writes an integer in a plain head if its magnitude fits in 64 bits, otherwise as a bignum.
+	 */
+	private void bigInteger(BigInteger b) {
+		boolean negative = b.signum() < 0;
+		// A negative n is encoded as -1 - n, which is its complement
+		BigInteger magnitude = negative ? b.not() : b;
+		if (magnitude.bitLength() <= Long.SIZE) {
+			head(negative ? NEGATIVE : UNSIGNED, magnitude.longValue());
+			return;
+		}
+		head(TAG, negative ? TAG_NEGATIVE_BIGNUM : TAG_POSITIVE_BIGNUM);
+		byte[] bytes = magnitude.toByteArray();
+		int offset = bytes[0] == 0 ? 1 : 0;
+		head(BYTES, bytes.length - offset);
+		write(bytes, offset, bytes.length - offset);
+	}
+
+	/**
+	 * Writes a decimal as a decimal fraction of its exponent and mantissa, or as an integer if it has no scale.
+	 */
+	private void decimal(BigDecimal d) {
+		if (d.scale() == 0) {
+			bigInteger(d.unscaledValue());
+			return;
+		}
+		head(TAG, TAG_DECIMAL_FRACTION);
+		head(ARRAY, 2);
+		integer(-(long) d.scale());
+		bigInteger(d.unscaledValue());
+	}
+
+	@Override
+	void floating(float f) {
+		ensure(MAX_HEAD);
+		buffer[position++] = (byte) FLOAT;
+		fixed(Float.floatToIntBits(f), Integer.BYTES);
+	}
+
+	@Override
+	void floating(double d) {
+		ensure(MAX_HEAD);
+		buffer[position++] = (byte) DOUBLE;
+		fixed(Double.doubleToLongBits(d), Long.BYTES);
+	}
+
+	/**
+	 * Writes a text string as UTF-8, flushing as it goes so that long strings need no more than the buffer.
+	 */
+	@Override
+	void text(String s) {
+		head(TEXT, utf8Length(s));
+		utf8(s);
+	}
+
+	/**
+	 * Writes an item head: the major type and the shortest encoding of its argument, taken as unsigned.
+	 */
+	private void head(int major, long arg) {
+		ensure(MAX_HEAD);
+		if (arg >= 0 && arg < 24) {
+			buffer[position++] = (byte) (major | arg);
+		} else if (arg >= 0 && arg < 0x100) {
+			buffer[position++] = (byte) (major | 24);
+			buffer[position++] = (byte) arg;
+		} else if (arg >= 0 && arg < 0x10000) {
+			buffer[position++] = (byte) (major | 25);
+			fixed(arg, Short.BYTES);
+		} else if (arg >= 0 && arg < 0x100000000L) {
+			buffer[position++] = (byte) (major | 26);
+			fixed(arg, Integer.BYTES);
+		} else {
+			buffer[position++] = (byte) (major | 27);
+			fixed(arg, Long.BYTES);
+		}
+	}
+
+	private void simple(int b) {
+		ensure(1);
+		buffer[position++] = (byte) b;
+	}
+
+	private void fixed(long bits, int bytes) {
+		for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8)
+			buffer[position++] = (byte) (bits >>> shift);
+	}
+}
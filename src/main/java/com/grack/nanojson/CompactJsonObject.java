@@ -0,0 +1,533 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Internal {@link JsonObject} that keeps its entries in insertion order in two parallel arrays instead of
+ * {@link java.util.LinkedHashMap} nodes. Small objects are searched linearly; larger ones add an open-addressed table
+ * of entry indexes. Every {@link Map} operation is overridden, so the inherited hash table is never allocated.
+ *
+ * Serializes as a plain {@link JsonObject}.
+ */
+final class CompactJsonObject extends JsonObject {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Objects up to this size are searched linearly.
+	 */
+	private static final int LINEAR_MAX = 8;
+	private static final int MIN_CAPACITY = 4;
+	private static final String[] NO_KEYS = {};
+	private static final Object[] NO_VALUES = {};
+
+	private transient String[] keys = NO_KEYS;
+	private transient Object[] values = NO_VALUES;
+	private transient int size;
+
+	/**
+	 * Open-addressed table of entry index + 1, with 0 marking a free slot. Null while the object is small.
+	 */
+	private transient int[] table;
+	private transient int mods;
+
+	CompactJsonObject() {
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) >= 0;
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		for (int i = 0; i < size; i++)
+			if (Objects.equals(values[i], value))
+				return true;
+		return false;
+	}
+
+	@Override
+	public Object get(Object key) {
+		int i = indexOf(key);
+		return i < 0 ? null : values[i];
+	}
+
+	@Override
+	public Object getOrDefault(Object key, Object defaultValue) {
+		int i = indexOf(key);
+		return i < 0 ? defaultValue : values[i];
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+		int i = indexOf(key);
+		if (i >= 0) {
+			Object old = values[i];
+			values[i] = value;
+			return old;
+		}
+		append(key, value);
+		return null;
+	}
+
+	@Override
+	public void putAll(Map<? extends String, ?> m) {
+		for (Map.Entry<? extends String, ?> e : m.entrySet())
+			put(e.getKey(), e.getValue());
+	}
+
+	@Override
+	public Object putIfAbsent(String key, Object value) {
+		int i = indexOf(key);
+		if (i < 0) {
+			append(key, value);
+			return null;
+		}
+		Object old = values[i];
+		if (old == null)
+			values[i] = value;
+		return old;
+	}
+
+	@Override
+	public Object remove(Object key) {
+		int i = indexOf(key);
+		return i < 0 ? null : removeAt(i);
+	}
+
+	@Override
+	public boolean remove(Object key, Object value) {
+		int i = indexOf(key);
+		if (i < 0 || !Objects.equals(values[i], value))
+			return false;
+		removeAt(i);
+		return true;
+	}
+
+	@Override
+	public Object replace(String key, Object value) {
+		int i = indexOf(key);
+		if (i < 0)
+			return null;
+		Object old = values[i];
+		values[i] = value;
+		return old;
+	}
+
+	@Override
+	public boolean replace(String key, Object oldValue, Object newValue) {
+		int i = indexOf(key);
+		if (i < 0 || !Objects.equals(values[i], oldValue))
+			return false;
+		values[i] = newValue;
+		return true;
+	}
+
+	@Override
+	public Object computeIfAbsent(String key, Function<? super String, ?> mappingFunction) {
+		Object old = get(key);
+		if (old != null)
+			return old;
+		Object value = mappingFunction.apply(key);
+		if (value != null)
+			put(key, value);
+		return value;
+	}
+
+	@Override
+	public Object computeIfPresent(String key, BiFunction<? super String, ? super Object, ?> remappingFunction) {
+		Object old = get(key);
+		if (old == null)
+			return null;
+		Object value = remappingFunction.apply(key, old);
+		if (value == null)
+			remove(key);
+		else
+			put(key, value);
+		return value;
+	}
+
+	@Override
+	public Object compute(String key, BiFunction<? super String, ? super Object, ?> remappingFunction) {
+		Object value = remappingFunction.apply(key, get(key));
+		if (value == null)
+			remove(key);
+		else
+			put(key, value);
+		return value;
+	}
+
+	@Override
+	public Object merge(String key, Object value, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+		Objects.requireNonNull(value);
+		Object old = get(key);
+		Object merged = old == null ? value : remappingFunction.apply(old, value);
+		if (merged == null)
+			remove(key);
+		else
+			put(key, merged);
+		return merged;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(keys, 0, size, null);
+		Arrays.fill(values, 0, size, null);
+		size = 0;
+		table = null;
+		mods++;
+	}
+
+	@Override
+	public void forEach(BiConsumer<? super String, ? super Object> action) {
+		int expected = mods;
+		for (int i = 0; i < size; i++) {
+			action.accept(keys[i], values[i]);
+			if (mods != expected)
+				throw new ConcurrentModificationException();
+		}
+	}
+
+	@Override
+	public void replaceAll(BiFunction<? super String, ? super Object, ?> function) {
+		int expected = mods;
+		for (int i = 0; i < size; i++) {
+			values[i] = function.apply(keys[i], values[i]);
+			if (mods != expected)
+				throw new ConcurrentModificationException();
+		}
+	}
+
+	@Override
+	public Set<String> keySet() {
+		return new AbstractSet<String>() {
+			@Override
+			public Iterator<String> iterator() {
+				return new Cursor<String>() {
+					@Override
+					String at(int i) {
+						return keys[i];
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return containsKey(o);
+			}
+
+			@Override
+			public boolean remove(Object o) {
+				int i = indexOf(o);
+				if (i < 0)
+					return false;
+				removeAt(i);
+				return true;
+			}
+
+			@Override
+			public void clear() {
+				CompactJsonObject.this.clear();
+			}
+		};
+	}
+
+	@Override
+	public Collection<Object> values() {
+		return new AbstractCollection<Object>() {
+			@Override
+			public Iterator<Object> iterator() {
+				return new Cursor<Object>() {
+					@Override
+					Object at(int i) {
+						return values[i];
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return containsValue(o);
+			}
+
+			@Override
+			public void clear() {
+				CompactJsonObject.this.clear();
+			}
+		};
+	}
+
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet() {
+		return new AbstractSet<Map.Entry<String, Object>>() {
+			@Override
+			public Iterator<Map.Entry<String, Object>> iterator() {
+				return new Cursor<Map.Entry<String, Object>>() {
+					@Override
+					Map.Entry<String, Object> at(int i) {
+						return new Entry(i);
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				if (!(o instanceof Map.Entry))
+					return false;
+				Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+				int i = indexOf(e.getKey());
+				return i >= 0 && Objects.equals(values[i], e.getValue());
+			}
+
+			@Override
+			public boolean remove(Object o) {
+				if (!(o instanceof Map.Entry))
+					return false;
+				Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+				return CompactJsonObject.this.remove(e.getKey(), e.getValue());
+			}
+
+			@Override
+			public void clear() {
+				CompactJsonObject.this.clear();
+			}
+		};
+	}
+
+	@Override
+	public Object clone() {
+		CompactJsonObject copy = new CompactJsonObject();
+		copy.keys = Arrays.copyOf(keys, size);
+		copy.values = Arrays.copyOf(values, size);
+		copy.size = size;
+		copy.table = table == null ? null : table.clone();
+		return copy;
+	}
+
+	/**
+	 * Trims the entry arrays to the number of entries, once the object is complete.
+	 */
+	void trimToSize() {
+		if (keys.length != size) {
+			keys = size == 0 ? NO_KEYS : Arrays.copyOf(keys, size);
+			values = size == 0 ? NO_VALUES : Arrays.copyOf(values, size);
+		}
+	}
+
+	private Object writeReplace() {
+		return new JsonObject(this);
+	}
+
+	private int indexOf(Object key) {
+		if (table == null) {
+			for (int i = 0; i < size; i++)
+				if (Objects.equals(keys[i], key))
+					return i;
+			return -1;
+		}
+		int mask = table.length - 1;
+		for (int slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+			int i = table[slot] - 1;
+			if (i < 0 || Objects.equals(keys[i], key))
+				return i;
+		}
+	}
+
+	private void append(String key, Object value) {
+		if (size == keys.length) {
+			int capacity = Math.max(MIN_CAPACITY, size + (size >> 1));
+			keys = Arrays.copyOf(keys, capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+		keys[size] = key;
+		values[size] = value;
+		size++;
+		mods++;
+		if (table != null && size * 2 <= table.length)
+			insert(table, size - 1);
+		else if (size > LINEAR_MAX)
+			rebuild();
+	}
+
+	private Object removeAt(int i) {
+		Object old = values[i];
+		int moved = size - i - 1;
+		System.arraycopy(keys, i + 1, keys, i, moved);
+		System.arraycopy(values, i + 1, values, i, moved);
+		size--;
+		keys[size] = null;
+		values[size] = null;
+		mods++;
+		if (size > LINEAR_MAX)
+			rebuild();
+		else
+			table = null;
+		return old;
+	}
+
+	/**
+	 * Rebuilds the index table at no more than half full.
+	 */
+	private void rebuild() {
+		int capacity = LINEAR_MAX * 2;
+		while (capacity < size * 2)
+			capacity <<= 1;
+		int[] t = new int[capacity];
+		for (int i = 0; i < size; i++)
+			insert(t, i);
+		table = t;
+	}
+
+	private void insert(int[] t, int i) {
+		int mask = t.length - 1;
+		int slot = hash(keys[i]) & mask;
+		while (t[slot] != 0)
+			slot = (slot + 1) & mask;
+		t[slot] = i + 1;
+	}
+
+	private static int hash(Object key) {
+		if (key == null)
+			return 0;
+		int h = key.hashCode();
+		// CHECKSTYLE_OFF: MagicNumber
+		return h ^ (h >>> 16);
+		// CHECKSTYLE_ON: MagicNumber
+	}
+
+	/**
+	 * Iterates the entries in order, failing fast on concurrent modification.
+	 */
+	private abstract class Cursor<T> implements Iterator<T> {
+		private int next;
+		private int last = -1;
+		private int expected = mods;
+
+		abstract T at(int i);
+
+		@Override
+		public boolean hasNext() {
+			return next < size;
+		}
+
+		@Override
+		public T next() {
+			if (mods != expected)
+				throw new ConcurrentModificationException();
+			if (next >= size)
+				throw new NoSuchElementException();
+			last = next++;
+			return at(last);
+		}
+
+		@Override
+		public void remove() {
+			if (last < 0)
+				throw new IllegalStateException();
+			if (mods != expected)
+				throw new ConcurrentModificationException();
+			removeAt(last);
+			next = last;
+			last = -1;
+			expected = mods;
+		}
+	}
+
+	/**
+	 * An entry that reads and writes through to the arrays.
+	 */
+	private final class Entry implements Map.Entry<String, Object> {
+		private final int index;
+
+		Entry(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public String getKey() {
+			return keys[index];
+		}
+
+		@Override
+		public Object getValue() {
+			return values[index];
+		}
+
+		@Override
+		public Object setValue(Object value) {
+			Object old = values[index];
+			values[index] = value;
+			return old;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Map.Entry))
+				return false;
+			Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+			return Objects.equals(getKey(), e.getKey()) && Objects.equals(getValue(), e.getValue());
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
+		}
+
+		@Override
+		public String toString() {
+			return getKey() + "=" + getValue();
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Internal, unmodifiable {@link JsonArray}, the counterpart of {@link FrozenJsonObject} for documents that are shared
+ * between readers. Every modification, including those made through iterators and sublists, throws
+ * {@link UnsupportedOperationException}.
+ *
+ * Serializes as a plain, modifiable {@link JsonArray}.
+ */
+final class FrozenJsonArray extends JsonArray {
+	private static final long serialVersionUID = 1L;
+
+	FrozenJsonArray(Collection<?> elements) {
+		super(elements);
+	}
+
+	/**
+	 * Returns a frozen copy with one element replaced.
+	 */
+	@Override
+	public JsonArray with(int index, Object value) {
+		Objects.checkIndex(index, size());
+		Object[] elements = toArray();
+		elements[index] = value;
+		return new FrozenJsonArray(Arrays.asList(elements));
+	}
+
+	@Override
+	public List<Object> subList(int fromIndex, int toIndex) {
+		return Collections.unmodifiableList(super.subList(fromIndex, toIndex));
+	}
+
+	private Object writeReplace() {
+		return new JsonArray(this);
+	}
+
+	// Every modification is refused. The iterators of ArrayList modify it through these methods.
+
+	@Override
+	public boolean add(Object e) {
+		throw frozen();
+	}
+
+	@Override
+	public void add(int index, Object element) {
+		throw frozen();
+	}
+
+	@Override
+	public boolean addAll(Collection<?> c) {
+		throw frozen();
+	}
+
+	@Override
+	public boolean addAll(int index, Collection<?> c) {
+		throw frozen();
+	}
+
+	@Override
+	public Object set(int index, Object element) {
+		throw frozen();
+	}
+
+	@Override
+	public Object remove(int index) {
+		throw frozen();
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		throw frozen();
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		throw frozen();
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		throw frozen();
+	}
+
+	@Override
+	public boolean removeIf(Predicate<? super Object> filter) {
+		throw frozen();
+	}
+
+	@Override
+	public void replaceAll(UnaryOperator<Object> operator) {
+		throw frozen();
+	}
+
+	@Override
+	public void sort(Comparator<? super Object> c) {
+		throw frozen();
+	}
+
+	@Override
+	public void clear() {
+		throw frozen();
+	}
+
+	private static UnsupportedOperationException frozen() {
+		return new UnsupportedOperationException("Frozen JsonArray cannot be modified");
+	}
+}
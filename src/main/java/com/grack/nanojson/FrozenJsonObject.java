@@ -0,0 +1,295 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Internal, unmodifiable {@link JsonObject} that holds only its values, in the order of the keys of a {@link Shape}
+ * shared with every other object of the same layout. Every {@link Map} operation is overridden, so the inherited hash
+ * table is never allocated, and every modification throws {@link UnsupportedOperationException}.
+ *
+ * Serializes as a plain, modifiable {@link JsonObject}.
+ */
+final class FrozenJsonObject extends JsonObject {
+	private static final long serialVersionUID = 1L;
+
+	private final transient Shape shape;
+	private final transient Object[] values;
+
+	FrozenJsonObject(Shape shape, Object[] values) {
+		this.shape = shape;
+		this.values = values;
+	}
+
+	/**
+	 * The layout of the keys, shared with other objects.
+	 */
+	Shape shape() {
+		return shape;
+	}
+
+	@Override
+	public int size() {
+		return values.length;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return values.length == 0;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return shape.indexOf(key) >= 0;
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		for (Object v : values)
+			if (value == null ? v == null : value.equals(v))
+				return true;
+		return false;
+	}
+
+	@Override
+	public Object get(Object key) {
+		int i = shape.indexOf(key);
+		return i < 0 ? null : values[i];
+	}
+
+	@Override
+	public Object getOrDefault(Object key, Object defaultValue) {
+		int i = shape.indexOf(key);
+		return i < 0 ? defaultValue : values[i];
+	}
+
+	@Override
+	public void forEach(BiConsumer<? super String, ? super Object> action) {
+		for (int i = 0; i < values.length; i++)
+			action.accept(shape.key(i), values[i]);
+	}
+
+	@Override
+	public Set<String> keySet() {
+		return new AbstractSet<String>() {
+			@Override
+			public Iterator<String> iterator() {
+				return new Cursor<String>() {
+					@Override
+					String at(int i) {
+						return shape.key(i);
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return values.length;
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return containsKey(o);
+			}
+		};
+	}
+
+	@Override
+	public Collection<Object> values() {
+		return new AbstractCollection<Object>() {
+			@Override
+			public Iterator<Object> iterator() {
+				return new Cursor<Object>() {
+					@Override
+					Object at(int i) {
+						return values[i];
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return values.length;
+			}
+		};
+	}
+
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet() {
+		return new AbstractSet<Map.Entry<String, Object>>() {
+			@Override
+			public Iterator<Map.Entry<String, Object>> iterator() {
+				return new Cursor<Map.Entry<String, Object>>() {
+					@Override
+					Map.Entry<String, Object> at(int i) {
+						return new AbstractMap.SimpleImmutableEntry<>(shape.key(i), values[i]);
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return values.length;
+			}
+		};
+	}
+
+	/**
+	 * Returns a frozen copy with the key set, sharing this shape if the key is already present.
+	 */
+	@Override
+	public JsonObject with(String key, Object value) {
+		int i = shape.indexOf(key);
+		if (i >= 0) {
+			Object[] v = values.clone();
+			v[i] = value;
+			return new FrozenJsonObject(shape, v);
+		}
+		Object[] v = Arrays.copyOf(values, values.length + 1);
+		v[values.length] = value;
+		return new FrozenJsonObject(shape.plus(key), v);
+	}
+
+	/**
+	 * Returns a frozen copy without the key, or this object if it has no such key, as it cannot change.
+	 */
+	@Override
+	public JsonObject without(String key) {
+		int i = shape.indexOf(key);
+		if (i < 0)
+			return this;
+		Object[] v = new Object[values.length - 1];
+		System.arraycopy(values, 0, v, 0, i);
+		System.arraycopy(values, i + 1, v, i, v.length - i);
+		return new FrozenJsonObject(shape.minus(i), v);
+	}
+
+	/**
+	 * Frozen objects are immutable, so a clone shares the values.
+	 */
+	@Override
+	public Object clone() {
+		return new FrozenJsonObject(shape, values);
+	}
+
+	private Object writeReplace() {
+		return new JsonObject(this);
+	}
+
+	// Every modification is refused
+
+	@Override
+	public Object put(String key, Object value) {
+		throw frozen();
+	}
+
+	@Override
+	public void putAll(Map<? extends String, ?> m) {
+		throw frozen();
+	}
+
+	@Override
+	public Object putIfAbsent(String key, Object value) {
+		throw frozen();
+	}
+
+	@Override
+	public Object remove(Object key) {
+		throw frozen();
+	}
+
+	@Override
+	public boolean remove(Object key, Object value) {
+		throw frozen();
+	}
+
+	@Override
+	public Object replace(String key, Object value) {
+		throw frozen();
+	}
+
+	@Override
+	public boolean replace(String key, Object oldValue, Object newValue) {
+		throw frozen();
+	}
+
+	@Override
+	public Object computeIfAbsent(String key, Function<? super String, ?> mappingFunction) {
+		throw frozen();
+	}
+
+	@Override
+	public Object computeIfPresent(String key, BiFunction<? super String, ? super Object, ?> remappingFunction) {
+		throw frozen();
+	}
+
+	@Override
+	public Object compute(String key, BiFunction<? super String, ? super Object, ?> remappingFunction) {
+		throw frozen();
+	}
+
+	@Override
+	public Object merge(String key, Object value, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+		throw frozen();
+	}
+
+	@Override
+	public void replaceAll(BiFunction<? super String, ? super Object, ?> function) {
+		throw frozen();
+	}
+
+	@Override
+	public void clear() {
+		throw frozen();
+	}
+
+	private static UnsupportedOperationException frozen() {
+		return new UnsupportedOperationException("Frozen JsonObject cannot be modified");
+	}
+
+	/**
+	 * Iterates the entries in order. Removal is not supported.
+	 */
+	private abstract class Cursor<T> implements Iterator<T> {
+		private int next;
+
+		abstract T at(int i);
+
+		@Override
+		public boolean hasNext() {
+			return next < values.length;
+		}
+
+		@Override
+		public T next() {
+			if (next >= values.length)
+				throw new NoSuchElementException();
+			return at(next++);
+		}
+	}
+}
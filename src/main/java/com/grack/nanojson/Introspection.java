@@ -0,0 +1,113 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+
+/**
+ * Internal reflection helpers shared by the data binding classes. Records are detected reflectively so that the
+ * library still runs on Java 11.
+ */
+final class Introspection {
+	private static final Method IS_RECORD;
+	private static final Method GET_RECORD_COMPONENTS;
+
+	static {
+		Method isRecord = null, getRecordComponents = null;
+		try {
+			isRecord = Class.class.getMethod("isRecord");
+			getRecordComponents = Class.class.getMethod("getRecordComponents");
+		} catch (NoSuchMethodException e) {
+			// Pre-Java 16 runtime, no records
+		}
+		IS_RECORD = isRecord;
+		GET_RECORD_COMPONENTS = getRecordComponents;
+	}
+
+	private Introspection() {
+	}
+
+	/**
+	 * Attempts to suppress access checks on a member, falling back to regular access checks if the member's
+	 * module isn't open to us.
+	 */
+	static <A extends AccessibleObject> A accessible(A member) {
+		try {
+			member.setAccessible(true);
+		} catch (RuntimeException e) {
+			// Not open to us
+		}
+		return member;
+	}
+
+	/**
+	 * Returns true if the class is a record.
+	 */
+	static boolean isRecord(Class<?> c) {
+		if (IS_RECORD == null)
+			return false;
+		try {
+			return (Boolean) IS_RECORD.invoke(c);
+		} catch (ReflectiveOperationException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the names of a record's components, in declaration order.
+	 */
+	static String[] recordComponentNames(Class<?> c) throws ReflectiveOperationException {
+		Object[] components = (Object[]) GET_RECORD_COMPONENTS.invoke(c);
+		String[] names = new String[components.length];
+		for (int i = 0; i < components.length; i++)
+			names[i] = (String) components[i].getClass().getMethod("getName").invoke(components[i]);
+		return names;
+	}
+
+	/**
+	 * Returns the generic types of a record's components, in declaration order.
+	 */
+	static Type[] recordComponentTypes(Class<?> c) throws ReflectiveOperationException {
+		Object[] components = (Object[]) GET_RECORD_COMPONENTS.invoke(c);
+		Type[] types = new Type[components.length];
+		for (int i = 0; i < components.length; i++)
+			types[i] = (Type) components[i].getClass().getMethod("getGenericType").invoke(components[i]);
+		return types;
+	}
+
+	/**
+	 * Returns the accessor methods of a record's components, in declaration order.
+	 */
+	static Method[] recordAccessors(Class<?> c) throws ReflectiveOperationException {
+		Object[] components = (Object[]) GET_RECORD_COMPONENTS.invoke(c);
+		Method[] accessors = new Method[components.length];
+		for (int i = 0; i < components.length; i++)
+			accessors[i] = (Method) components[i].getClass().getMethod("getAccessor").invoke(components[i]);
+		return accessors;
+	}
+
+	/**
+	 * Converts the remainder of a bean accessor name (ie: "FirstName" from "setFirstName" or
+	 * "getFirstName") to its property name.
+	 */
+	static String decapitalize(String name) {
+		if (name.length() > 1 && Character.isUpperCase(name.charAt(1)) && Character.isUpperCase(name.charAt(0)))
+			return name;
+		return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+	}
+}
@@ -18,6 +18,9 @@ package com.grack.nanojson;
 import java.io.Flushable;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.function.UnaryOperator;
 
 //@formatter:off
 /**
@@ -54,6 +57,63 @@ public final class JsonAppendableWriter extends
 		super(out, indent);
 	}
 
+	/**
+	 * Discards any state left from the previous document and starts writing a new one to the given
+	 * {@link Appendable}. The writer's buffers are kept, so a single writer can be reused for many documents.
+	 */
+	public JsonAppendableWriter reset(Appendable appendable) {
+		if (appendable == null)
+			throw new NullPointerException("appendable");
+		resetInternal(appendable, null);
+		return this;
+	}
+
+	/**
+	 * Discards any state left from the previous document and starts writing a new one to the given
+	 * {@link OutputStream} as UTF-8. The writer's buffers are kept, so a single writer can be reused for many
+	 * documents.
+	 */
+	public JsonAppendableWriter reset(OutputStream out) {
+		if (out == null)
+			throw new NullPointerException("out");
+		resetInternal(null, out);
+		return this;
+	}
+
+	/**
+	 * Discards any state left from the previous document and starts writing a new one to the given
+	 * {@link WritableByteChannel}. The writer's buffers are kept, including the direct buffer of a writer that was
+	 * already writing to a channel.
+	 */
+	public JsonAppendableWriter reset(WritableByteChannel channel) {
+		if (channel == null)
+			throw new NullPointerException("channel");
+		if (out instanceof NioOutput.ToChannel) {
+			((NioOutput.ToChannel) out).reset(channel);
+			resetInternal(null, out);
+		} else {
+			resetInternal(null, new NioOutput.ToChannel(channel));
+		}
+		return this;
+	}
+
+	/**
+	 * Discards any state left from the previous document and starts writing a new one into the given
+	 * {@link ByteBuffer}. See {@link JsonWriter#on(ByteBuffer, UnaryOperator)} for the overflow callback, which may
+	 * be null.
+	 */
+	public JsonAppendableWriter reset(ByteBuffer buffer, UnaryOperator<ByteBuffer> overflow) {
+		if (buffer == null)
+			throw new NullPointerException("buffer");
+		if (out instanceof NioOutput.ToBuffer) {
+			((NioOutput.ToBuffer) out).reset(buffer, overflow);
+			resetInternal(null, out);
+		} else {
+			resetInternal(null, new NioOutput.ToBuffer(buffer, overflow));
+		}
+		return this;
+	}
+
 	/**
 	 * Closes this JSON writer and flushes the underlying {@link Appendable} if
 	 * it is also {@link Flushable}.
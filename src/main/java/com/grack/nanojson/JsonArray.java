@@ -18,6 +18,7 @@ package com.grack.nanojson;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Objects;
 import java.util.stream.Stream;
 
 /**
@@ -222,6 +223,36 @@ public class JsonArray extends ArrayList<Object> {
 		return default_;
 	}
 
+	/**
+	 * Returns the elements as an {@code int[]}, with 0 for any element that is not a number.
+	 */
+	public int[] toIntArray() {
+		int[] values = new int[size()];
+		for (int i = 0; i < values.length; i++)
+			values[i] = getInt(i);
+		return values;
+	}
+
+	/**
+	 * Returns the elements as a {@code long[]}, with 0 for any element that is not a number.
+	 */
+	public long[] toLongArray() {
+		long[] values = new long[size()];
+		for (int i = 0; i < values.length; i++)
+			values[i] = getLong(i);
+		return values;
+	}
+
+	/**
+	 * Returns the elements as a {@code double[]}, with 0.0 for any element that is not a number.
+	 */
+	public double[] toDoubleArray() {
+		double[] values = new double[size()];
+		for (int i = 0; i < values.length; i++)
+			values[i] = getDouble(i);
+		return values;
+	}
+
 	/**
 	 * Returns true if the array has an element at that index (even if that element is null).
 	 */
@@ -258,6 +289,21 @@ public class JsonArray extends ArrayList<Object> {
 		return o instanceof LazyString || o instanceof String;
 	}
 
+	/**
+	 * Returns a new version of this array with the element at the index replaced, leaving this one unchanged. Only
+	 * this array is copied, and every other element is shared with the new version. See
+	 * {@link JsonObject#with(String, Object)}.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 *             if the index is not that of an element.
+	 */
+	public JsonArray with(int index, Object value) {
+		Objects.checkIndex(index, size());
+		JsonArray copy = new JsonArray(this);
+		copy.set(index, value);
+		return copy;
+	}
+
 	/**
 	 * Shortcut method to create a stream with only objects of these classes.
 	 */
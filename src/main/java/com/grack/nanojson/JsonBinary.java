@@ -0,0 +1,386 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+//@formatter:off
+/**
+ * A compact binary encoding of parsed documents, for caching them without paying for JSON tokenization when they
+ * are loaded again.
+ *
+ * <pre>
+ * byte[] cached = JsonBinary.encode(JsonParser.object().from(json));
+ * JsonObject reloaded = JsonBinary.decode(cached, JsonObject.class);
+ * </pre>
+ *
+ * Values are tagged with a single byte. Integers are zigzag varints, doubles and floats are stored in their IEEE
+ * form, strings and decimals in the source form are length-prefixed UTF-8, and arrays and objects are prefixed with
+ * their size. Each distinct object key is written once, the first time it appears, and by its index in the document's
+ * key dictionary after that.
+ *
+ * Documents decode to {@link JsonObject}, {@link JsonArray}, {@link String}, {@link Boolean}, null and {@link Number}:
+ * {@link Integer} or {@link Long} for integers that fit, {@link Double} and {@link Float} for those types, and a lazily
+ * parsed number carrying the original text for anything else, such as the decimals of a lazily parsed document.
+ */
+//@formatter:on
+public final class JsonBinary {
+	// CHECKSTYLE_OFF: MagicNumber
+	private static final byte[] MAGIC = { 'N', 'J', 'B', 1 };
+	private static final int MAX_EXACT_LONG_CHARS = 18;
+	private static final int INITIAL_KEYS = 16;
+	private static final float LOAD_FACTOR = 0.75f;
+	// CHECKSTYLE_ON: MagicNumber
+
+	private static final int NULL = 0;
+	private static final int FALSE = 1;
+	private static final int TRUE = 2;
+	private static final int INT = 3;
+	private static final int DOUBLE = 4;
+	private static final int FLOAT = 5;
+	private static final int INTEGER_TEXT = 6;
+	private static final int DECIMAL_TEXT = 7;
+	private static final int STRING = 8;
+	private static final int ARRAY = 9;
+	private static final int OBJECT = 10;
+
+	private JsonBinary() {
+	}
+
+	/**
+	 * Encodes a document made of maps, collections, strings, numbers, booleans and nulls.
+	 *
+	 * @throws JsonWriterException
+	 *             if the document contains any other type.
+	 */
+	public static byte[] encode(Object value) {
+		Encoder encoder = new Encoder();
+		encoder.value(value);
+		return Arrays.copyOf(encoder.buffer, encoder.position);
+	}
+
+	/**
+	 * Encodes a document to an {@link OutputStream}.
+	 *
+	 * @throws JsonWriterException
+	 *             if the document contains an unsupported type, or the stream fails.
+	 */
+	public static void encode(Object value, OutputStream out) {
+		Encoder encoder = new Encoder();
+		encoder.value(value);
+		try {
+			out.write(encoder.buffer, 0, encoder.position);
+		} catch (IOException e) {
+			throw new JsonWriterException(e);
+		}
+	}
+
+	/**
+	 * Decodes a document.
+	 */
+	public static Object decode(byte[] bytes) throws JsonParserException {
+		return new Decoder(bytes).document();
+	}
+
+	/**
+	 * Decodes a document of the given type, typically {@link JsonObject} or {@link JsonArray}.
+	 */
+	public static <T> T decode(byte[] bytes, Class<T> clazz) throws JsonParserException {
+		Object value = decode(bytes);
+		if (!clazz.isInstance(value))
+			throw new JsonParserException(null, "Document did not contain the correct type, expected "
+					+ clazz.getSimpleName() + ".", 1, 1, 0);
+		return clazz.cast(value);
+	}
+
+	/**
+	 * Decodes a document read from an {@link InputStream}, which is read to its end.
+	 */
+	public static Object decode(InputStream in) throws JsonParserException {
+		byte[] bytes;
+		try {
+			bytes = in.readAllBytes();
+		} catch (IOException e) {
+			throw new JsonParserException(e, "IOException reading binary JSON", 1, 1, 0);
+		}
+		return decode(bytes);
+	}
+
+	/**
+	 * Appends values to a growing byte array.
+	 */
+	private static final class Encoder {
+		private final Map<String, Integer> keys = new HashMap<>();
+		private byte[] buffer = new byte[JsonWriterBase.BUFFER_SIZE];
+		private int position;
+
+		Encoder() {
+			System.arraycopy(MAGIC, 0, buffer, 0, MAGIC.length);
+			position = MAGIC.length;
+		}
+
+		void value(Object o) {
+			if (o == null) {
+				tag(NULL);
+			} else if (o instanceof String || o instanceof LazyString) {
+				tag(STRING);
+				string(o.toString());
+			} else if (o instanceof Boolean) {
+				tag((Boolean) o ? TRUE : FALSE);
+			} else if (o instanceof Number) {
+				number((Number) o);
+			} else if (o instanceof Map) {
+				Map<?, ?> map = (Map<?, ?>) o;
+				tag(OBJECT);
+				varint(map.size());
+				for (Map.Entry<?, ?> e : map.entrySet()) {
+					if (!(e.getKey() instanceof String))
+						throw new JsonWriterException("Invalid key type for map: "
+								+ (e.getKey() == null ? "null" : e.getKey().getClass()));
+					key((String) e.getKey());
+					value(e.getValue());
+				}
+			} else if (o instanceof Collection) {
+				Collection<?> collection = (Collection<?>) o;
+				tag(ARRAY);
+				varint(collection.size());
+				for (Object element : collection)
+					value(element);
+			} else {
+				throw new JsonWriterException("Unable to handle type: " + o.getClass());
+			}
+		}
+
+		private void number(Number n) {
+			if (n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte) {
+				tag(INT);
+				zigzag(n.longValue());
+			} else if (n instanceof Double) {
+				tag(DOUBLE);
+				fixed(Double.doubleToRawLongBits(n.doubleValue()), Long.BYTES);
+			} else if (n instanceof Float) {
+				tag(FLOAT);
+				fixed(Float.floatToRawIntBits(n.floatValue()), Integer.BYTES);
+			} else if (n instanceof JsonLazyNumber && !((JsonLazyNumber) n).isDouble()
+					&& ((JsonLazyNumber) n).chars().length <= MAX_EXACT_LONG_CHARS
+					&& !"-0".equals(n.toString())) {
+				tag(INT);
+				zigzag(n.longValue());
+			} else {
+				String text = n.toString();
+				boolean decimal = text.indexOf('.') >= 0 || text.indexOf('e') >= 0 || text.indexOf('E') >= 0;
+				tag(decimal ? DECIMAL_TEXT : INTEGER_TEXT);
+				string(text);
+			}
+		}
+
+		private void key(String key) {
+			Integer index = keys.get(key);
+			if (index != null) {
+				varint(index + 1);
+			} else {
+				keys.put(key, keys.size());
+				varint(0);
+				string(key);
+			}
+		}
+
+		private void string(String s) {
+			byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+			varint(utf8.length);
+			ensure(utf8.length);
+			System.arraycopy(utf8, 0, buffer, position, utf8.length);
+			position += utf8.length;
+		}
+
+		private void tag(int tag) {
+			ensure(1);
+			buffer[position++] = (byte) tag;
+		}
+
+		// CHECKSTYLE_OFF: MagicNumber
+
+		private void zigzag(long v) {
+			varint((v << 1) ^ (v >> 63));
+		}
+
+		private void varint(long v) {
+			ensure(10);
+			while ((v & ~0x7fL) != 0) {
+				buffer[position++] = (byte) ((v & 0x7f) | 0x80);
+				v >>>= 7;
+			}
+			buffer[position++] = (byte) v;
+		}
+
+		private void fixed(long bits, int bytes) {
+			ensure(bytes);
+			for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8)
+				buffer[position++] = (byte) (bits >>> shift);
+		}
+
+		// CHECKSTYLE_ON: MagicNumber
+
+		private void ensure(int n) {
+			if (position + n > buffer.length)
+				buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + n));
+		}
+	}
+
+	/**
+	 * Rebuilds a document from a byte array.
+	 */
+	private static final class Decoder {
+		private final byte[] in;
+		private int position;
+		private String[] keys = new String[INITIAL_KEYS];
+		private int keyCount;
+
+		Decoder(byte[] in) {
+			this.in = in;
+		}
+
+		Object document() throws JsonParserException {
+			if (in.length < MAGIC.length || !Arrays.equals(Arrays.copyOf(in, MAGIC.length), MAGIC))
+				throw error("Not a binary JSON document, or an unsupported version");
+			position = MAGIC.length;
+			Object value = value();
+			if (position != in.length)
+				throw error("Expected end of input");
+			return value;
+		}
+
+		private Object value() throws JsonParserException {
+			int tag = readByte();
+			switch (tag) {
+				case NULL:
+					return null;
+				case FALSE:
+					return Boolean.FALSE;
+				case TRUE:
+					return Boolean.TRUE;
+				case INT:
+					long v = zigzag();
+					return (int) v == v ? (Object) (int) v : (Object) v;
+				case DOUBLE:
+					return Double.longBitsToDouble(fixed(Long.BYTES));
+				case FLOAT:
+					return Float.intBitsToFloat((int) fixed(Integer.BYTES));
+				case INTEGER_TEXT:
+				case DECIMAL_TEXT:
+					return new JsonLazyNumber(string().toCharArray(), tag == DECIMAL_TEXT);
+				case STRING:
+					return string();
+				case ARRAY:
+					int length = size();
+					JsonArray array = new JsonArray(length);
+					for (int i = 0; i < length; i++)
+						array.add(value());
+					return array;
+				case OBJECT:
+					int size = size();
+					JsonObject object = new JsonObject((int) (size / LOAD_FACTOR) + 1);
+					for (int i = 0; i < size; i++) {
+						String key = key();
+						object.put(key, value());
+					}
+					return object;
+				default:
+					position--;
+					throw error("Unknown tag " + tag);
+			}
+		}
+
+		private String key() throws JsonParserException {
+			long index = varint();
+			if (index > 0) {
+				if (index > keyCount)
+					throw error("Unknown key reference " + index);
+				return keys[(int) index - 1];
+			}
+			String key = string();
+			if (keyCount == keys.length)
+				keys = Arrays.copyOf(keys, keyCount * 2);
+			keys[keyCount++] = key;
+			return key;
+		}
+
+		private String string() throws JsonParserException {
+			int length = size();
+			if (length > in.length - position)
+				throw error("Truncated string");
+			String s = new String(in, position, length, StandardCharsets.UTF_8);
+			position += length;
+			return s;
+		}
+
+		private int readByte() throws JsonParserException {
+			if (position >= in.length)
+				throw error("Unexpected end of input");
+			return in[position++] & 0xff;
+		}
+
+		/**
+		 * Reads a length or count, which cannot exceed the remaining input.
+		 */
+		private int size() throws JsonParserException {
+			long v = varint();
+			if (v > in.length - position)
+				throw error("Invalid size " + v);
+			return (int) v;
+		}
+
+		// CHECKSTYLE_OFF: MagicNumber
+
+		private long zigzag() throws JsonParserException {
+			long v = varint();
+			return (v >>> 1) ^ -(v & 1);
+		}
+
+		private long varint() throws JsonParserException {
+			long v = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				int b = readByte();
+				v |= (long) (b & 0x7f) << shift;
+				if (b < 0x80)
+					return v;
+			}
+			throw error("Malformed varint");
+		}
+
+		private long fixed(int bytes) throws JsonParserException {
+			if (bytes > in.length - position)
+				throw error("Unexpected end of input");
+			long v = 0;
+			for (int i = 0; i < bytes; i++)
+				v = (v << 8) | (in[position++] & 0xff);
+			return v;
+		}
+
+		// CHECKSTYLE_ON: MagicNumber
+
+		private JsonParserException error(String message) {
+			return new JsonParserException(null, message + " at offset " + position, 1, position + 1, position);
+		}
+	}
+}
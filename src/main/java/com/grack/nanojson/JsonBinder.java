@@ -0,0 +1,666 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+//@formatter:off
+/**
+ * Binds JSON directly to plain Java objects, without building an intermediate {@link JsonObject}.
+ *
+ * Each class is introspected once and its accessors are cached as {@link MethodHandle}s, so subsequent
+ * decodes only pay for reading the {@link JsonReader} events.
+ *
+ * <pre>
+ * User user = JsonBinder.of(User.class).from("{\"name\":\"Bob\",\"age\":42}");
+ * </pre>
+ *
+ * Classes with a no-argument constructor are populated through their public non-final fields and public
+ * single-argument {@code setXyz} methods. Records are populated through their canonical constructor. Keys
+ * that do not map to a property are skipped.
+ *
+ * @param <T>
+ *            The bound type.
+ */
+//@formatter:on
+public final class JsonBinder<T> {
+	private static final ClassValue<JsonBinder<?>> BINDERS = new ClassValue<JsonBinder<?>>() {
+		@Override
+		protected JsonBinder<?> computeValue(Class<?> type) {
+			return new JsonBinder<>(type);
+		}
+	};
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	private final Class<T> type;
+	private final Decoder decoder;
+
+	/**
+	 * Reads a single JSON value from a {@link JsonReader} positioned over it.
+	 */
+	interface Decoder {
+		Object read(JsonReader reader) throws JsonParserException;
+	}
+
+	private JsonBinder(Class<T> type) {
+		this.type = type;
+		this.decoder = isBean(type) ? createBeanDecoder(type) : decoderFor(type);
+	}
+
+	/**
+	 * Returns the binder for the given class. Binders are created once per class and are safe to share between
+	 * threads.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the class cannot be instantiated from JSON.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> JsonBinder<T> of(Class<T> type) {
+		return (JsonBinder<T>) BINDERS.get(type);
+	}
+
+	/**
+	 * Binds the JSON contained in a {@link String}.
+	 */
+	public T from(String s) throws JsonParserException {
+		return fromReader(JsonReader.from(s));
+	}
+
+	/**
+	 * Binds the JSON read from a {@link Reader}.
+	 */
+	public T from(Reader r) throws JsonParserException {
+		return fromReader(JsonReader.from(r));
+	}
+
+	/**
+	 * Binds the JSON read from an {@link InputStream}. Detects the encoding from the input stream.
+	 */
+	public T from(InputStream stm) throws JsonParserException {
+		return fromReader(JsonReader.from(stm));
+	}
+
+	/**
+	 * Binds the value the {@link JsonReader} is currently positioned over. When the value is an object or array,
+	 * the reader is left positioned at its end, ready for the next call to {@link JsonReader#next()}.
+	 */
+	public T read(JsonReader reader) throws JsonParserException {
+		return type.cast(decoder.read(reader));
+	}
+
+	private T fromReader(JsonReader reader) throws JsonParserException {
+		try {
+			return read(reader);
+		} finally {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				// Don't mask the original exception
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the class is bound property-by-property rather than as a JSON primitive or container.
+	 */
+	private static boolean isBean(Class<?> c) {
+		return !c.isPrimitive() && !c.isArray() && !c.isEnum() && !c.isInterface()
+				&& !Modifier.isAbstract(c.getModifiers()) && c != Object.class && c != String.class
+				&& !Number.class.isAssignableFrom(c) && c != Boolean.class && c != Character.class
+				&& !Collection.class.isAssignableFrom(c) && !Map.class.isAssignableFrom(c);
+	}
+
+	/**
+	 * Creates the decoder for a generic type. Nested beans are resolved lazily so that self-referencing classes
+	 * don't recurse while they are being introspected.
+	 */
+	static Decoder decoderFor(Type t) {
+		Class<?> c = rawType(t);
+		if (c == String.class)
+			return JsonReader::string;
+		if (c == int.class || c == Integer.class)
+			return r -> isNull(r) ? null : (Object) number(r).intVal();
+		if (c == long.class || c == Long.class)
+			return r -> isNull(r) ? null : (Object) number(r).longVal();
+		if (c == double.class || c == Double.class)
+			return r -> isNull(r) ? null : (Object) number(r).doubleVal();
+		if (c == float.class || c == Float.class)
+			return r -> isNull(r) ? null : (Object) number(r).floatVal();
+		if (c == short.class || c == Short.class)
+			return r -> isNull(r) ? null : (Object) (short) number(r).intVal();
+		if (c == byte.class || c == Byte.class)
+			return r -> isNull(r) ? null : (Object) (byte) number(r).intVal();
+		if (c == boolean.class || c == Boolean.class)
+			return r -> isNull(r) ? null : (Object) r.bool();
+		if (c == char.class || c == Character.class)
+			return JsonBinder::readChar;
+		if (c == BigInteger.class)
+			return r -> isNull(r) ? null : new BigInteger(number(r).number().toString());
+		if (c == BigDecimal.class)
+			return r -> isNull(r) ? null : new BigDecimal(number(r).number().toString());
+		if (c == Number.class)
+			return JsonReader::number;
+		if (c.isEnum())
+			return r -> readEnum(r, c);
+		if (c == Object.class || c == JsonObject.class || c == JsonArray.class)
+			return r -> c.cast(readAny(r));
+		if (c.isArray())
+			return new ArrayDecoder(c.getComponentType(), decoderFor(componentType(t)));
+		if (Collection.class.isAssignableFrom(c))
+			return new CollectionDecoder(collectionFactory(c), decoderFor(typeArgument(t, Collection.class, 0)));
+		if (Map.class.isAssignableFrom(c)) {
+			Class<?> keyType = rawType(typeArgument(t, Map.class, 0));
+			if (keyType != String.class && keyType != Object.class)
+				throw new IllegalArgumentException("Only String keys are supported for maps: " + t);
+			return new MapDecoder(mapFactory(c), decoderFor(typeArgument(t, Map.class, 1)));
+		}
+		if (isBean(c))
+			return new Decoder() {
+				private Decoder bean;
+
+				@Override
+				public Object read(JsonReader reader) throws JsonParserException {
+					if (bean == null)
+						bean = of(c).decoder;
+					return bean.read(reader);
+				}
+			};
+		throw new IllegalArgumentException("Unable to bind type: " + t);
+	}
+
+	private static boolean isNull(JsonReader reader) throws JsonParserException {
+		return reader.current() == JsonReader.Type.NULL;
+	}
+
+	private static JsonReader number(JsonReader reader) throws JsonParserException {
+		if (reader.current() != JsonReader.Type.NUMBER)
+			throw reader.createParseException(null, "Expected a number, got " + reader.current());
+		return reader;
+	}
+
+	private static Object readChar(JsonReader reader) throws JsonParserException {
+		String s = reader.string();
+		if (s == null)
+			return null;
+		if (s.length() != 1)
+			throw reader.createParseException(null, "Expected a single character, got \"" + s + "\"");
+		return s.charAt(0);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Object readEnum(JsonReader reader, Class<?> c) throws JsonParserException {
+		String s = reader.string();
+		if (s == null)
+			return null;
+		try {
+			return Enum.valueOf((Class) c, s);
+		} catch (IllegalArgumentException e) {
+			throw reader.createParseException(e, "Unknown " + c.getSimpleName() + " constant: " + s);
+		}
+	}
+
+	/**
+	 * Reads the current value as the same types {@link JsonParser} would produce.
+	 */
+	static Object readAny(JsonReader reader) throws JsonParserException {
+		switch (reader.current()) {
+			case OBJECT:
+				JsonObject map = new JsonObject();
+				reader.object();
+				while (reader.next())
+					map.put(reader.key(), readAny(reader));
+				return map;
+			case ARRAY:
+				JsonArray list = new JsonArray();
+				reader.array();
+				while (reader.next())
+					list.add(readAny(reader));
+				return list;
+			default:
+				return reader.value();
+		}
+	}
+
+	/**
+	 * Decodes a JSON array into a {@link Collection}.
+	 */
+	private static final class CollectionDecoder implements Decoder {
+		private final MethodHandle factory;
+		private final Decoder element;
+
+		CollectionDecoder(MethodHandle factory, Decoder element) {
+			this.factory = factory;
+			this.element = element;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public Object read(JsonReader reader) throws JsonParserException {
+			if (isNull(reader))
+				return null;
+			Collection<Object> c;
+			try {
+				c = (Collection<Object>) factory.invoke();
+			} catch (Throwable t) {
+				throw bindFailure(reader, t);
+			}
+			reader.array();
+			while (reader.next())
+				c.add(element.read(reader));
+			return c;
+		}
+	}
+
+	/**
+	 * Decodes a JSON object into a {@link Map}.
+	 */
+	private static final class MapDecoder implements Decoder {
+		private final MethodHandle factory;
+		private final Decoder value;
+
+		MapDecoder(MethodHandle factory, Decoder value) {
+			this.factory = factory;
+			this.value = value;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public Object read(JsonReader reader) throws JsonParserException {
+			if (isNull(reader))
+				return null;
+			Map<String, Object> m;
+			try {
+				m = (Map<String, Object>) factory.invoke();
+			} catch (Throwable t) {
+				throw bindFailure(reader, t);
+			}
+			reader.object();
+			while (reader.next())
+				m.put(reader.key(), value.read(reader));
+			return m;
+		}
+	}
+
+	/**
+	 * Decodes a JSON array into a Java array. Primitive components are stored without boxing the array itself.
+	 */
+	private static final class ArrayDecoder implements Decoder {
+		private final Class<?> component;
+		private final Decoder element;
+
+		ArrayDecoder(Class<?> component, Decoder element) {
+			this.component = component;
+			this.element = element;
+		}
+
+		@Override
+		public Object read(JsonReader reader) throws JsonParserException {
+			if (isNull(reader))
+				return null;
+			List<Object> values = new ArrayList<>();
+			reader.array();
+			while (reader.next())
+				values.add(element.read(reader));
+			Object array = Array.newInstance(component, values.size());
+			for (int i = 0; i < values.size(); i++) {
+				Object v = values.get(i);
+				if (v != null || !component.isPrimitive())
+					Array.set(array, i, v);
+			}
+			return array;
+		}
+	}
+
+	/**
+	 * A single bindable property of a bean, populated through a setter or field {@link MethodHandle} typed as
+	 * {@code (Object, V)void}. Primitive properties are read and stored without boxing.
+	 */
+	private abstract static class Property {
+		final MethodHandle setter;
+
+		Property(MethodHandle setter) {
+			this.setter = setter;
+		}
+
+		abstract void read(JsonReader reader, Object target) throws Throwable;
+
+		static Property create(MethodHandle setter, Type t) {
+			Class<?> c = rawType(t);
+			if (c == int.class) {
+				MethodHandle h = setter.asType(MethodType.methodType(void.class, Object.class, int.class));
+				return new Property(h) {
+					@Override
+					void read(JsonReader reader, Object target) throws Throwable {
+						if (!isNull(reader))
+							this.setter.invokeExact(target, number(reader).intVal());
+					}
+				};
+			}
+			if (c == long.class) {
+				MethodHandle h = setter.asType(MethodType.methodType(void.class, Object.class, long.class));
+				return new Property(h) {
+					@Override
+					void read(JsonReader reader, Object target) throws Throwable {
+						if (!isNull(reader))
+							this.setter.invokeExact(target, number(reader).longVal());
+					}
+				};
+			}
+			if (c == double.class) {
+				MethodHandle h = setter.asType(MethodType.methodType(void.class, Object.class, double.class));
+				return new Property(h) {
+					@Override
+					void read(JsonReader reader, Object target) throws Throwable {
+						if (!isNull(reader))
+							this.setter.invokeExact(target, number(reader).doubleVal());
+					}
+				};
+			}
+			if (c == boolean.class) {
+				MethodHandle h = setter.asType(MethodType.methodType(void.class, Object.class, boolean.class));
+				return new Property(h) {
+					@Override
+					void read(JsonReader reader, Object target) throws Throwable {
+						if (!isNull(reader))
+							this.setter.invokeExact(target, reader.bool());
+					}
+				};
+			}
+
+			Decoder decoder = decoderFor(t);
+			boolean primitive = c.isPrimitive();
+			MethodHandle h = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+			return new Property(h) {
+				@Override
+				void read(JsonReader reader, Object target) throws Throwable {
+					Object value = decoder.read(reader);
+					if (value != null || !primitive)
+						this.setter.invokeExact(target, value);
+				}
+			};
+		}
+	}
+
+	/**
+	 * Decodes a JSON object into a bean created with its no-argument constructor.
+	 */
+	private static final class SetterBeanDecoder implements Decoder {
+		private final Class<?> type;
+		private final MethodHandle constructor;
+		private final Map<String, Property> properties;
+
+		SetterBeanDecoder(Class<?> type, MethodHandle constructor, Map<String, Property> properties) {
+			this.type = type;
+			this.constructor = constructor;
+			this.properties = properties;
+		}
+
+		@Override
+		public Object read(JsonReader reader) throws JsonParserException {
+			if (isNull(reader))
+				return null;
+			reader.object();
+			Object target;
+			try {
+				target = (Object) constructor.invokeExact();
+			} catch (Throwable t) {
+				throw bindFailure(reader, t);
+			}
+			while (reader.next()) {
+				Property p = properties.get(reader.key());
+				if (p == null) {
+					reader.skipValue();
+					continue;
+				}
+				try {
+					p.read(reader, target);
+				} catch (JsonParserException | RuntimeException | Error e) {
+					throw e;
+				} catch (Throwable t) {
+					throw bindFailure(reader, t);
+				}
+			}
+			return type.cast(target);
+		}
+	}
+
+	/**
+	 * Decodes a JSON object by collecting the arguments of a record's canonical constructor.
+	 */
+	private static final class ConstructorBeanDecoder implements Decoder {
+		private final MethodHandle constructor;
+		private final Map<String, Integer> indexes;
+		private final Decoder[] decoders;
+		private final Object[] defaults;
+
+		ConstructorBeanDecoder(MethodHandle constructor, Map<String, Integer> indexes, Decoder[] decoders,
+				Object[] defaults) {
+			this.constructor = constructor;
+			this.indexes = indexes;
+			this.decoders = decoders;
+			this.defaults = defaults;
+		}
+
+		@Override
+		public Object read(JsonReader reader) throws JsonParserException {
+			if (isNull(reader))
+				return null;
+			reader.object();
+			Object[] args = defaults.clone();
+			while (reader.next()) {
+				Integer index = indexes.get(reader.key());
+				if (index == null) {
+					reader.skipValue();
+					continue;
+				}
+				Object value = decoders[index].read(reader);
+				if (value != null)
+					args[index] = value;
+			}
+			try {
+				return constructor.invokeExact(args);
+			} catch (Throwable t) {
+				throw bindFailure(reader, t);
+			}
+		}
+	}
+
+	private static JsonParserException bindFailure(JsonReader reader, Throwable t) {
+		if (t instanceof RuntimeException)
+			throw (RuntimeException) t;
+		if (t instanceof Error)
+			throw (Error) t;
+		return reader.createParseException((Exception) t, "Unable to bind value: " + t);
+	}
+
+	private static Decoder createBeanDecoder(Class<?> c) {
+		try {
+			if (Introspection.isRecord(c)) {
+				String[] names = Introspection.recordComponentNames(c);
+				Type[] types = Introspection.recordComponentTypes(c);
+				Class<?>[] raw = new Class<?>[types.length];
+				Map<String, Integer> indexes = new HashMap<>();
+				Decoder[] decoders = new Decoder[types.length];
+				Object[] defaults = new Object[types.length];
+				for (int i = 0; i < types.length; i++) {
+					raw[i] = rawType(types[i]);
+					indexes.put(names[i], i);
+					decoders[i] = decoderFor(types[i]);
+					defaults[i] = defaultValue(raw[i]);
+				}
+				Constructor<?> ctor = Introspection.accessible(c.getDeclaredConstructor(raw));
+				MethodHandle h = LOOKUP.unreflectConstructor(ctor).asSpreader(Object[].class, raw.length)
+						.asType(MethodType.methodType(Object.class, Object[].class));
+				return new ConstructorBeanDecoder(h, indexes, decoders, defaults);
+			}
+
+			Constructor<?> ctor;
+			try {
+				ctor = Introspection.accessible(c.getDeclaredConstructor());
+			} catch (NoSuchMethodException e) {
+				throw new IllegalArgumentException("Class " + c.getName() + " has no no-argument constructor", e);
+			}
+			MethodHandle h = LOOKUP.unreflectConstructor(ctor).asType(MethodType.methodType(Object.class));
+
+			Map<String, Property> properties = new LinkedHashMap<>();
+			for (Class<?> k = c; k != null && k != Object.class; k = k.getSuperclass()) {
+				for (Field f : k.getDeclaredFields()) {
+					int mod = f.getModifiers();
+					if (!Modifier.isPublic(mod) || Modifier.isStatic(mod) || Modifier.isFinal(mod)
+							|| Modifier.isTransient(mod) || properties.containsKey(f.getName()))
+						continue;
+					properties.put(f.getName(), Property.create(LOOKUP.unreflectSetter(Introspection.accessible(f)),
+							f.getGenericType()));
+				}
+			}
+			for (Method m : c.getMethods()) {
+				String name = m.getName();
+				if (Modifier.isStatic(m.getModifiers()) || m.getParameterCount() != 1 || name.length() < 4
+						|| !name.startsWith("set") || m.isBridge() || m.getDeclaringClass() == Object.class)
+					continue;
+				properties.put(Introspection.decapitalize(name.substring(3)),
+						Property.create(LOOKUP.unreflect(Introspection.accessible(m)), m.getGenericParameterTypes()[0]));
+			}
+			return new SetterBeanDecoder(c, h, properties);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalArgumentException("Unable to introspect " + c.getName(), e);
+		}
+	}
+
+	private static Object defaultValue(Class<?> c) {
+		if (!c.isPrimitive())
+			return null;
+		return Array.get(Array.newInstance(c, 1), 0);
+	}
+
+	private static MethodHandle collectionFactory(Class<?> c) {
+		Class<?> impl = c;
+		if (c.isInterface() || Modifier.isAbstract(c.getModifiers())) {
+			if (c.isAssignableFrom(ArrayList.class))
+				impl = ArrayList.class;
+			else if (c.isAssignableFrom(TreeSet.class) && SortedSet.class.isAssignableFrom(c))
+				impl = TreeSet.class;
+			else if (c.isAssignableFrom(LinkedHashSet.class) && Set.class.isAssignableFrom(c))
+				impl = LinkedHashSet.class;
+			else
+				throw new IllegalArgumentException("Unable to create collection of type " + c.getName());
+		}
+		return factory(impl);
+	}
+
+	private static MethodHandle mapFactory(Class<?> c) {
+		Class<?> impl = c;
+		if (c.isInterface() || Modifier.isAbstract(c.getModifiers())) {
+			if (c.isAssignableFrom(LinkedHashMap.class))
+				impl = LinkedHashMap.class;
+			else if (c.isAssignableFrom(TreeMap.class) && SortedMap.class.isAssignableFrom(c))
+				impl = TreeMap.class;
+			else
+				throw new IllegalArgumentException("Unable to create map of type " + c.getName());
+		}
+		return factory(impl);
+	}
+
+	private static MethodHandle factory(Class<?> c) {
+		try {
+			return LOOKUP.unreflectConstructor(Introspection.accessible(c.getDeclaredConstructor()))
+					.asType(MethodType.methodType(Object.class));
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalArgumentException("Unable to create instances of " + c.getName(), e);
+		}
+	}
+
+	static Class<?> rawType(Type t) {
+		if (t instanceof Class)
+			return (Class<?>) t;
+		if (t instanceof ParameterizedType)
+			return rawType(((ParameterizedType) t).getRawType());
+		if (t instanceof GenericArrayType)
+			return Array.newInstance(rawType(((GenericArrayType) t).getGenericComponentType()), 0).getClass();
+		if (t instanceof WildcardType)
+			return rawType(((WildcardType) t).getUpperBounds()[0]);
+		if (t instanceof TypeVariable)
+			return rawType(((TypeVariable<?>) t).getBounds()[0]);
+		return Object.class;
+	}
+
+	private static Type componentType(Type t) {
+		if (t instanceof GenericArrayType)
+			return ((GenericArrayType) t).getGenericComponentType();
+		return rawType(t).getComponentType();
+	}
+
+	/**
+	 * Resolves the type argument at {@code index} of {@code target} as seen from {@code t}, following type
+	 * variables through the supertypes (ie: the {@code E} of {@code Collection<E>} from {@code List<Node>}).
+	 * Falls back to {@link Object} when it cannot be determined.
+	 */
+	private static Type typeArgument(Type t, Class<?> target, int index) {
+		Class<?> c = rawType(t);
+		Type[] actual = t instanceof ParameterizedType ? ((ParameterizedType) t).getActualTypeArguments() : null;
+		if (c == target)
+			return actual == null ? Object.class : actual[index];
+
+		List<Type> supertypes = new ArrayList<>(Arrays.asList(c.getGenericInterfaces()));
+		if (c.getGenericSuperclass() != null)
+			supertypes.add(c.getGenericSuperclass());
+		for (Type s : supertypes) {
+			if (!target.isAssignableFrom(rawType(s)))
+				continue;
+			Type resolved = typeArgument(s, target, index);
+			if (resolved instanceof TypeVariable && actual != null) {
+				TypeVariable<?>[] vars = c.getTypeParameters();
+				for (int i = 0; i < vars.length; i++) {
+					if (vars[i].equals(resolved))
+						return actual[i];
+				}
+			}
+			return resolved;
+		}
+		return Object.class;
+	}
+}
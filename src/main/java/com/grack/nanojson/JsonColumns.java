@@ -0,0 +1,548 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//@formatter:off
+/**
+ * Extracts the fields of an array of records into primitive columns in a single streaming pass over a
+ * {@link JsonReader}, without building a {@link JsonObject} per record.
+ *
+ * <pre>
+ * JsonColumns columns = JsonColumns.builder()
+ *     .column("id", JsonColumns.Type.LONG)
+ *     .column("price", JsonColumns.Type.DOUBLE)
+ *     .column("seller.country", JsonColumns.Type.STRING)
+ *     .build();
+ * JsonColumns.Table table = columns.from("[{\"id\":1,\"price\":9.5,\"seller\":{\"country\":\"NZ\"}}, ...]");
+ * long[] ids = table.column("id").longs();
+ * </pre>
+ *
+ * A path names a field, or a field of a nested object with its keys separated by dots. Records that lack a field,
+ * or hold null in it, are marked in the column's null bitmap. Strings are dictionary-encoded. Other fields are
+ * skipped. A {@link JsonColumns} is immutable and may be shared between threads.
+ */
+//@formatter:on
+public final class JsonColumns {
+	/**
+	 * The type of a column.
+	 */
+	public enum Type {
+		/**
+		 * Numbers, stored in a {@code long[]}.
+		 */
+		LONG,
+		/**
+		 * Numbers, stored in a {@code double[]}.
+		 */
+		DOUBLE,
+		/**
+		 * Booleans, stored in a {@code boolean[]}.
+		 */
+		BOOLEAN,
+		/**
+		 * Strings, stored as an {@code int[]} of codes into a dictionary of the distinct values.
+		 */
+		STRING,
+	}
+
+	private final String[] paths;
+	private final Type[] types;
+	private final Node root;
+
+	private JsonColumns(String[] paths, Type[] types) {
+		this.paths = paths;
+		this.types = types;
+		this.root = new Node();
+		for (int i = 0; i < paths.length; i++)
+			root.add(paths[i], paths[i].split("\\.", -1), 0, i);
+	}
+
+	/**
+	 * Starts a column specification.
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Builds a {@link JsonColumns} from field paths and their types, in column order.
+	 */
+	public static final class Builder {
+		private final Map<String, Type> columns = new LinkedHashMap<>();
+
+		Builder() {
+		}
+
+		/**
+		 * Adds a column.
+		 *
+		 * @throws IllegalArgumentException
+		 *             if the path is already a column.
+		 */
+		public Builder column(String path, Type type) {
+			if (path == null || type == null)
+				throw new NullPointerException();
+			if (columns.put(path, type) != null)
+				throw new IllegalArgumentException("Duplicate column: " + path);
+			return this;
+		}
+
+		/**
+		 * Builds the specification.
+		 *
+		 * @throws IllegalArgumentException
+		 *             if one path is a prefix of another, as a field cannot be both a value and an object.
+		 */
+		public JsonColumns build() {
+			return new JsonColumns(columns.keySet().toArray(new String[0]), columns.values().toArray(new Type[0]));
+		}
+	}
+
+	/**
+	 * Extracts the columns from an array of records in a {@link String}.
+	 */
+	public Table from(String s) throws JsonParserException {
+		return fromReader(JsonReader.from(s));
+	}
+
+	/**
+	 * Extracts the columns from an array of records read from a {@link Reader}.
+	 */
+	public Table from(Reader r) throws JsonParserException {
+		return fromReader(JsonReader.from(r));
+	}
+
+	/**
+	 * Extracts the columns from an array of records read from an {@link InputStream}. Detects the encoding from the
+	 * input stream.
+	 */
+	public Table from(InputStream stm) throws JsonParserException {
+		return fromReader(JsonReader.from(stm));
+	}
+
+	/**
+	 * Extracts the columns from the array of records the {@link JsonReader} is currently positioned over, leaving the
+	 * reader at the end of the array. A null record counts as a row of nulls.
+	 */
+	public Table read(JsonReader reader) throws JsonParserException {
+		Column[] columns = new Column[paths.length];
+		for (int i = 0; i < columns.length; i++)
+			columns[i] = new Column(paths[i], types[i]);
+		int rows = 0;
+		reader.array();
+		while (reader.next()) {
+			JsonReader.Type t = reader.current();
+			if (t == JsonReader.Type.OBJECT)
+				readObject(reader, root, columns, rows);
+			else if (t != JsonReader.Type.NULL)
+				throw reader.createParseException(null, "Expected an object for row " + rows + ", got " + t);
+			for (Column column : columns)
+				column.endRow(rows);
+			rows++;
+		}
+		for (Column column : columns)
+			column.trim(rows);
+		return new Table(rows, columns);
+	}
+
+	private Table fromReader(JsonReader reader) throws JsonParserException {
+		try {
+			return read(reader);
+		} finally {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				// Don't mask the original exception
+			}
+		}
+	}
+
+	private static void readObject(JsonReader reader, Node node, Column[] columns, int row)
+			throws JsonParserException {
+		reader.object();
+		while (reader.next()) {
+			Node child = node.child(reader);
+			if (child == null)
+				reader.skipValue();
+			else if (child.column >= 0)
+				columns[child.column].read(reader, row);
+			else if (reader.current() == JsonReader.Type.OBJECT)
+				readObject(reader, child, columns, row);
+			else
+				reader.skipValue();
+		}
+	}
+
+	/**
+	 * One level of the tree of paths: the keys that lead to columns, or to further levels.
+	 */
+	private static final class Node {
+		private String[] keys = new String[0];
+		private Node[] children = new Node[0];
+		private int column = -1;
+
+		void add(String path, String[] segments, int depth, int index) {
+			if (depth == segments.length) {
+				if (keys.length > 0)
+					throw new IllegalArgumentException("Column " + path + " is also the prefix of another column");
+				column = index;
+				return;
+			}
+			if (column >= 0)
+				throw new IllegalArgumentException("Column " + path + " is nested inside another column");
+			Node next = null;
+			for (int i = 0; i < keys.length; i++)
+				if (keys[i].equals(segments[depth]))
+					next = children[i];
+			if (next == null) {
+				next = new Node();
+				keys = Arrays.copyOf(keys, keys.length + 1);
+				children = Arrays.copyOf(children, children.length + 1);
+				keys[keys.length - 1] = segments[depth];
+				children[children.length - 1] = next;
+			}
+			next.add(path, segments, depth + 1, index);
+		}
+
+		Node child(JsonReader reader) {
+			for (int i = 0; i < keys.length; i++)
+				if (reader.keyEquals(keys[i]))
+					return children[i];
+			return null;
+		}
+	}
+
+	/**
+	 * The columns extracted from an array of records.
+	 */
+	public static final class Table {
+		private final int size;
+		private final Column[] columns;
+
+		Table(int size, Column[] columns) {
+			this.size = size;
+			this.columns = columns;
+		}
+
+		/**
+		 * The number of rows.
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * The column for a path.
+		 *
+		 * @throws IllegalArgumentException
+		 *             if the path is not a column.
+		 */
+		public Column column(String path) {
+			for (Column column : columns)
+				if (column.path.equals(path))
+					return column;
+			throw new IllegalArgumentException("No such column: " + path);
+		}
+
+		/**
+		 * The columns, in the order they were specified.
+		 */
+		public List<Column> columns() {
+			return Collections.unmodifiableList(Arrays.asList(columns));
+		}
+	}
+
+	/**
+	 * A column of values, one per row, with a bitmap of the rows that are null. Null rows hold 0, 0.0, false or the
+	 * code -1. The arrays returned are the column's own storage, sized to the number of rows.
+	 */
+	public static final class Column {
+		private static final int INITIAL_CAPACITY = 64;
+
+		private final String path;
+		private final Type type;
+		private final BitSet nulls = new BitSet();
+		private long[] longs;
+		private double[] doubles;
+		private boolean[] booleans;
+		private int[] codes;
+		private int lastRow = -1;
+
+		// Dictionary of distinct strings, with an open-addressed table of code + 1
+		private String[] dictionary;
+		private int dictionarySize;
+		private int[] dictionaryTable;
+
+		Column(String path, Type type) {
+			this.path = path;
+			this.type = type;
+			switch (type) {
+				case LONG:
+					longs = new long[INITIAL_CAPACITY];
+					break;
+				case DOUBLE:
+					doubles = new double[INITIAL_CAPACITY];
+					break;
+				case BOOLEAN:
+					booleans = new boolean[INITIAL_CAPACITY];
+					break;
+				default:
+					codes = new int[INITIAL_CAPACITY];
+					dictionary = new String[INITIAL_CAPACITY];
+					break;
+			}
+		}
+
+		/**
+		 * The path of the field.
+		 */
+		public String path() {
+			return path;
+		}
+
+		/**
+		 * The type of the column.
+		 */
+		public Type type() {
+			return type;
+		}
+
+		/**
+		 * Returns true if the field is missing or null in the given row.
+		 */
+		public boolean isNull(int row) {
+			return nulls.get(row);
+		}
+
+		/**
+		 * Returns a copy of the bitmap of null rows.
+		 */
+		public BitSet nulls() {
+			return (BitSet) nulls.clone();
+		}
+
+		/**
+		 * The values of a {@link Type#LONG} column.
+		 */
+		public long[] longs() {
+			check(Type.LONG);
+			return longs;
+		}
+
+		/**
+		 * The values of a {@link Type#DOUBLE} column.
+		 */
+		public double[] doubles() {
+			check(Type.DOUBLE);
+			return doubles;
+		}
+
+		/**
+		 * The values of a {@link Type#BOOLEAN} column.
+		 */
+		public boolean[] booleans() {
+			check(Type.BOOLEAN);
+			return booleans;
+		}
+
+		/**
+		 * The dictionary codes of a {@link Type#STRING} column, indexing {@link #dictionary()}.
+		 */
+		public int[] codes() {
+			check(Type.STRING);
+			return codes;
+		}
+
+		/**
+		 * The distinct strings of a {@link Type#STRING} column, in order of first appearance.
+		 */
+		public List<String> dictionary() {
+			check(Type.STRING);
+			return Collections.unmodifiableList(Arrays.asList(dictionary).subList(0, dictionarySize));
+		}
+
+		/**
+		 * The string in a row of a {@link Type#STRING} column, or null.
+		 */
+		public String string(int row) {
+			check(Type.STRING);
+			int code = codes[row];
+			return code < 0 ? null : dictionary[code];
+		}
+
+		private void check(Type expected) {
+			if (type != expected)
+				throw new IllegalStateException("Column " + path + " is " + type + ", not " + expected);
+		}
+
+		void read(JsonReader reader, int row) throws JsonParserException {
+			JsonReader.Type t = reader.current();
+			if (t == JsonReader.Type.NULL)
+				return;
+			grow(row);
+			switch (type) {
+				case LONG:
+					expect(reader, t, JsonReader.Type.NUMBER);
+					longs[row] = reader.longVal();
+					break;
+				case DOUBLE:
+					expect(reader, t, JsonReader.Type.NUMBER);
+					doubles[row] = reader.doubleVal();
+					break;
+				case BOOLEAN:
+					expect(reader, t, JsonReader.Type.BOOLEAN);
+					booleans[row] = reader.bool();
+					break;
+				default:
+					expect(reader, t, JsonReader.Type.STRING);
+					codes[row] = code(reader.valueChars(), reader.valueLength());
+					break;
+			}
+			lastRow = row;
+		}
+
+		private void expect(JsonReader reader, JsonReader.Type actual, JsonReader.Type expected)
+				throws JsonParserException {
+			if (actual != expected)
+				throw reader.createParseException(null,
+						"Expected " + expected + " for column " + path + ", got " + actual);
+		}
+
+		void endRow(int row) {
+			if (lastRow == row)
+				return;
+			grow(row);
+			nulls.set(row);
+			switch (type) {
+				case LONG:
+					longs[row] = 0;
+					break;
+				case DOUBLE:
+					doubles[row] = 0;
+					break;
+				case BOOLEAN:
+					booleans[row] = false;
+					break;
+				default:
+					codes[row] = -1;
+					break;
+			}
+		}
+
+		private void grow(int row) {
+			switch (type) {
+				case LONG:
+					if (row >= longs.length)
+						longs = Arrays.copyOf(longs, longs.length * 2);
+					break;
+				case DOUBLE:
+					if (row >= doubles.length)
+						doubles = Arrays.copyOf(doubles, doubles.length * 2);
+					break;
+				case BOOLEAN:
+					if (row >= booleans.length)
+						booleans = Arrays.copyOf(booleans, booleans.length * 2);
+					break;
+				default:
+					if (row >= codes.length)
+						codes = Arrays.copyOf(codes, codes.length * 2);
+					break;
+			}
+		}
+
+		void trim(int rows) {
+			if (longs != null)
+				longs = Arrays.copyOf(longs, rows);
+			if (doubles != null)
+				doubles = Arrays.copyOf(doubles, rows);
+			if (booleans != null)
+				booleans = Arrays.copyOf(booleans, rows);
+			if (codes != null)
+				codes = Arrays.copyOf(codes, rows);
+			dictionaryTable = null;
+		}
+
+		/**
+		 * Returns the code of a string, adding it to the dictionary if it is new. Only new strings are built.
+		 */
+		private int code(char[] chars, int length) {
+			if (dictionaryTable == null || (dictionarySize + 1) * 2 > dictionaryTable.length)
+				rehash();
+			// Same as String.hashCode(), so that dictionary entries can be compared by their cached hash
+			int h = 0;
+			// CHECKSTYLE_OFF: MagicNumber
+			for (int i = 0; i < length; i++)
+				h = 31 * h + chars[i];
+			// CHECKSTYLE_ON: MagicNumber
+			int mask = dictionaryTable.length - 1;
+			for (int slot = spread(h) & mask;; slot = (slot + 1) & mask) {
+				int code = dictionaryTable[slot] - 1;
+				if (code < 0)
+					break;
+				String s = dictionary[code];
+				if (s.hashCode() == h && matches(s, chars, length))
+					return code;
+			}
+			if (dictionarySize == dictionary.length)
+				dictionary = Arrays.copyOf(dictionary, dictionarySize * 2);
+			String s = new String(chars, 0, length);
+			dictionary[dictionarySize++] = s;
+			insert(dictionaryTable, s, dictionarySize);
+			return dictionarySize - 1;
+		}
+
+		private void rehash() {
+			int capacity = dictionaryTable == null ? INITIAL_CAPACITY : dictionaryTable.length * 2;
+			int[] t = new int[capacity];
+			for (int i = 0; i < dictionarySize; i++)
+				insert(t, dictionary[i], i + 1);
+			dictionaryTable = t;
+		}
+
+		private static void insert(int[] t, String s, int entry) {
+			int mask = t.length - 1;
+			int slot = spread(s.hashCode()) & mask;
+			while (t[slot] != 0)
+				slot = (slot + 1) & mask;
+			t[slot] = entry;
+		}
+
+		private static int spread(int h) {
+			// CHECKSTYLE_OFF: MagicNumber
+			return h ^ (h >>> 16);
+			// CHECKSTYLE_ON: MagicNumber
+		}
+
+		private static boolean matches(String s, char[] chars, int length) {
+			if (s.length() != length)
+				return false;
+			for (int i = 0; i < length; i++)
+				if (s.charAt(i) != chars[i])
+					return false;
+			return true;
+		}
+	}
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//@formatter:off
+/**
+ * A cache of parsed documents keyed by their content, for services that parse the same payloads over and over. Pass
+ * it to {@link JsonParser.JsonParserContext#withCache(JsonDocumentCache)}: an input that was parsed before is found by
+ * its hash, compared with the cached input and answered without parsing.
+ *
+ * <pre>
+ * JsonDocumentCache cache = new JsonDocumentCache(64 * 1024 * 1024);
+ * JsonObject config = JsonParser.object().withCache(cache).from(payload);
+ * </pre>
+ *
+ * Cached documents are shared between callers, so their objects and arrays are unmodifiable. The cache holds on to
+ * each input, to tell apart inputs with the same hash, and evicts the least recently used documents once the
+ * estimated size of the inputs and their trees exceeds its limit. Documents larger than the limit are not cached.
+ *
+ * Safe for use from multiple threads. A document missing from the cache may be parsed by more than one thread at
+ * once, in which case the first to finish is kept.
+ */
+//@formatter:on
+public final class JsonDocumentCache {
+	// CHECKSTYLE_OFF: MagicNumber
+	// Rough sizes of the parts of a tree, assuming compressed references
+	private static final long OBJECT = 16;
+	private static final long ARRAY = 16;
+	private static final long REFERENCE = 4;
+	private static final long STRING = 40;
+	private static final long LIST = 24;
+	private static final long ENTRY = 48;
+	private static final int INITIAL_CAPACITY = 16;
+	private static final float LOAD_FACTOR = 0.75f;
+	// CHECKSTYLE_ON: MagicNumber
+
+	private final long maxBytes;
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+	private long bytes;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Creates a cache that holds documents up to a total estimated size, in bytes.
+	 */
+	public JsonDocumentCache(long maxBytes) {
+		if (maxBytes <= 0)
+			throw new IllegalArgumentException("maxBytes must be positive");
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * The number of parses answered from the cache.
+	 */
+	public synchronized long hits() {
+		return hits;
+	}
+
+	/**
+	 * The number of parses that were not in the cache.
+	 */
+	public synchronized long misses() {
+		return misses;
+	}
+
+	/**
+	 * The number of documents evicted to stay within the size limit.
+	 */
+	public synchronized long evictions() {
+		return evictions;
+	}
+
+	/**
+	 * The number of documents in the cache.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * The estimated size of the cached documents and their inputs, in bytes.
+	 */
+	public synchronized long bytes() {
+		return bytes;
+	}
+
+	/**
+	 * Removes every document, leaving the counters as they are.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Returns the document for some JSON text, parsing and caching it if needed.
+	 */
+	Object parse(String json) throws JsonParserException {
+		Key key = new Key(json, json.hashCode());
+		Entry entry = lookup(key);
+		if (entry != null)
+			return entry.document;
+		Object document = parser(new JsonTokener(new StringReader(json))).parse(Object.class);
+		return store(key, document, STRING + (long) json.length() * 2);
+	}
+
+	/**
+	 * Returns the document for some encoded JSON text, parsing and caching it if needed.
+	 */
+	Object parse(byte[] json) throws JsonParserException {
+		Key key = new Key(json, Arrays.hashCode(json));
+		Entry entry = lookup(key);
+		if (entry != null)
+			return entry.document;
+		Object document = parser(new JsonTokener(new ByteArrayInputStream(json))).parse(Object.class);
+		return store(key, document, ARRAY + json.length);
+	}
+
+	private static JsonParser parser(JsonTokener tokener) throws JsonParserException {
+		return new JsonParser(tokener, true, false, false, false, true, true);
+	}
+
+	private synchronized Entry lookup(Key key) {
+		Entry entry = entries.get(key);
+		if (entry != null)
+			hits++;
+		else
+			misses++;
+		return entry;
+	}
+
+	private Object store(Key key, Object document, long inputBytes) {
+		long size = ENTRY + inputBytes + estimate(document, new IdentityHashMap<>());
+		synchronized (this) {
+			Entry existing = entries.get(key);
+			if (existing != null)
+				return existing.document;
+			if (size > maxBytes)
+				return document;
+			entries.put(key, new Entry(document, size));
+			bytes += size;
+			for (Iterator<Entry> it = entries.values().iterator(); bytes > maxBytes && it.hasNext();) {
+				bytes -= it.next().size;
+				it.remove();
+				evictions++;
+			}
+		}
+		return document;
+	}
+
+	/**
+	 * Estimates the retained size of a parsed value, counting each shared key layout once.
+	 */
+	private static long estimate(Object value, Map<Shape, Boolean> shapes) {
+		if (value instanceof String)
+			return STRING + (long) ((String) value).length() * 2;
+		if (value instanceof JsonLazyNumber)
+			return OBJECT + REFERENCE + ARRAY + (long) ((JsonLazyNumber) value).chars().length * 2;
+		if (value instanceof Number)
+			return OBJECT + Long.BYTES;
+		if (value instanceof FrozenJsonObject) {
+			FrozenJsonObject object = (FrozenJsonObject) value;
+			long size = OBJECT + REFERENCE * 2 + ARRAY + REFERENCE * object.size();
+			if (shapes.put(object.shape(), Boolean.TRUE) == null)
+				for (String key : object.keySet())
+					size += ARRAY + REFERENCE + estimate(key, shapes);
+			for (Object v : object.values())
+				size += estimate(v, shapes);
+			return size;
+		}
+		if (value instanceof JsonArray) {
+			JsonArray array = (JsonArray) value;
+			long size = LIST + ARRAY + REFERENCE * array.size();
+			for (Object v : array)
+				size += estimate(v, shapes);
+			return size;
+		}
+		return 0;
+	}
+
+	/**
+	 * The content of an input, either a {@link String} or a byte array, with its hash.
+	 */
+	private static final class Key {
+		private final Object content;
+		private final int hash;
+
+		Key(Object content, int hash) {
+			this.content = content;
+			this.hash = hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key other = (Key) o;
+			if (hash != other.hash)
+				return false;
+			if (content instanceof byte[])
+				return other.content instanceof byte[] && Arrays.equals((byte[]) content, (byte[]) other.content);
+			return content.equals(other.content);
+		}
+	}
+
+	/**
+	 * A cached document and its estimated size.
+	 */
+	private static final class Entry {
+		private final Object document;
+		private final long size;
+
+		Entry(Object document, long size) {
+			this.document = document;
+			this.size = size;
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import java.nio.charset.StandardCharsets;
+
+//@formatter:off
+/**
+ * An object key that is escaped and encoded once, up front. Writers emit a {@link JsonKey} with a single array copy
+ * instead of escaping the key on every call, which pays off when the same fields are written over and over.
+ *
+ * <pre>
+ * static final JsonKey ID = JsonKey.of("id");
+ * static final JsonKey NAME = JsonKey.of("name");
+ *
+ * writer.object().value(ID, user.id).value(NAME, user.name).end();
+ * </pre>
+ */
+//@formatter:on
+public final class JsonKey {
+	private final String name;
+	private final char[] chars;
+	private final byte[] utf8;
+
+	private JsonKey(String name) {
+		this.name = name;
+		String encoded = JsonWriter.string(name) + ':';
+		this.chars = encoded.toCharArray();
+		this.utf8 = encoded.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Creates a pre-encoded key.
+	 */
+	public static JsonKey of(String name) {
+		if (name == null)
+			throw new NullPointerException("name");
+		return new JsonKey(name);
+	}
+
+	/**
+	 * The unescaped key.
+	 */
+	public String name() {
+		return name;
+	}
+
+	/**
+	 * The quoted, escaped key followed by a colon.
+	 */
+	char[] chars() {
+		return chars;
+	}
+
+	/**
+	 * The UTF-8 encoding of {@link #chars()}.
+	 */
+	byte[] utf8() {
+		return utf8;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof JsonKey && ((JsonKey) o).name.equals(name);
+	}
+
+	@Override
+	public int hashCode() {
+		return name.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
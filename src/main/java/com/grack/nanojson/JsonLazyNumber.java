@@ -52,6 +52,20 @@ class JsonLazyNumber extends Number {
 		return isDouble ? (long) JavaDoubleParser.parseDouble(value) : Long.parseLong(new String(value));
 	}
 
+	/**
+	 * Returns true if the number has a fraction or an exponent.
+	 */
+	boolean isDouble() {
+		return isDouble;
+	}
+
+	/**
+	 * The number as it appeared in the source document. Must not be modified.
+	 */
+	char[] chars() {
+		return value;
+	}
+
 	@Override
 	public String toString() {
 		return new String(value);
@@ -217,7 +217,7 @@ public class JsonObject extends LinkedHashMap<String, Object> {
 	 * Returns true if the object has an element at that key (even if that element is null).
 	 */
 	public boolean has(String key) {
-		return super.containsKey(key);
+		return containsKey(key);
 	}
 
 	/**
@@ -231,7 +231,7 @@ public class JsonObject extends LinkedHashMap<String, Object> {
 	 * Returns true if the object has a null element at that key.
 	 */
 	public boolean isNull(String key) {
-		return super.containsKey(key) && get(key) == null;
+		return containsKey(key) && get(key) == null;
 	}
 
 	/**
@@ -248,4 +248,35 @@ public class JsonObject extends LinkedHashMap<String, Object> {
 		Object o = get(key);
 		return o instanceof LazyString || o instanceof String;
 	}
+
+	//@formatter:off
+	/**
+	 * Returns a new version of this object with the key set to the value, leaving this one unchanged. Only this
+	 * object is copied: every other value, including nested objects and arrays, is shared with the new version, so
+	 * changing a nested value copies just the objects on its path.
+	 *
+	 * <pre>
+	 * JsonObject next = doc.with("user", doc.getObject("user").with("name", "b"));
+	 * </pre>
+	 *
+	 * The versions of a frozen object, such as one parsed with {@link JsonParser.JsonParserContext#withFrozenObjects()},
+	 * are frozen too, and share the key layout where the key was already present. Other versions are modifiable, and
+	 * modifying a shared value in place shows through in every version that holds it.
+	 */
+	//@formatter:on
+	public JsonObject with(String key, Object value) {
+		JsonObject copy = new JsonObject(this);
+		copy.put(key, value);
+		return copy;
+	}
+
+	/**
+	 * Returns a new version of this object without the key, leaving this one unchanged. See
+	 * {@link #with(String, Object)}.
+	 */
+	public JsonObject without(String key) {
+		JsonObject copy = new JsonObject(this);
+		copy.remove(key);
+		return copy;
+	}
 }
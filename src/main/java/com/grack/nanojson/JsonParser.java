@@ -24,6 +24,8 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.net.URL;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Simple JSON parser.
@@ -37,11 +39,29 @@ import java.util.Arrays;
  */
 public final class JsonParser {
 	private Object value;
+	private static final int INITIAL_SLOTS = 16;
+
+	/**
+	 * Frozen objects with more keys than this are given a shape of their own, built once, rather than one from the
+	 * shared tree. Map-like objects with many distinct keys would otherwise leave a chain of single-use shapes behind.
+	 */
+	static final int MAX_SHARED_KEYS = 64;
+
 	private int token;
+	private boolean skipNumber;
+
+	// The shapes of frozen objects, and the stack of values of the frozen objects being parsed
+	private Shape shapes;
+	private Object[] slots;
+	private int slotCount;
 
 	private final JsonTokener tokener;
 	private final boolean lazyNumbers;
 	private final boolean lazyStrings;
+	private final boolean compactObjects;
+	private final boolean primitiveArrays;
+	private final boolean frozenObjects;
+	private final boolean frozenArrays;
 
 	/**
 	 * Returns a type-safe parser context for a {@link JsonObject},
@@ -54,6 +74,10 @@ public final class JsonParser {
 		private final Class<T> clazz;
 		private boolean lazyNumbers = true;
 		private boolean lazyStrings = true;
+		private boolean compactObjects;
+		private boolean primitiveArrays;
+		private boolean frozenObjects;
+		private JsonDocumentCache cache;
 
 		JsonParserContext(Class<T> clazz) {
 			this.clazz = clazz;
@@ -77,18 +101,63 @@ public final class JsonParser {
 			return this;
 		}
 
+		/**
+		 * Parses objects into a compact {@link JsonObject} that stores its entries in flat arrays rather than
+		 * {@link java.util.LinkedHashMap} nodes, taking roughly half the memory. Useful for documents that are kept
+		 * around, such as cached responses.
+		 */
+		public JsonParserContext<T> withCompactObjects() {
+			compactObjects = true;
+			return this;
+		}
+
+		/**
+		 * Parses arrays that contain only integers, or only decimals, into a {@link JsonArray} backed by an
+		 * {@code int[]}, {@code long[]} or {@code double[]}. Their elements are read as {@link Integer}, {@link Long}
+		 * or {@link Double} rather than lazily, and {@link JsonArray#toIntArray()} and friends copy them out in bulk.
+		 */
+		public JsonParserContext<T> withPrimitiveArrays() {
+			primitiveArrays = true;
+			return this;
+		}
+
+		/**
+		 * Parses objects into an unmodifiable {@link JsonObject} that holds only its values. Its keys live in a
+		 * layout shared with every other object in the document that has the same keys in the same order, such as the
+		 * elements of a large array of records. Modifying a frozen object throws
+		 * {@link UnsupportedOperationException}. Takes precedence over {@link #withCompactObjects()}.
+		 */
+		public JsonParserContext<T> withFrozenObjects() {
+			frozenObjects = true;
+			return this;
+		}
+
+		/**
+		 * Looks each document up in a cache by its content before parsing it, so that identical inputs are parsed
+		 * once and share one unmodifiable tree. Cached documents are always parsed with frozen objects, frozen arrays
+		 * and plain strings, ignoring the other options of this context.
+		 */
+		public JsonParserContext<T> withCache(JsonDocumentCache documentCache) {
+			this.cache = documentCache;
+			return this;
+		}
+
 		/**
 		 * Parses the current JSON type from a {@link String}.
 		 */
 		public T from(String s) throws JsonParserException {
-			return new JsonParser(new JsonTokener(new StringReader(s)), lazyNumbers, lazyStrings).parse(clazz);
+			if (cache != null)
+				return checkType(clazz, cache.parse(s));
+			return parser(new JsonTokener(new StringReader(s))).parse(clazz);
 		}
 
 		/**
 		 * Parses the current` JSON type from a {@link Reader}.
 		 */
 		public T from(Reader r) throws JsonParserException {
-			return new JsonParser(new JsonTokener(r), lazyNumbers, lazyStrings).parse(clazz);
+			if (cache != null)
+				return from(readFully(r));
+			return parser(new JsonTokener(r)).parse(clazz);
 		}
 
 		/**
@@ -109,14 +178,48 @@ public final class JsonParser {
 		 * from the input stream.
 		 */
 		public T from(InputStream stm) throws JsonParserException {
-			return new JsonParser(new JsonTokener(stm), lazyNumbers, lazyStrings).parse(clazz);
+			if (cache != null) {
+				byte[] bytes;
+				try (InputStream in = stm) {
+					bytes = in.readAllBytes();
+				} catch (IOException e) {
+					throw new JsonParserException(e, "IOException reading input", 1, 1, 0);
+				}
+				return checkType(clazz, cache.parse(bytes));
+			}
+			return parser(new JsonTokener(stm)).parse(clazz);
+		}
+
+		private JsonParser parser(JsonTokener tokener) throws JsonParserException {
+			return new JsonParser(tokener, lazyNumbers, lazyStrings, compactObjects, primitiveArrays, frozenObjects,
+					false);
+		}
+
+		/**
+		 * Reads a {@link Reader} to its end and closes it, as parsing without a cache would.
+		 */
+		private static String readFully(Reader r) throws JsonParserException {
+			StringBuilder s = new StringBuilder();
+			char[] chars = new char[JsonTokener.BUFFER_SIZE];
+			try (Reader in = r) {
+				for (int n; (n = in.read(chars)) > 0;)
+					s.append(chars, 0, n);
+			} catch (IOException e) {
+				throw new JsonParserException(e, "IOException reading input", 1, 1, 0);
+			}
+			return s.toString();
 		}
 	}
 
-	JsonParser(JsonTokener tokener, boolean lazyNumbers, boolean lazyStrings) throws JsonParserException {
+	JsonParser(JsonTokener tokener, boolean lazyNumbers, boolean lazyStrings, boolean compactObjects,
+			boolean primitiveArrays, boolean frozenObjects, boolean frozenArrays) throws JsonParserException {
 		this.tokener = tokener;
 		this.lazyNumbers = lazyNumbers;
 		this.lazyStrings = lazyStrings;
+		this.compactObjects = compactObjects;
+		this.primitiveArrays = primitiveArrays;
+		this.frozenObjects = frozenObjects;
+		this.frozenArrays = frozenArrays;
 	}
 
 	/**
@@ -180,6 +283,16 @@ public final class JsonParser {
 		}
 	}
 
+	/**
+	 * Checks the type of a document that was parsed earlier and served from a {@link JsonDocumentCache}.
+	 */
+	static <T> T checkType(Class<T> clazz, Object parsed) throws JsonParserException {
+		if (clazz != Object.class && !clazz.isInstance(parsed))
+			throw new JsonParserException(null,
+					"JSON did not contain the correct type, expected " + clazz.getSimpleName() + ".", 1, 1, 0);
+		return clazz.cast(parsed);
+	}
+
 	/**
 	 * Starts parsing a JSON value at the current token position.
 	 */
@@ -197,11 +310,19 @@ public final class JsonParser {
 	 * numbers.
 	 */
 	private int advanceToken() throws JsonParserException {
+		boolean skip = skipNumber;
+		skipNumber = false;
 		token = tokener.advanceToToken();
 		switch (token) {
 			case JsonTokener.TOKEN_ARRAY_START: // Inlined function to avoid additional stack
-				JsonArray list = new JsonArray();
-				if (advanceToken() != JsonTokener.TOKEN_ARRAY_END)
+				JsonArray list;
+				if (primitiveArrays) {
+					list = numericArray();
+				} else {
+					list = new JsonArray();
+					advanceToken();
+				}
+				if (token != JsonTokener.TOKEN_ARRAY_END)
 					while (true) {
 						list.add(currentValue());
 						if (advanceToken() == JsonTokener.TOKEN_ARRAY_END)
@@ -212,10 +333,14 @@ public final class JsonParser {
 						if (advanceToken() == JsonTokener.TOKEN_ARRAY_END)
 							throw tokener.createParseException(null, "Trailing comma found in array", true);
 					}
-				value = list;
+				value = frozenArrays ? new FrozenJsonArray(list) : list;
 				return token = JsonTokener.TOKEN_ARRAY_START;
 			case JsonTokener.TOKEN_OBJECT_START: // Inlined function to avoid additional stack
-				JsonObject map = new JsonObject();
+				if (frozenObjects) {
+					value = frozenObject();
+					return token = JsonTokener.TOKEN_OBJECT_START;
+				}
+				JsonObject map = compactObjects ? new CompactJsonObject() : new JsonObject();
 				if (advanceToken() != JsonTokener.TOKEN_OBJECT_END)
 					while (true) {
 						if (token != JsonTokener.TOKEN_STRING)
@@ -233,6 +358,8 @@ public final class JsonParser {
 						if (advanceToken() == JsonTokener.TOKEN_OBJECT_END)
 							throw tokener.createParseException(null, "Trailing object found in array", true);
 					}
+				if (compactObjects)
+					((CompactJsonObject) map).trimToSize();
 				value = map;
 				return token = JsonTokener.TOKEN_OBJECT_START;
 			case JsonTokener.TOKEN_TRUE:
@@ -250,13 +377,8 @@ public final class JsonParser {
 				value = lazyStrings ? new LazyString(chars) : new String(chars);
 				break;
 			case JsonTokener.TOKEN_NUMBER:
-				if (lazyNumbers) {
-					chars = tokener.reusableBuffer.array();
-					chars = Arrays.copyOf(chars, tokener.reusableBuffer.position());
-					value = new JsonLazyNumber(chars, tokener.isDouble);
-				} else {
-					value = parseNumber();
-				}
+				if (!skip)
+					value = lazyNumbers ? lazyNumber() : parseNumber();
 				break;
 			default:
 		}
@@ -264,13 +386,116 @@ public final class JsonParser {
 		return token;
 	}
 
+	/**
+	 * Reads the numbers at the start of an array into primitive storage. Returns the complete array if it holds only
+	 * numbers of one kind. Otherwise returns the numbers so far in a {@link JsonArray}, parsed from their text as any
+	 * other array's would be, with the current token and value set to the first element that did not fit, for the
+	 * caller to carry on from.
+	 */
+	private JsonArray numericArray() throws JsonParserException {
+		skipNumber = true;
+		if (advanceToken() == JsonTokener.TOKEN_ARRAY_END)
+			return new JsonArray();
+		NumericJsonArray.Builder numbers = new NumericJsonArray.Builder();
+		while (token == JsonTokener.TOKEN_NUMBER
+				&& numbers.append(tokener.reusableBuffer.array(), tokener.reusableBuffer.position(), tokener.isDouble)) {
+			if (advanceToken() == JsonTokener.TOKEN_ARRAY_END)
+				return numbers.build();
+			if (token != JsonTokener.TOKEN_COMMA)
+				throw tokener.createParseException(null,
+						"Expected a comma or end of the array instead of " + token, true);
+			skipNumber = true;
+			if (advanceToken() == JsonTokener.TOKEN_ARRAY_END)
+				throw tokener.createParseException(null, "Trailing comma found in array", true);
+		}
+		if (token == JsonTokener.TOKEN_NUMBER)
+			value = lazyNumbers ? lazyNumber() : parseNumber();
+		JsonArray list = new JsonArray();
+		for (int i = 0; i < numbers.size(); i++) {
+			char[] chars = numbers.text(i);
+			list.add(lazyNumbers ? new JsonLazyNumber(chars, numbers.isDouble()) : parseNumber(chars, numbers.isDouble()));
+		}
+		return list;
+	}
+
+	/**
+	 * Parses the rest of an object into a {@link FrozenJsonObject}, moving along the transitions of the document's
+	 * shapes as it reads each key. The values are gathered on the slot stack, above those of any enclosing objects.
+	 * Past {@link #MAX_SHARED_KEYS} keys, the rest are tracked in a hash map and the object gets a shape of its own.
+	 */
+	private JsonObject frozenObject() throws JsonParserException {
+		if (shapes == null) {
+			shapes = Shape.root();
+			slots = new Object[INITIAL_SLOTS];
+		}
+		Shape shape = shapes;
+		Map<String, Integer> keys = null;
+		int base = slotCount;
+		if (advanceToken() != JsonTokener.TOKEN_OBJECT_END)
+			while (true) {
+				if (token != JsonTokener.TOKEN_STRING)
+					throw tokener.createParseException(null, "Expected STRING, got " + token, true);
+				String key = lazyStrings ? value.toString() : (String) value;
+				if (advanceToken() != JsonTokener.TOKEN_COLON)
+					throw tokener.createParseException(null, "Expected COLON, got " + token, true);
+				advanceToken();
+				Object v = currentValue();
+				int i;
+				if (keys != null) {
+					Integer existing = keys.putIfAbsent(key, slotCount - base);
+					i = existing == null ? -1 : existing;
+				} else {
+					Shape next = shape.transition(key);
+					i = next == null ? shape.scan(key) : -1;
+					if (i < 0) {
+						if (shape.size() < MAX_SHARED_KEYS) {
+							shape = next == null ? shape.with(key) : next;
+						} else {
+							keys = new LinkedHashMap<>();
+							for (int k = 0; k < shape.size(); k++)
+								keys.put(shape.key(k), k);
+							keys.put(key, shape.size());
+						}
+					}
+				}
+				if (i >= 0) {
+					slots[base + i] = v;
+				} else {
+					if (slotCount == slots.length)
+						slots = Arrays.copyOf(slots, slotCount * 2);
+					slots[slotCount++] = v;
+				}
+				if (advanceToken() == JsonTokener.TOKEN_OBJECT_END)
+					break;
+				if (token != JsonTokener.TOKEN_COMMA)
+					throw tokener.createParseException(null,
+							"Expected a comma or end of the object instead of " + token, true);
+				if (advanceToken() == JsonTokener.TOKEN_OBJECT_END)
+					throw tokener.createParseException(null, "Trailing object found in array", true);
+			}
+		Object[] values = Arrays.copyOfRange(slots, base, slotCount);
+		Arrays.fill(slots, base, slotCount, null);
+		slotCount = base;
+		if (keys != null)
+			shape = Shape.of(keys.keySet().toArray(new String[0]));
+		return new FrozenJsonObject(shape, values);
+	}
+
+	private Number lazyNumber() {
+		char[] chars = Arrays.copyOf(tokener.reusableBuffer.array(), tokener.reusableBuffer.position());
+		return new JsonLazyNumber(chars, tokener.isDouble);
+	}
+
 	private Number parseNumber() throws JsonParserException {
-		char[] number = tokener.reusableBuffer.array();
-		number = Arrays.copyOf(number, tokener.reusableBuffer.position());
+		return parseNumber(Arrays.copyOf(tokener.reusableBuffer.array(), tokener.reusableBuffer.position()),
+				tokener.isDouble);
+	}
+
+	private Number parseNumber(char[] number, boolean isDouble) throws JsonParserException {
 		int numLength = number.length;
 
 		try {
-			if (tokener.isDouble)
+			if (isDouble)
 				return JavaDoubleParser.parseDouble(number);
 
 			// Quick parse for single-digits
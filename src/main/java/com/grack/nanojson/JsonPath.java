@@ -0,0 +1,643 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+//@formatter:off
+/**
+ * A compiled path into a parsed document, written either as a JSONPath or as a JSON Pointer (RFC 6901).
+ *
+ * <pre>
+ * private static final JsonPath NAME = JsonPath.compile("$.users[0].name");
+ * String name = NAME.read(doc, String.class);
+ * List&lt;Object&gt; cheap = JsonPath.compile("$..items[?(@.price &lt; 10)].id").readAll(doc);
+ * Object same = JsonPath.compile("/users/0/name").read(doc);
+ * </pre>
+ *
+ * JSONPaths start with {@code $} and are made of these steps:
+ * <ul>
+ * <li>{@code .name}, {@code ['name']} or {@code ["name"]}: the member of an object,</li>
+ * <li>{@code [2]}: the element of an array, counting from the end if negative,</li>
+ * <li>{@code .*} or {@code [*]}: every member or element,</li>
+ * <li>{@code ..name}, {@code ..*} or {@code ..[2]}: the step applied to the value and everything in it,</li>
+ * <li>{@code [?(@.path)]} and {@code [?(@.path op literal)]}: every member or element for which the relative path
+ * exists, or compares to a number, string, boolean or null with {@code ==}, {@code !=}, {@code <}, {@code <=},
+ * {@code >} or {@code >=}.</li>
+ * </ul>
+ *
+ * Values are matched in the order RFC 9535 gives: each step is applied in turn to the values the one before matched,
+ * and a descent applies its step to a value and then to each value inside it, outermost first. This is not always
+ * document order, as {@code $..*} lists every member of an object before the members inside them, and a value that
+ * nested descents reach in more than one way is matched once for each.
+ *
+ * A path is parsed once into an array of steps, and compiled paths are cached by their text. Paths without
+ * wildcards, descents or filters are evaluated by a plain loop; the others produce their results lazily through
+ * {@link #stream(Object)}. A {@link JsonPath} is immutable and may be shared between threads.
+ */
+//@formatter:on
+public final class JsonPath {
+	private static final int MAX_CACHED = 1024;
+	private static final Map<String, JsonPath> CACHE = new ConcurrentHashMap<>();
+
+	/**
+	 * Returned by a step that does not match, as null is a value.
+	 */
+	private static final Object MISSING = new Object();
+
+	private final String path;
+	private final Step[] steps;
+	private final boolean definite;
+
+	private JsonPath(String path, Step[] steps) {
+		this.path = path;
+		this.steps = steps;
+		boolean d = true;
+		for (Step step : steps)
+			d &= step.definite();
+		this.definite = d;
+	}
+
+	/**
+	 * Compiles a JSONPath starting with {@code $}, or a JSON Pointer that is empty or starts with {@code /}.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the path is not valid.
+	 */
+	public static JsonPath compile(String path) {
+		JsonPath compiled = CACHE.get(path);
+		if (compiled == null) {
+			compiled = new PathParser(path).parse();
+			if (CACHE.size() < MAX_CACHED)
+				CACHE.putIfAbsent(path, compiled);
+		}
+		return compiled;
+	}
+
+	/**
+	 * Returns true if the path has no wildcards, descents or filters, and so matches at most one value.
+	 */
+	public boolean isDefinite() {
+		return definite;
+	}
+
+	/**
+	 * Returns the first value the path matches, or null if it matches nothing.
+	 */
+	public Object read(Object document) {
+		Object value = first(document);
+		return value == MISSING ? null : value;
+	}
+
+	/**
+	 * Returns the first value the path matches if it is of the given type, or null. Lazily parsed strings are
+	 * returned as {@link String}s.
+	 */
+	public <T> T read(Object document, Class<T> clazz) {
+		Object value = read(document);
+		if (value instanceof LazyString && clazz.isAssignableFrom(String.class))
+			return clazz.cast(value.toString());
+		return clazz.isInstance(value) ? clazz.cast(value) : null;
+	}
+
+	/**
+	 * Returns true if the path matches at least one value, even if that value is null.
+	 */
+	public boolean exists(Object document) {
+		return first(document) != MISSING;
+	}
+
+	/**
+	 * Returns every value the path matches, in the order described above.
+	 */
+	public List<Object> readAll(Object document) {
+		if (definite) {
+			Object value = first(document);
+			List<Object> list = new ArrayList<>(1);
+			if (value != MISSING)
+				list.add(value);
+			return list;
+		}
+		return stream(document).collect(Collectors.toList());
+	}
+
+	/**
+	 * Returns the values the path matches, in the order described above, finding each only as the stream is consumed.
+	 */
+	public Stream<Object> stream(Object document) {
+		if (definite) {
+			Object value = first(document);
+			return value == MISSING ? Stream.empty() : Stream.of(value);
+		}
+		return stream(document, 0);
+	}
+
+	/**
+	 * The values matched by the steps from the given one on, applied to a node.
+	 */
+	Stream<Object> stream(Object node, int from) {
+		Stream<Object> values = Stream.of(node);
+		for (int i = from; i < steps.length; i++)
+			values = values.flatMap(steps[i]::all);
+		return values;
+	}
+
+	/**
+	 * The number of steps.
+	 */
+	int size() {
+		return steps.length;
+	}
+
+	Step step(int index) {
+		return steps[index];
+	}
+
+	private Object first(Object document) {
+		if (!definite)
+			return stream(document).findFirst().orElse(MISSING);
+		Object value = document;
+		for (Step step : steps) {
+			value = step.one(value);
+			if (value == MISSING)
+				break;
+		}
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return path;
+	}
+
+	/**
+	 * Returns the members of an object or the elements of an array.
+	 */
+	private static Stream<Object> children(Object node) {
+		if (node instanceof Map)
+			return ((Map<?, ?>) node).values().stream().map(Object.class::cast);
+		if (node instanceof List)
+			return ((List<?>) node).stream().map(Object.class::cast);
+		return Stream.empty();
+	}
+
+	/**
+	 * A single step of a path.
+	 */
+	abstract static class Step {
+		/**
+		 * True if this step matches at most one value.
+		 */
+		boolean definite() {
+			return true;
+		}
+
+		/**
+		 * True if this step selects the member or element a {@link JsonReader} is positioned on, from its key if in an
+		 * object, or otherwise its index. Only called on steps that {@link #streamable()} accepts.
+		 */
+		boolean accepts(JsonReader reader, boolean inObject, int index) {
+			return false;
+		}
+
+		/**
+		 * True if this step can be decided from the key or index of a member or element alone, without knowing the
+		 * size of the array or what the value contains.
+		 */
+		boolean streamable() {
+			return true;
+		}
+
+		/**
+		 * The value this step matches in a node, or {@link #MISSING}. Only called on definite steps.
+		 */
+		Object one(Object node) {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * The values this step matches in a node.
+		 */
+		Stream<Object> all(Object node) {
+			Object value = one(node);
+			return value == MISSING ? Stream.empty() : Stream.of(value);
+		}
+	}
+
+	/**
+	 * An object member. JSON Pointer tokens that are array indexes also select array elements.
+	 */
+	static final class Member extends Step {
+		private final String name;
+		private final int index;
+
+		Member(String name, int index) {
+			this.name = name;
+			this.index = index;
+		}
+
+		@Override
+		Object one(Object node) {
+			if (node instanceof Map) {
+				Map<?, ?> map = (Map<?, ?>) node;
+				Object value = map.get(name);
+				return value != null || map.containsKey(name) ? value : MISSING;
+			}
+			if (index >= 0 && node instanceof List) {
+				List<?> list = (List<?>) node;
+				return index < list.size() ? list.get(index) : MISSING;
+			}
+			return MISSING;
+		}
+
+		@Override
+		boolean accepts(JsonReader reader, boolean inObject, int i) {
+			return inObject ? reader.keyEquals(name) : i == index;
+		}
+	}
+
+	/**
+	 * An array element, counting from the end if negative.
+	 */
+	static final class Index extends Step {
+		private final int index;
+
+		Index(int index) {
+			this.index = index;
+		}
+
+		@Override
+		Object one(Object node) {
+			if (!(node instanceof List))
+				return MISSING;
+			List<?> list = (List<?>) node;
+			int i = index < 0 ? list.size() + index : index;
+			return i >= 0 && i < list.size() ? list.get(i) : MISSING;
+		}
+
+		@Override
+		boolean accepts(JsonReader reader, boolean inObject, int i) {
+			return !inObject && i == index;
+		}
+
+		@Override
+		boolean streamable() {
+			return index >= 0;
+		}
+	}
+
+	/**
+	 * Every member or element.
+	 */
+	static final class Wildcard extends Step {
+		@Override
+		boolean definite() {
+			return false;
+		}
+
+		@Override
+		boolean accepts(JsonReader reader, boolean inObject, int index) {
+			return true;
+		}
+
+		@Override
+		Stream<Object> all(Object node) {
+			return children(node);
+		}
+	}
+
+	/**
+	 * A step applied to a node and then to each node inside it, in pre-order.
+	 */
+	static final class Descent extends Step {
+		private final Step step;
+
+		Descent(Step step) {
+			this.step = step;
+		}
+
+		@Override
+		boolean definite() {
+			return false;
+		}
+
+		@Override
+		boolean accepts(JsonReader reader, boolean inObject, int index) {
+			return step.accepts(reader, inObject, index);
+		}
+
+		@Override
+		boolean streamable() {
+			return step.streamable();
+		}
+
+		@Override
+		Stream<Object> all(Object node) {
+			return descendants(node).flatMap(step::all);
+		}
+
+		private static Stream<Object> descendants(Object node) {
+			if (!(node instanceof Map || node instanceof Collection))
+				return Stream.of(node);
+			return Stream.concat(Stream.of(node), children(node).flatMap(Descent::descendants));
+		}
+	}
+
+	/**
+	 * Every member or element for which a relative path exists, or compares to a literal.
+	 */
+	static final class Filter extends Step {
+		private final JsonPath relative;
+		private final String operator;
+		private final Object literal;
+
+		Filter(JsonPath relative, String operator, Object literal) {
+			this.relative = relative;
+			this.operator = operator;
+			this.literal = literal;
+		}
+
+		@Override
+		boolean definite() {
+			return false;
+		}
+
+		@Override
+		Stream<Object> all(Object node) {
+			return children(node).filter(this::matches);
+		}
+
+		/**
+		 * Filters need the whole member or element, so are evaluated over a copy of it.
+		 */
+		@Override
+		boolean streamable() {
+			return false;
+		}
+
+		boolean matches(Object child) {
+			Object value = relative.first(child);
+			if (value == MISSING)
+				return false;
+			if (operator == null)
+				return true;
+			int c;
+			if (value instanceof Number && literal instanceof Number) {
+				c = Double.compare(((Number) value).doubleValue(), ((Number) literal).doubleValue());
+			} else if ((value instanceof String || value instanceof LazyString) && literal instanceof String) {
+				c = value.toString().compareTo((String) literal);
+			} else {
+				boolean equal = value == null ? literal == null : value.equals(literal);
+				return equal ? operator.equals("==") || operator.equals("<=") || operator.equals(">=")
+						: operator.equals("!=");
+			}
+			switch (operator) {
+				case "==":
+					return c == 0;
+				case "!=":
+					return c != 0;
+				case "<":
+					return c < 0;
+				case "<=":
+					return c <= 0;
+				case ">":
+					return c > 0;
+				default:
+					return c >= 0;
+			}
+		}
+	}
+
+	/**
+	 * Parses the text of a path into steps.
+	 */
+	private static final class PathParser {
+		private final String path;
+		private int position;
+
+		PathParser(String path) {
+			this.path = path;
+		}
+
+		JsonPath parse() {
+			List<Step> steps = new ArrayList<>();
+			if (path.isEmpty() || path.charAt(0) == '/') {
+				pointer(steps);
+			} else {
+				expect('$');
+				steps(steps, false);
+			}
+			return new JsonPath(path, steps.toArray(new Step[0]));
+		}
+
+		/**
+		 * Parses the tokens of a JSON Pointer.
+		 */
+		private void pointer(List<Step> steps) {
+			while (position < path.length()) {
+				int end = path.indexOf('/', position + 1);
+				if (end < 0)
+					end = path.length();
+				String token = path.substring(position + 1, end);
+				for (int i = token.indexOf('~'); i >= 0; i = token.indexOf('~', i + 1)) {
+					if (i + 1 == token.length() || token.charAt(i + 1) != '0' && token.charAt(i + 1) != '1') {
+						position += i + 1;
+						throw error("Expected '~0' or '~1'");
+					}
+				}
+				token = token.replace("~1", "/").replace("~0", "~");
+				steps.add(new Member(token, arrayIndex(token)));
+				position = end;
+			}
+		}
+
+		/**
+		 * Parses JSONPath steps until the end of the path, or the end of a filter.
+		 */
+		private void steps(List<Step> steps, boolean inFilter) {
+			while (position < path.length()) {
+				char c = path.charAt(position);
+				if (c == '.') {
+					position++;
+					if (peek('.')) {
+						position++;
+						steps.add(new Descent(peek('[') ? bracket() : dotted()));
+					} else {
+						steps.add(dotted());
+					}
+				} else if (c == '[') {
+					steps.add(bracket());
+				} else if (inFilter) {
+					return;
+				} else {
+					throw error("Expected '.' or '['");
+				}
+			}
+		}
+
+		private Step dotted() {
+			if (peek('*')) {
+				position++;
+				return new Wildcard();
+			}
+			int start = position;
+			while (position < path.length() && (Character.isLetterOrDigit(path.charAt(position))
+					|| path.charAt(position) == '_' || path.charAt(position) == '-' || path.charAt(position) == '$'))
+				position++;
+			if (start == position)
+				throw error("Expected a member name");
+			return new Member(path.substring(start, position), -1);
+		}
+
+		private Step bracket() {
+			expect('[');
+			Step step;
+			if (peek('*')) {
+				position++;
+				step = new Wildcard();
+			} else if (peek('\'') || peek('"')) {
+				step = new Member(quoted(), -1);
+			} else if (peek('?')) {
+				step = filter();
+			} else {
+				int start = position;
+				if (peek('-'))
+					position++;
+				while (position < path.length() && Character.isDigit(path.charAt(position)))
+					position++;
+				try {
+					step = new Index(Integer.parseInt(path.substring(start, position)));
+				} catch (NumberFormatException e) {
+					position = start;
+					throw error("Expected an index, a quoted name, '*' or a filter");
+				}
+			}
+			expect(']');
+			return step;
+		}
+
+		private Step filter() {
+			expect('?');
+			expect('(');
+			skipSpaces();
+			expect('@');
+			List<Step> steps = new ArrayList<>();
+			int start = position;
+			steps(steps, true);
+			JsonPath relative = new JsonPath("$" + path.substring(start, position), steps.toArray(new Step[0]));
+			if (!relative.isDefinite())
+				throw error("Filter paths must be definite");
+			skipSpaces();
+			String operator = null;
+			Object literal = null;
+			if (!peek(')')) {
+				operator = operator();
+				skipSpaces();
+				literal = literal();
+				skipSpaces();
+			}
+			expect(')');
+			return new Filter(relative, operator, literal);
+		}
+
+		private String operator() {
+			for (String operator : new String[] { "==", "!=", "<=", ">=", "<", ">" }) {
+				if (path.startsWith(operator, position)) {
+					position += operator.length();
+					return operator;
+				}
+			}
+			throw error("Expected a comparison operator");
+		}
+
+		private Object literal() {
+			if (peek('\'') || peek('"'))
+				return quoted();
+			for (String word : new String[] { "true", "false", "null" }) {
+				if (path.startsWith(word, position)) {
+					position += word.length();
+					return word.equals("null") ? null : Boolean.valueOf(word);
+				}
+			}
+			int start = position;
+			while (position < path.length() && "+-.0123456789eE".indexOf(path.charAt(position)) >= 0)
+				position++;
+			try {
+				return Double.valueOf(path.substring(start, position));
+			} catch (NumberFormatException e) {
+				position = start;
+				throw error("Expected a number, string, boolean or null");
+			}
+		}
+
+		/**
+		 * Parses a name in single or double quotes, in which a backslash escapes the next character.
+		 */
+		private String quoted() {
+			char quote = path.charAt(position++);
+			StringBuilder s = new StringBuilder();
+			while (position < path.length() && path.charAt(position) != quote) {
+				char c = path.charAt(position++);
+				if (c == '\\') {
+					if (position == path.length())
+						break;
+					c = path.charAt(position++);
+				}
+				s.append(c);
+			}
+			expect(quote);
+			return s.toString();
+		}
+
+		private static int arrayIndex(String token) {
+			if (token.isEmpty() || token.length() > 1 && token.charAt(0) == '0')
+				return -1;
+			for (int i = 0; i < token.length(); i++)
+				if (!Character.isDigit(token.charAt(i)))
+					return -1;
+			try {
+				return Integer.parseInt(token);
+			} catch (NumberFormatException e) {
+				return -1;
+			}
+		}
+
+		private void skipSpaces() {
+			while (peek(' '))
+				position++;
+		}
+
+		private boolean peek(char c) {
+			return position < path.length() && path.charAt(position) == c;
+		}
+
+		private void expect(char c) {
+			if (!peek(c))
+				throw error("Expected '" + c + "'");
+			position++;
+		}
+
+		private IllegalArgumentException error(String message) {
+			return new IllegalArgumentException(message + " at position " + position + " of path " + path);
+		}
+	}
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+//@formatter:off
+/**
+ * Evaluates a set of {@link JsonPath}s in a single streaming pass over a {@link JsonReader}, delivering each value
+ * matched to the callback of its path without holding the document in memory.
+ *
+ * <pre>
+ * JsonPathScanner scanner = JsonPathScanner.builder()
+ *     .path("$.meta.id", id -&gt; ...)
+ *     .path("$.items[*].sku", sku -&gt; ...)
+ *     .path("$.items[?(@.price &lt; 10)].name", name -&gt; ...)
+ *     .build();
+ * scanner.from(inputStream);
+ * </pre>
+ *
+ * The scanner follows the paths as it reads, and skips every member and element that no path can reach. Only the
+ * values delivered are built, as the same types {@link JsonParser} produces, with objects and arrays in full. A
+ * member or element tested by a filter is built so the filter can look inside it, and so is a whole array indexed
+ * from its end. Values are delivered in document order, except that the matches inside a value that had to be built
+ * are delivered together, path by path. As in RFC 9535, a value that a path reaches in more than one way, such as
+ * through nested descendant segments, is delivered once for each, so a path delivers the same values as
+ * {@link JsonPath#readAll(Object)}, if not always in the same order. A {@link JsonPathScanner} is immutable and may be
+ * shared between threads.
+ */
+//@formatter:on
+public final class JsonPathScanner {
+	private final JsonPath[] paths;
+	private final List<Consumer<Object>> callbacks;
+
+	/**
+	 * The states of a path are numbered path * stride + step, where step is the next step to apply.
+	 */
+	private final int stride;
+
+	private JsonPathScanner(JsonPath[] paths, List<Consumer<Object>> callbacks) {
+		this.paths = paths;
+		this.callbacks = callbacks;
+		int max = 0;
+		for (JsonPath path : paths)
+			max = Math.max(max, path.size());
+		this.stride = max + 1;
+	}
+
+	/**
+	 * Starts a scanner specification.
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Builds a {@link JsonPathScanner} from paths and their callbacks.
+	 */
+	public static final class Builder {
+		private final List<JsonPath> paths = new ArrayList<>();
+		private final List<Consumer<Object>> callbacks = new ArrayList<>();
+
+		Builder() {
+		}
+
+		/**
+		 * Adds a path, compiled with {@link JsonPath#compile(String)}.
+		 *
+		 * @throws IllegalArgumentException
+		 *             if the path is not valid.
+		 */
+		public Builder path(String path, Consumer<Object> callback) {
+			return path(JsonPath.compile(path), callback);
+		}
+
+		/**
+		 * Adds a path. A path may be added more than once, with different callbacks.
+		 */
+		public Builder path(JsonPath path, Consumer<Object> callback) {
+			if (path == null || callback == null)
+				throw new NullPointerException();
+			paths.add(path);
+			callbacks.add(callback);
+			return this;
+		}
+
+		/**
+		 * Builds the scanner.
+		 */
+		public JsonPathScanner build() {
+			return new JsonPathScanner(paths.toArray(new JsonPath[0]), new ArrayList<>(callbacks));
+		}
+	}
+
+	/**
+	 * Scans a document in a {@link String}.
+	 */
+	public void from(String s) throws JsonParserException {
+		fromReader(JsonReader.from(s));
+	}
+
+	/**
+	 * Scans a document read from a {@link Reader}.
+	 */
+	public void from(Reader r) throws JsonParserException {
+		fromReader(JsonReader.from(r));
+	}
+
+	/**
+	 * Scans a document read from an {@link InputStream}. Detects the encoding from the input stream.
+	 */
+	public void from(InputStream stm) throws JsonParserException {
+		fromReader(JsonReader.from(stm));
+	}
+
+	/**
+	 * Scans the value the {@link JsonReader} is currently positioned over, treating it as the root of the paths. An
+	 * object or array is read to its end.
+	 */
+	public void read(JsonReader reader) throws JsonParserException {
+		int[] states = new int[paths.length];
+		for (int i = 0; i < states.length; i++)
+			states[i] = i * stride;
+		visit(reader, states, states.length);
+	}
+
+	private void fromReader(JsonReader reader) throws JsonParserException {
+		try {
+			read(reader);
+		} finally {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				// Don't mask the original exception
+			}
+		}
+	}
+
+	/**
+	 * Scans the current value, given the states of the paths that reach it.
+	 */
+	private void visit(JsonReader reader, int[] states, int count) throws JsonParserException {
+		JsonReader.Type type = reader.current();
+		boolean container = type == JsonReader.Type.OBJECT || type == JsonReader.Type.ARRAY;
+		for (int i = 0; i < count; i++) {
+			JsonPath path = paths[states[i] / stride];
+			int step = states[i] % stride;
+			if (step == path.size() || container && !(path.step(step) instanceof JsonPath.Filter)
+					&& !path.step(step).streamable()) {
+				deliver(JsonBinder.readAny(reader), states, count);
+				return;
+			}
+		}
+		if (!container)
+			return;
+
+		boolean inObject = type == JsonReader.Type.OBJECT;
+		if (inObject)
+			reader.object();
+		else
+			reader.array();
+		int[] next = new int[count * 2];
+		int[] filtered = new int[count];
+		for (int index = 0; reader.next(); index++) {
+			int size = 0;
+			int filters = 0;
+			for (int i = 0; i < count; i++) {
+				int state = states[i];
+				JsonPath.Step step = paths[state / stride].step(state % stride);
+				if (step instanceof JsonPath.Filter) {
+					filtered[filters++] = state;
+					continue;
+				}
+				if (step.accepts(reader, inObject, index))
+					size = add(next, size, state + 1);
+				if (step instanceof JsonPath.Descent)
+					size = add(next, size, state);
+			}
+			if (filters > 0)
+				deliverFiltered(JsonBinder.readAny(reader), filtered, filters, next, size);
+			else if (size > 0)
+				visit(reader, next, size);
+			else
+				reader.skipValue();
+		}
+	}
+
+	/**
+	 * Evaluates the remaining steps of each state over a value that has been built, and delivers the matches.
+	 */
+	private void deliver(Object value, int[] states, int count) {
+		for (int i = 0; i < count; i++)
+			paths[states[i] / stride].stream(value, states[i] % stride).forEach(callbacks.get(states[i] / stride));
+	}
+
+	/**
+	 * Delivers the matches in a built member or element that is tested by the filters of some states, and then those
+	 * of the other states that reach it.
+	 */
+	private void deliverFiltered(Object value, int[] filtered, int filters, int[] states, int count) {
+		for (int i = 0; i < filters; i++) {
+			JsonPath path = paths[filtered[i] / stride];
+			int step = filtered[i] % stride;
+			if (((JsonPath.Filter) path.step(step)).matches(value))
+				path.stream(value, step + 1).forEach(callbacks.get(filtered[i] / stride));
+		}
+		deliver(value, states, count);
+	}
+
+	/**
+	 * Adds a state to a list and returns the new size. A state reached twice, through nested descents, is kept twice
+	 * so that its matches are delivered once for each, as {@link JsonPath#readAll(Object)} returns them.
+	 */
+	private static int add(int[] states, int size, int state) {
+		states[size] = state;
+		return size + 1;
+	}
+
+	@Override
+	public String toString() {
+		return "JsonPathScanner" + Arrays.toString(paths);
+	}
+}
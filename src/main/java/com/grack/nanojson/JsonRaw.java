@@ -0,0 +1,82 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import java.nio.charset.StandardCharsets;
+
+//@formatter:off
+/**
+ * A fragment of JSON text that writers copy verbatim, without parsing or re-encoding it. Use it to forward
+ * sub-documents unchanged, for example a value captured with {@link JsonReader#rawValue()}.
+ *
+ * <pre>
+ * JsonWriter.string().object().value("payload", JsonRaw.of("[1, 2, 3]")).end().done();
+ * // {"payload":[1, 2, 3]}
+ * </pre>
+ *
+ * The text is trusted: it is not validated, so writing malformed text produces malformed JSON.
+ */
+//@formatter:on
+public final class JsonRaw {
+	private String json;
+	private byte[] utf8;
+
+	/**
+	 * Either or both of the text and its UTF-8 bytes, the other being derived when first needed.
+	 */
+	JsonRaw(String json, byte[] utf8) {
+		this.json = json;
+		this.utf8 = utf8;
+	}
+
+	/**
+	 * Wraps a fragment of JSON text.
+	 */
+	public static JsonRaw of(String json) {
+		if (json == null)
+			throw new NullPointerException("json");
+		return new JsonRaw(json, null);
+	}
+
+	/**
+	 * The JSON text encoded as UTF-8. Must not be modified.
+	 */
+	byte[] utf8() {
+		if (utf8 == null)
+			utf8 = json.getBytes(StandardCharsets.UTF_8);
+		return utf8;
+	}
+
+	/**
+	 * Returns the JSON text.
+	 */
+	@Override
+	public String toString() {
+		if (json == null)
+			json = new String(utf8, StandardCharsets.UTF_8);
+		return json;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof JsonRaw && o.toString().equals(toString());
+	}
+
+	@Override
+	public int hashCode() {
+		return toString().hashCode();
+	}
+}
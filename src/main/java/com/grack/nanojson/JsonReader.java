@@ -26,6 +26,7 @@ import java.io.StringReader;
 import java.nio.CharBuffer;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.function.Function;
 
 /**
  * Streaming reader for JSON documents.
@@ -40,6 +41,13 @@ public final class JsonReader implements Closeable {
 	// CHECKSTYLE_OFF: MagicNumber
 	private CharBuffer key = CharBufferPool.get(1024);
 	// CHECKSTYLE_ON: MagicNumber
+	private final Chars keyChars = new Chars();
+	private final Chars valueChars = new Chars();
+
+	/**
+	 * Integers of up to this many characters, sign included, always fit in a long.
+	 */
+	static final int MAX_EXACT_LONG_CHARS = 18;
 
 	/**
 	 * The type of value that the {@link JsonReader} is positioned over.
@@ -157,9 +165,7 @@ public final class JsonReader implements Closeable {
 	public String key() throws JsonParserException {
 		if (!inObject)
 			throw tokener.createParseException(null, "Not reading an object", true);
-		char[] chars = key.array();
-		chars = Arrays.copyOf(chars, key.position());
-		return new String(chars);
+		return new String(key.array(), 0, key.position());
 	}
 
 	/**
@@ -195,6 +201,161 @@ public final class JsonReader implements Closeable {
 		}
 	}
 
+	/**
+	 * Returns the current value as a {@link JsonRaw}, without building it. Objects and arrays are captured with their
+	 * exact source text, whitespace included, and are skipped as if they had been read. Strings are returned
+	 * re-escaped, and other values exactly as they appear in the source.
+	 */
+	public JsonRaw rawValue() throws JsonParserException {
+		switch (token) {
+			case JsonTokener.TOKEN_OBJECT_START:
+			case JsonTokener.TOKEN_ARRAY_START:
+				tokener.startCapture(token == JsonTokener.TOKEN_OBJECT_START ? '{' : '[');
+				skipValue();
+				return tokener.endCapture();
+			case JsonTokener.TOKEN_STRING:
+				return JsonRaw.of(JsonWriter.string(string()));
+			case JsonTokener.TOKEN_NUMBER:
+				return JsonRaw.of(new String(tokener.reusableBuffer.array(), 0, tokener.reusableBuffer.position()));
+			case JsonTokener.TOKEN_TRUE:
+				return JsonRaw.of("true");
+			case JsonTokener.TOKEN_FALSE:
+				return JsonRaw.of("false");
+			case JsonTokener.TOKEN_NULL:
+				return JsonRaw.of("null");
+			default:
+				throw createTokenMismatchException(JsonTokener.TOKEN_NULL, JsonTokener.TOKEN_TRUE,
+						JsonTokener.TOKEN_FALSE, JsonTokener.TOKEN_NUMBER, JsonTokener.TOKEN_STRING,
+						JsonTokener.TOKEN_OBJECT_START, JsonTokener.TOKEN_ARRAY_START);
+		}
+	}
+
+	//@formatter:off
+	/**
+	 * Copies the current value, including all of the contents of an object or array, to a {@link JsonSink}, leaving
+	 * the reader as if the value had been read. Positioned at the root, this copies the whole document.
+	 *
+	 * <pre>
+	 * try (JsonReader reader = JsonReader.from(in)) {
+	 *     reader.transferTo(JsonWriter.indent("  ").on(out)).done();
+	 * }
+	 * </pre>
+	 *
+	 * Copying to a {@link JsonWriter} builds no {@link String} or {@link Number}: strings and keys are re-escaped
+	 * straight from the reader's buffers, and numbers are copied as they appear in the source.
+	 */
+	//@formatter:on
+	public <T extends JsonSink<T>> T transferTo(T sink) throws JsonParserException {
+		return transferTo(sink, null);
+	}
+
+	/**
+	 * Copies the current value to a {@link JsonSink} like {@link #transferTo(JsonSink)}, passing each object key
+	 * through a function that returns the key to write, or null to drop the member and its value.
+	 */
+	public <T extends JsonSink<T>> T transferTo(T sink, Function<String, String> keys) throws JsonParserException {
+		transfer(sink, sink instanceof JsonWriterBase ? (JsonWriterBase<?>) sink : null, keys);
+		return sink;
+	}
+
+	private void transfer(JsonSink<?> sink, JsonWriterBase<?> writer, Function<String, String> keys)
+			throws JsonParserException {
+		switch (token) {
+			case JsonTokener.TOKEN_OBJECT_START:
+				object();
+				sink.object();
+				while (next()) {
+					if (keys != null) {
+						String k = keys.apply(key());
+						if (k == null) {
+							skipValue();
+							continue;
+						}
+						sink.key(k);
+					} else if (writer != null) {
+						writer.keyChars(keyChars.of(key.array(), key.position()));
+					} else {
+						sink.key(key());
+					}
+					transfer(sink, writer, keys);
+				}
+				sink.end();
+				break;
+			case JsonTokener.TOKEN_ARRAY_START:
+				array();
+				sink.array();
+				while (next())
+					transfer(sink, writer, keys);
+				sink.end();
+				break;
+			case JsonTokener.TOKEN_STRING:
+				if (writer != null)
+					writer.stringChars(valueChars.of(valueChars(), valueLength()));
+				else
+					sink.value(string());
+				break;
+			case JsonTokener.TOKEN_NUMBER:
+				if (writer != null)
+					writer.numberChars(valueChars(), valueLength());
+				else
+					sink.value(number());
+				break;
+			case JsonTokener.TOKEN_TRUE:
+			case JsonTokener.TOKEN_FALSE:
+				sink.value(token == JsonTokener.TOKEN_TRUE);
+				break;
+			case JsonTokener.TOKEN_NULL:
+				sink.nul();
+				break;
+			default:
+				throw createTokenMismatchException(JsonTokener.TOKEN_NULL, JsonTokener.TOKEN_TRUE,
+						JsonTokener.TOKEN_FALSE, JsonTokener.TOKEN_NUMBER, JsonTokener.TOKEN_STRING,
+						JsonTokener.TOKEN_OBJECT_START, JsonTokener.TOKEN_ARRAY_START);
+		}
+	}
+
+	/**
+	 * Skips the current value, including all of the contents of an object or array.
+	 */
+	void skipValue() throws JsonParserException {
+		if (token == JsonTokener.TOKEN_OBJECT_START)
+			object();
+		else if (token == JsonTokener.TOKEN_ARRAY_START)
+			array();
+		else
+			return;
+		while (next())
+			skipValue();
+	}
+
+	/**
+	 * Returns true if the current key is the given string, without building the key.
+	 */
+	boolean keyEquals(String s) {
+		int length = key.position();
+		if (length != s.length())
+			return false;
+		char[] chars = key.array();
+		for (int i = 0; i < length; i++)
+			if (chars[i] != s.charAt(i))
+				return false;
+		return true;
+	}
+
+	/**
+	 * The characters of the current string or number, valid until the reader moves on. Must not be modified.
+	 */
+	char[] valueChars() {
+		return tokener.reusableBuffer.array();
+	}
+
+	/**
+	 * The number of characters in {@link #valueChars()}.
+	 */
+	int valueLength() {
+		return tokener.reusableBuffer.position();
+	}
+
 	/**
 	 * Parses the current value as a null.
 	 */
@@ -244,8 +405,19 @@ public final class JsonReader implements Closeable {
 	 */
 	public long longVal() throws JsonParserException {
 		char[] chars = tokener.reusableBuffer.array();
-		chars = Arrays.copyOf(chars, tokener.reusableBuffer.position());
-		return tokener.isDouble ? (long) JavaDoubleParser.parseDouble(chars) : Long.parseLong(new String(chars));
+		int length = tokener.reusableBuffer.position();
+		if (token == JsonTokener.TOKEN_NUMBER && !tokener.isDouble && length <= MAX_EXACT_LONG_CHARS) {
+			// Small enough that it cannot overflow, so skip building a String
+			boolean negative = chars[0] == '-';
+			long value = 0;
+			// CHECKSTYLE_OFF: MagicNumber
+			for (int i = negative ? 1 : 0; i < length; i++)
+				value = value * 10 + chars[i] - '0';
+			// CHECKSTYLE_ON: MagicNumber
+			return negative ? -value : value;
+		}
+		return tokener.isDouble ? (long) JavaDoubleParser.parseDouble(chars, 0, length)
+				: Long.parseLong(new String(chars, 0, length));
 	}
 
 	/**
@@ -270,9 +442,7 @@ public final class JsonReader implements Closeable {
 	 * Parses the current value as a double.
 	 */
 	public double doubleVal() throws JsonParserException {
-		char[] chars = tokener.reusableBuffer.array();
-		chars = Arrays.copyOf(chars, tokener.reusableBuffer.position());
-		return JavaDoubleParser.parseDouble(chars);
+		return JavaDoubleParser.parseDouble(tokener.reusableBuffer.array(), 0, tokener.reusableBuffer.position());
 	}
 
 	/**
@@ -353,9 +523,50 @@ public final class JsonReader implements Closeable {
 		}
 	}
 
+	/**
+	 * Creates a {@link JsonParserException} positioned at the current token.
+	 */
+	JsonParserException createParseException(Exception e, String message) {
+		return tokener.createParseException(e, message, true);
+	}
+
 	private JsonParserException createTokenMismatchException(int... t) {
 		return tokener.createParseException(null, "token mismatch (expected " + Arrays.toString(t)
 				+ ", was " + token + ")",
 				true);
 	}
+
+	/**
+	 * A reusable view of the chars in one of the reader's buffers, valid until the reader moves on.
+	 */
+	private static final class Chars implements CharSequence {
+		private char[] chars;
+		private int length;
+
+		Chars of(char[] c, int l) {
+			this.chars = c;
+			this.length = l;
+			return this;
+		}
+
+		@Override
+		public int length() {
+			return length;
+		}
+
+		@Override
+		public char charAt(int index) {
+			return chars[index];
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return toString().substring(start, end);
+		}
+
+		@Override
+		public String toString() {
+			return new String(chars, 0, length);
+		}
+	}
 }
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+//@formatter:off
+/**
+ * Writes values of a user type to a {@link JsonSink}. Register serializers with
+ * {@link JsonWriter#registerSerializer(Class, JsonSerializer)}.
+ *
+ * <pre>
+ * JsonWriter.registerSerializer(LocalDate.class, (sink, date) -&gt; sink.value(date.toString()));
+ * </pre>
+ *
+ * @param <T>
+ *            The type of value written.
+ */
+//@formatter:on
+@FunctionalInterface
+public interface JsonSerializer<T> {
+	/**
+	 * Writes exactly one keyless JSON value for {@code value}. When the value belongs to an object, its key has
+	 * already been emitted.
+	 */
+	void write(JsonSink<?> sink, T value);
+}
@@ -16,7 +16,10 @@
 package com.grack.nanojson;
 
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.stream.Stream;
 
 /**
  * Common interface for {@link JsonAppendableWriter}, {@link JsonStringWriter} and {@link JsonBuilder}.
@@ -35,6 +38,59 @@ public interface JsonSink<SELF extends JsonSink<SELF>> {
 	 */
 	SELF array(String key, Collection<?> c);
 	
+	/**
+	 * Emits an array, pulling its elements from the iterator one at a time while writing them. Writers flush as they
+	 * go, so arbitrarily long sequences are written in constant memory.
+	 */
+	default SELF array(Iterator<?> it) {
+		array();
+		while (it.hasNext())
+			value(it.next());
+		return end();
+	}
+
+	/**
+	 * Emits an array with a key, pulling its elements from the iterator one at a time while writing them.
+	 */
+	default SELF array(String key, Iterator<?> it) {
+		array(key);
+		while (it.hasNext())
+			value(it.next());
+		return end();
+	}
+
+	/**
+	 * Emits an array, pulling its elements from the spliterator one at a time while writing them.
+	 */
+	default SELF array(Spliterator<?> spliterator) {
+		array();
+		spliterator.forEachRemaining(o -> value(o));
+		return end();
+	}
+
+	/**
+	 * Emits an array with a key, pulling its elements from the spliterator one at a time while writing them.
+	 */
+	default SELF array(String key, Spliterator<?> spliterator) {
+		array(key);
+		spliterator.forEachRemaining(o -> value(o));
+		return end();
+	}
+
+	/**
+	 * Emits an array, consuming the stream lazily while writing its elements. The stream is not closed.
+	 */
+	default SELF array(Stream<?> stream) {
+		return array(stream.spliterator());
+	}
+
+	/**
+	 * Emits an array with a key, consuming the stream lazily while writing its elements. The stream is not closed.
+	 */
+	default SELF array(String key, Stream<?> stream) {
+		return array(key, stream.spliterator());
+	}
+
 	/**
 	 * Emits the start of an object.
 	 */
@@ -100,6 +156,45 @@ public interface JsonSink<SELF extends JsonSink<SELF>> {
 	 */
 	SELF value(Number n);
 
+	/**
+	 * Emits an array of integers (or null).
+	 */
+	default SELF value(int[] values) {
+		if (values == null)
+			return nul();
+		array();
+		for (int v : values)
+			value(v);
+		return end();
+	}
+
+	/**
+	 * Emits an array of longs (or null).
+	 */
+	default SELF value(long[] values) {
+		if (values == null)
+			return nul();
+		array();
+		for (long v : values)
+			value(v);
+		return end();
+	}
+
+	/**
+	 * Emits an array of doubles (or null). NaN and infinite elements are emitted as null.
+	 */
+	default SELF value(double[] values) {
+		if (values == null)
+			return nul();
+		array();
+		for (double v : values)
+			if (Double.isFinite(v))
+				value(v);
+			else
+				nul();
+		return end();
+	}
+
 	/**
 	 * Emits a string value (or null) with a key.
 	 */
@@ -135,6 +230,45 @@ public interface JsonSink<SELF extends JsonSink<SELF>> {
 	 */
 	SELF value(String key, Number n);
 
+	/**
+	 * Emits an array of integers (or null) with a key.
+	 */
+	default SELF value(String key, int[] values) {
+		if (values == null)
+			return nul(key);
+		array(key);
+		for (int v : values)
+			value(v);
+		return end();
+	}
+
+	/**
+	 * Emits an array of longs (or null) with a key.
+	 */
+	default SELF value(String key, long[] values) {
+		if (values == null)
+			return nul(key);
+		array(key);
+		for (long v : values)
+			value(v);
+		return end();
+	}
+
+	/**
+	 * Emits an array of doubles (or null) with a key. NaN and infinite elements are emitted as null.
+	 */
+	default SELF value(String key, double[] values) {
+		if (values == null)
+			return nul(key);
+		array(key);
+		for (double v : values)
+			if (Double.isFinite(v))
+				value(v);
+			else
+				nul();
+		return end();
+	}
+
 	/**
 	 * Starts an array.
 	 */
@@ -164,4 +298,88 @@ public interface JsonSink<SELF extends JsonSink<SELF>> {
 	 * Writes the key of a key/value pair.
 	 */
 	SELF key(String key);
+
+	/**
+	 * Writes the pre-encoded key of a key/value pair.
+	 */
+	default SELF key(JsonKey key) {
+		return key(key.name());
+	}
+
+	/**
+	 * Emits a 'null' token with a pre-encoded key.
+	 */
+	default SELF nul(JsonKey key) {
+		return key(key).nul();
+	}
+
+	/**
+	 * Emits an object with a pre-encoded key if it is a JSON-compatible type, otherwise throws an exception.
+	 */
+	default SELF value(JsonKey key, Object o) {
+		return key(key).value(o);
+	}
+
+	/**
+	 * Emits a string value (or null) with a pre-encoded key.
+	 */
+	default SELF value(JsonKey key, String s) {
+		return key(key).value(s);
+	}
+
+	/**
+	 * Emits an integer value with a pre-encoded key.
+	 */
+	default SELF value(JsonKey key, int i) {
+		return key(key).value(i);
+	}
+
+	/**
+	 * Emits a long value with a pre-encoded key.
+	 */
+	default SELF value(JsonKey key, long l) {
+		return key(key).value(l);
+	}
+
+	/**
+	 * Emits a boolean value with a pre-encoded key.
+	 */
+	default SELF value(JsonKey key, boolean b) {
+		return key(key).value(b);
+	}
+
+	/**
+	 * Emits a double value with a pre-encoded key.
+	 */
+	default SELF value(JsonKey key, double d) {
+		return key(key).value(d);
+	}
+
+	/**
+	 * Emits a float value with a pre-encoded key.
+	 */
+	default SELF value(JsonKey key, float f) {
+		return key(key).value(f);
+	}
+
+	/**
+	 * Emits a {@link Number} value with a pre-encoded key.
+	 */
+	default SELF value(JsonKey key, Number n) {
+		return key(key).value(n);
+	}
+
+	/**
+	 * Starts an array within an object, prefixed with a pre-encoded key.
+	 */
+	default SELF array(JsonKey key) {
+		return key(key).array();
+	}
+
+	/**
+	 * Starts an object within an object, prefixed with a pre-encoded key.
+	 */
+	default SELF object(JsonKey key) {
+		return key(key).object();
+	}
 }
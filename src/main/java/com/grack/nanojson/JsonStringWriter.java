@@ -38,8 +38,57 @@ package com.grack.nanojson;
  */
 //@formatter:on
 public final class JsonStringWriter extends JsonWriterBase<JsonStringWriter> {
+	// CHECKSTYLE_OFF: MagicNumber
+	private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+	// CHECKSTYLE_ON: MagicNumber
+
+	private final StringBuilder output;
+	private boolean inUse;
+
 	JsonStringWriter(String indent) {
-		super(new StringBuilder(), indent);
+		this(new StringBuilder(), indent);
+	}
+
+	/**
+	 * The JSON is written straight into {@code output}. Under compact strings the builder stays Latin-1 until a
+	 * wider char is written, so {@link #done()} makes a single narrow copy.
+	 */
+	private JsonStringWriter(StringBuilder output, String indent) {
+		super(output, indent);
+		this.output = output;
+	}
+
+	/**
+	 * Discards the output and any state left from the previous document so that this writer can be reused. The
+	 * writer's buffers are kept, unless an earlier document made them unreasonably large.
+	 */
+	public JsonStringWriter reset() {
+		output.setLength(0);
+		if (output.capacity() > MAX_RETAINED_CAPACITY)
+			output.trimToSize();
+		resetInternal(output, null);
+		return this;
+	}
+
+	/**
+	 * Resets this writer and marks it as in use, unless it is already in use.
+	 */
+	boolean acquire() {
+		if (inUse)
+			return false;
+		reset();
+		inUse = true;
+		return true;
+	}
+
+	/**
+	 * Completes this JSON writing session and returns the output without its first and last chars, ie: the quotes
+	 * around a single string value.
+	 */
+	String doneUnquoted() {
+		super.doneInternal();
+		inUse = false;
+		return output.substring(1, output.length() - 1);
 	}
 
 	/**
@@ -47,6 +96,7 @@ public final class JsonStringWriter extends JsonWriterBase<JsonStringWriter> {
 	 */
 	public String done() {
 		super.doneInternal();
-		return appendable.toString();
+		inUse = false;
+		return output.toString();
 	}
 }
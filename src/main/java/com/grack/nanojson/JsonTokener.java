@@ -50,6 +50,13 @@ final class JsonTokener implements Closeable {
 
 	private final boolean utf8;
 
+	/**
+	 * Source chars consumed since {@link #startCapture(char)}, or null if not capturing. Chars from
+	 * {@link #captureFrom} onwards are still in the buffer and are appended before the buffer discards them.
+	 */
+	private StringBuilder capture;
+	private int captureFrom;
+
 	protected CharBuffer reusableBuffer = CharBufferPool.get(MAX_CHAR_BUFFER_SIZE);
 	protected boolean isDouble;
 
@@ -93,6 +100,7 @@ final class JsonTokener implements Closeable {
 
 		@Override
 		public void close() throws IOException {
+			buffered.close();
 		}
 	}
 
@@ -556,6 +564,10 @@ final class JsonTokener implements Closeable {
 			if (r <= 0) {
 				return true;
 			}
+			if (capture != null) {
+				capture.append(buffer, captureFrom, bufferLength - captureFrom);
+				captureFrom = 0;
+			}
 			charOffset += bufferLength;
 			index = 0;
 			bufferLength = r;
@@ -585,6 +597,10 @@ final class JsonTokener implements Closeable {
 		// Nope, we need to read more, but we also have to retain whatever buffer we
 		// have
 		if (index > 0) {
+			if (capture != null) {
+				capture.append(buffer, captureFrom, index - captureFrom);
+				captureFrom = 0;
+			}
 			charOffset += index;
 			bufferLength = bufferLength - index;
 			System.arraycopy(buffer, index, buffer, 0, bufferLength);
@@ -751,6 +767,31 @@ final class JsonTokener implements Closeable {
 		return c;
 	}
 
+	/**
+	 * Starts capturing the source text of the current token, whose first char has already been consumed.
+	 */
+	void startCapture(char first) {
+		capture = new StringBuilder();
+		capture.append(first);
+		captureFrom = index;
+	}
+
+	/**
+	 * Stops capturing and returns the source text consumed since {@link #startCapture(char)}. Text from a UTF-8
+	 * stream is returned as its undecoded bytes.
+	 */
+	JsonRaw endCapture() {
+		StringBuilder captured = capture;
+		captured.append(buffer, captureFrom, index - captureFrom);
+		capture = null;
+		if (!utf8)
+			return new JsonRaw(captured.toString(), null);
+		byte[] bytes = new byte[captured.length()];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = (byte) captured.charAt(i);
+		return new JsonRaw(null, bytes);
+	}
+
 	/**
 	 * Helper function to fixup eof after reading buffer directly.
 	 */
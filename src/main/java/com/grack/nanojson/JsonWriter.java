@@ -19,10 +19,13 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.util.Collection;
 import java.util.Map;
+import java.util.function.UnaryOperator;
 
 //@formatter:off
 /**
@@ -48,6 +51,9 @@ import java.util.Map;
  */
 //@formatter:on
 public final class JsonWriter {
+	private static final ThreadLocal<JsonStringWriter> POOLED_STRING_WRITER = ThreadLocal
+			.withInitial(() -> new JsonStringWriter(null));
+
 	private JsonWriter() {
 	}
 
@@ -131,6 +137,22 @@ public final class JsonWriter {
 					Charset.forName("UTF-8")), indent);
 		}
 
+		/**
+		 * Creates a {@link JsonAppendableWriter} that writes UTF-8 to a blocking {@link WritableByteChannel}, such
+		 * as a {@link java.nio.channels.FileChannel} or a socket channel.
+		 */
+		public JsonAppendableWriter on(WritableByteChannel channel) {
+			return new JsonAppendableWriter(new NioOutput.ToChannel(channel), indent);
+		}
+
+		/**
+		 * Creates a {@link JsonAppendableWriter} that writes UTF-8 into a {@link ByteBuffer}. See
+		 * {@link JsonWriter#on(ByteBuffer, UnaryOperator)}.
+		 */
+		public JsonAppendableWriter on(ByteBuffer buffer, UnaryOperator<ByteBuffer> overflow) {
+			return new JsonAppendableWriter(new NioOutput.ToBuffer(buffer, overflow), indent);
+		}
+
 	}
 
 	//@formatter:off
@@ -187,10 +209,28 @@ public final class JsonWriter {
 		return new JsonStringWriter(null);
 	}
 
+	/**
+	 * Returns this thread's reusable {@link JsonStringWriter}, reset and ready for a new document. Writing many small
+	 * documents this way allocates nothing beyond the resulting {@link String}s.
+	 *
+	 * The writer is returned to the pool by {@link JsonStringWriter#done()}. If it is requested again before then (for
+	 * example, while serializing a nested value), a fresh writer takes its place.
+	 */
+	public static JsonStringWriter pooledString() {
+		JsonStringWriter writer = POOLED_STRING_WRITER.get();
+		if (!writer.acquire()) {
+			writer = new JsonStringWriter(null);
+			writer.acquire();
+			POOLED_STRING_WRITER.set(writer);
+		}
+		return writer;
+	}
+
 	/**
 	 * Emits a single value (a JSON primitive such as a {@link Number},
 	 * {@link Boolean}, {@link String}, a {@link Map} or {@link JsonObject}, or
-	 * a {@link Collection} or {@link JsonArray}.
+	 * a {@link Collection} or {@link JsonArray}. Other objects are written
+	 * through their public fields and getters, or their record components.
 	 * 
 	 * Emit a {@link String}, JSON-escaped:
 	 * 
@@ -208,6 +248,36 @@ public final class JsonWriter {
 		return new JsonStringWriter(null).value(value).done();
 	}
 
+	/**
+	 * Registers a serializer used by all writers for values of the given class and its subclasses, or of the
+	 * implementations of the given interface. Registered serializers take precedence over beans, enums and
+	 * {@link JsonConvertible}, and over the built-in handling of user subclasses of numbers, collections and maps.
+	 * Registration is global to the JVM and is intended to happen once, at startup.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the type is {@link Object} or another supertype of the strings, numbers, booleans, collections,
+	 *             maps or arrays that are written natively, such as {@link Number} or {@link Iterable}.
+	 */
+	public static <T> void registerSerializer(Class<T> type, JsonSerializer<? super T> serializer) {
+		if (type == null)
+			throw new NullPointerException("type");
+		if (serializer == null)
+			throw new NullPointerException("serializer");
+		ValueDispatch.register(type, serializer);
+	}
+
+	/**
+	 * Removes the serializer registered for exactly the given type, so that its values are written as they were
+	 * before {@link #registerSerializer(Class, JsonSerializer)}.
+	 *
+	 * @return true if a serializer was registered for the type.
+	 */
+	public static boolean unregisterSerializer(Class<?> type) {
+		if (type == null)
+			throw new NullPointerException("type");
+		return ValueDispatch.unregister(type);
+	}
+
 	/**
 	 * Creates a {@link JsonAppendableWriter} that can output to an
 	 * {@link Appendable} subclass, such as a {@link StringBuilder}, a
@@ -255,6 +325,42 @@ public final class JsonWriter {
 		return new JsonAppendableWriter(out, null);
 	}
 
+	/**
+	 * Creates a {@link JsonAppendableWriter} that writes UTF-8 to a blocking {@link WritableByteChannel}, such as a
+	 * {@link java.nio.channels.FileChannel} or a socket channel. Bytes are staged through a direct {@link ByteBuffer}
+	 * that is kept for the lifetime of the writer.
+	 */
+	public static JsonAppendableWriter on(WritableByteChannel channel) {
+		return new JsonAppendableWriter(new NioOutput.ToChannel(channel), null);
+	}
+
+	/**
+	 * Creates a {@link JsonAppendableWriter} that writes UTF-8 into a {@link ByteBuffer}, starting at its position.
+	 * The writer fails with a {@link JsonWriterException} if the buffer fills up.
+	 */
+	public static JsonAppendableWriter on(ByteBuffer buffer) {
+		return new JsonAppendableWriter(new NioOutput.ToBuffer(buffer, null), null);
+	}
+
+	//@formatter:off
+	/**
+	 * Creates a {@link JsonAppendableWriter} that writes UTF-8 into a {@link ByteBuffer}, starting at its position.
+	 * When the buffer fills up, it is passed to the overflow callback, which returns the buffer to continue writing
+	 * into: either a larger copy, or the same buffer once its contents have been drained.
+	 *
+	 * <pre>
+	 * ByteBuffer[] out = { ByteBuffer.allocate(256) };
+	 * JsonWriter.on(out[0], full -&gt; {
+	 *     out[0] = ByteBuffer.allocate(full.capacity() * 2).put(full.flip());
+	 *     return out[0];
+	 * }).value(obj).done();
+	 * </pre>
+	 */
+	//@formatter:on
+	public static JsonAppendableWriter on(ByteBuffer buffer, UnaryOperator<ByteBuffer> overflow) {
+		return new JsonAppendableWriter(new NioOutput.ToBuffer(buffer, overflow), null);
+	}
+
 	/**
 	 * Escape a string value.
 	 * 
@@ -262,7 +368,6 @@ public final class JsonWriter {
 	 * @return the escaped JSON value
 	 */
 	public static String escape(String value) {
-		String s = string(value);
-		return s.substring(1, s.length() - 1);
+		return new JsonStringWriter(null).value(value).doneUnquoted();
 	}
 }
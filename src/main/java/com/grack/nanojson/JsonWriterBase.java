@@ -15,12 +15,16 @@
  */
 package com.grack.nanojson;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.lang.reflect.Array;
+import java.util.ArrayDeque;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * Internal class that handles emitting to an {@link Appendable}. Users only see
@@ -33,24 +37,60 @@ import java.util.Map;
 class JsonWriterBase<SELF extends JsonWriterBase<SELF>> implements
 		JsonSink<SELF> {
 	static final int BUFFER_SIZE = 10 * 1024;
+	static final int PARALLEL_CHUNK_SIZE = 4096;
 	private static final char[] NULL = new char[] { 'n', 'u', 'l', 'l' };
 	private static final char[] TRUE = new char[] { 't', 'r', 'u', 'e' };
 	private static final char[] FALSE = new char[] { 'f', 'a', 'l', 's', 'e' };
 	private static final char[] HEX = new char[] { '0', '1', '2', '3', '4', '5', '6', '7', '8',
 			'9', 'a', 'b', 'c', 'd', 'e', 'f' };
-	private static final char[] UNICODE_SMALL = { '\\', 'u', '0', '0' };
-	private static final char[] UNICODE_LARGE = { '\\', 'u' };
-	protected final Appendable appendable;
-	protected final OutputStream out;
-	protected final boolean utf8;
-	private final StringBuilder buffer;
-	private final byte[] bb;
+	private static final int MAX_ESCAPE_LENGTH = 6; // backslash, 'u' and four hex digits
+
+	/**
+	 * Escape table for ASCII chars: 0 if the char is copied as-is, 'u' for a
+	 * four-digit unicode escape, '/' for a solidus that is escaped only after a '<', and
+	 * otherwise the char to emit after the backslash.
+	 */
+	private static final byte[] ESCAPES = new byte[128];
+
+	static {
+		for (int i = 0; i < ' '; i++)
+			ESCAPES[i] = 'u';
+		ESCAPES['\b'] = 'b';
+		ESCAPES['\t'] = 't';
+		ESCAPES['\n'] = 'n';
+		ESCAPES['\f'] = 'f';
+		ESCAPES['\r'] = 'r';
+		ESCAPES['"'] = '"';
+		ESCAPES['\\'] = '\\';
+		ESCAPES['/'] = '/';
+	}
+
+	protected Appendable appendable;
+	protected OutputStream out;
+	protected boolean utf8;
+	private StringBuilder buffer;
+	/**
+	 * The bytes being encoded into, which are the staging buffer or the backing array of a
+	 * {@link java.nio.ByteBuffer} target, and the end of the room in them. After a flush there is always room for a
+	 * full buffer.
+	 */
+	private byte[] bb;
+	private int byteLimit;
+	private byte[] staging;
+	private NioOutput.ToBuffer byteTarget;
+	/**
+	 * True if chars are written straight into the target {@link StringBuilder} rather than staged and flushed.
+	 */
+	private final boolean direct;
+	private int charLimit;
 	private int bo = 0;
 	private BitSet states = new BitSet();
 	private int stateIndex = 0;
 	private boolean first = true;
 	private boolean inObject;
-	private String pendingKey;
+	private CharSequence pendingKey;
+	private JsonKey pendingJsonKey;
+	private final char[] numberBuffer = new char[NumberFormatter.MAX_LENGTH];
 
 	/**
 	 * Sequence to use for indenting.
@@ -63,21 +103,55 @@ class JsonWriterBase<SELF extends JsonWriterBase<SELF>> implements
 	private int indent = 0;
 
 	JsonWriterBase(Appendable appendable, String indent) {
-		this.appendable = appendable;
-		this.out = null;
 		this.indentString = indent;
-		utf8 = false;
-		buffer = new StringBuilder(BUFFER_SIZE);
-		bb = null;
+		this.direct = false;
+		resetInternal(appendable, null);
 	}
 
 	JsonWriterBase(OutputStream out, String indent) {
-		this.appendable = null;
-		this.out = out;
 		this.indentString = indent;
-		utf8 = true;
-		buffer = null;
-		bb = new byte[BUFFER_SIZE];
+		this.direct = false;
+		resetInternal(null, out);
+	}
+
+	/**
+	 * Creates a writer that writes straight into the given {@link StringBuilder}, without a staging buffer.
+	 */
+	JsonWriterBase(StringBuilder output, String indent) {
+		this.indentString = indent;
+		this.direct = true;
+		resetInternal(output, null);
+	}
+
+	/**
+	 * Discards all writing state and targets a new {@link Appendable} or {@link OutputStream}, keeping the
+	 * buffers allocated for earlier documents.
+	 */
+	final void resetInternal(Appendable target, OutputStream stream) {
+		appendable = target;
+		out = stream;
+		utf8 = stream != null;
+		if (utf8) {
+			if (staging == null)
+				staging = new byte[BUFFER_SIZE];
+			byteTarget = stream instanceof NioOutput.ToBuffer ? (NioOutput.ToBuffer) stream : null;
+			attachBytes();
+		} else if (direct) {
+			buffer = (StringBuilder) target;
+			charLimit = Integer.MAX_VALUE;
+		} else {
+			if (buffer == null)
+				buffer = new StringBuilder(BUFFER_SIZE);
+			buffer.setLength(0);
+			charLimit = BUFFER_SIZE;
+		}
+		states.clear();
+		stateIndex = 0;
+		first = true;
+		inObject = false;
+		pendingKey = null;
+		pendingJsonKey = null;
+		indent = 0;
 	}
 
 	/**
@@ -108,6 +182,72 @@ class JsonWriterBase<SELF extends JsonWriterBase<SELF>> implements
 		return end();
 	}
 
+	/**
+	 * Emits a collection as an array, serializing chunks of it in parallel on the common {@link ForkJoinPool}. The
+	 * serialized chunks are written in order, so the output is identical to {@link #array(Collection)}. Small
+	 * collections are written on the calling thread.
+	 *
+	 * The elements must not be modified while they are being written.
+	 */
+	public SELF parallelArray(Collection<?> c) {
+		return parallelArray(null, c);
+	}
+
+	/**
+	 * Emits a collection as an array with a key, serializing chunks of it in parallel. See
+	 * {@link #parallelArray(Collection)}.
+	 */
+	public SELF parallelArray(String key, Collection<?> c) {
+		if (c.size() < PARALLEL_CHUNK_SIZE * 2)
+			return array(key, c);
+
+		Object[] items = c.toArray();
+		if (key == null)
+			array();
+		else
+			array(key);
+
+		// Keep a bounded window of chunks in flight so that memory use doesn't grow with the collection
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		int window = pool.getParallelism() * 2;
+		ArrayDeque<ForkJoinTask<Object>> pending = new ArrayDeque<>();
+		int next = 0;
+		while (next < items.length || !pending.isEmpty()) {
+			while (next < items.length && pending.size() < window) {
+				int from = next;
+				int to = Math.min(items.length, from + PARALLEL_CHUNK_SIZE);
+				pending.add(pool.submit(() -> segment(items, from, to)));
+				next = to;
+			}
+			Object segment = pending.poll().join();
+			if (!first)
+				raw(',');
+			first = false;
+			if (utf8)
+				raw((byte[]) segment);
+			else
+				raw((String) segment);
+		}
+
+		return end();
+	}
+
+	/**
+	 * Serializes a run of array elements, without the surrounding brackets, using a writer that matches this one's
+	 * encoding and indentation.
+	 */
+	private Object segment(Object[] items, int from, int to) {
+		ByteArrayOutputStream bytes = utf8 ? new ByteArrayOutputStream() : null;
+		JsonWriterBase<?> writer = utf8 ? new JsonAppendableWriter(bytes, indentString)
+				: new JsonStringWriter(indentString);
+		writer.states.set(writer.stateIndex++, false);
+		writer.indent = indent;
+		for (int i = from; i < to; i++)
+			writer.value(items[i]);
+		writer.flush();
+		return utf8 ? bytes.toByteArray() : writer.appendable.toString();
+	}
+
 	@Override
 	public SELF object(Map<?, ?> map) {
 		return object(null, map);
@@ -152,58 +292,256 @@ class JsonWriterBase<SELF extends JsonWriterBase<SELF>> implements
 	public SELF value(Object o) {
 		if (o == null)
 			return nul();
-		else if (o instanceof String)
-			return value((String) o);
-		else if (o instanceof LazyString)
-			return value(o.toString());
-		else if (o instanceof Number)
-			return value(((Number) o));
-		else if (o instanceof Boolean)
-			return value((boolean) (Boolean) o);
-		else if (o instanceof Collection)
-			return array((Collection<?>) o);
-		else if (o instanceof Map)
-			return object((Map<?, ?>) o);
-		else if (o.getClass().isArray()) {
-			int length = Array.getLength(o);
-			array();
-			for (int i = 0; i < length; i++)
-				value(Array.get(o, i));
-			return end();
-		} else if (o instanceof JsonConvertible)
-			return value(((JsonConvertible) o).toJsonValue());
-		else
-			throw new JsonWriterException("Unable to handle type: "
-					+ o.getClass());
+		ValueDispatch dispatch = ValueDispatch.of(o.getClass());
+		switch (dispatch.kind) {
+			case ValueDispatch.STRING:
+				return value((String) o);
+			case ValueDispatch.LAZY_STRING:
+				return value(o.toString());
+			case ValueDispatch.RAW:
+				preValue();
+				raw((JsonRaw) o);
+				return castThis();
+			case ValueDispatch.NUMBER:
+				return value((Number) o);
+			case ValueDispatch.BOOLEAN:
+				return value((boolean) (Boolean) o);
+			case ValueDispatch.COLLECTION:
+				return array((Collection<?>) o);
+			case ValueDispatch.NUMERIC_ARRAY:
+				array();
+				return numbers((NumericJsonArray) o);
+			case ValueDispatch.MAP:
+				return object((Map<?, ?>) o);
+			case ValueDispatch.INT_ARRAY:
+				return value((int[]) o);
+			case ValueDispatch.LONG_ARRAY:
+				return value((long[]) o);
+			case ValueDispatch.DOUBLE_ARRAY:
+				return value((double[]) o);
+			case ValueDispatch.FLOAT_ARRAY:
+				array();
+				floats((float[]) o);
+				return end();
+			case ValueDispatch.BOOLEAN_ARRAY:
+				array();
+				booleans((boolean[]) o);
+				return end();
+			case ValueDispatch.ARRAY:
+				array();
+				return arrayElements(o);
+			case ValueDispatch.CONVERTIBLE:
+				return value(((JsonConvertible) o).toJsonValue());
+			case ValueDispatch.ENUM:
+				return value(((Enum<?>) o).name());
+			default:
+				return custom(dispatch, null, o);
+		}
 	}
 
 	@Override
 	public SELF value(String key, Object o) {
 		if (o == null)
 			return nul(key);
-		else if (o instanceof String)
-			return value(key, (String) o);
-		else if (o instanceof LazyString)
-			return value(key, o.toString());
-		else if (o instanceof Number)
-			return value(key, (Number) o);
-		else if (o instanceof Boolean)
-			return value(key, (boolean) (Boolean) o);
-		else if (o instanceof Collection)
-			return array(key, (Collection<?>) o);
-		else if (o instanceof Map)
-			return object(key, (Map<?, ?>) o);
-		else if (o.getClass().isArray()) {
-			int length = Array.getLength(o);
-			array(key);
-			for (int i = 0; i < length; i++)
-				value(Array.get(o, i));
-			return end();
-		} else if (o instanceof JsonConvertible)
-			return value(key, ((JsonConvertible) o).toJsonValue());
+		ValueDispatch dispatch = ValueDispatch.of(o.getClass());
+		switch (dispatch.kind) {
+			case ValueDispatch.STRING:
+				return value(key, (String) o);
+			case ValueDispatch.LAZY_STRING:
+				return value(key, o.toString());
+			case ValueDispatch.RAW:
+				preValue(key);
+				raw((JsonRaw) o);
+				return castThis();
+			case ValueDispatch.NUMBER:
+				return value(key, (Number) o);
+			case ValueDispatch.BOOLEAN:
+				return value(key, (boolean) (Boolean) o);
+			case ValueDispatch.COLLECTION:
+				return array(key, (Collection<?>) o);
+			case ValueDispatch.NUMERIC_ARRAY:
+				array(key);
+				return numbers((NumericJsonArray) o);
+			case ValueDispatch.MAP:
+				return object(key, (Map<?, ?>) o);
+			case ValueDispatch.INT_ARRAY:
+				return value(key, (int[]) o);
+			case ValueDispatch.LONG_ARRAY:
+				return value(key, (long[]) o);
+			case ValueDispatch.DOUBLE_ARRAY:
+				return value(key, (double[]) o);
+			case ValueDispatch.FLOAT_ARRAY:
+				array(key);
+				floats((float[]) o);
+				return end();
+			case ValueDispatch.BOOLEAN_ARRAY:
+				array(key);
+				booleans((boolean[]) o);
+				return end();
+			case ValueDispatch.ARRAY:
+				array(key);
+				return arrayElements(o);
+			case ValueDispatch.CONVERTIBLE:
+				return value(key, ((JsonConvertible) o).toJsonValue());
+			case ValueDispatch.ENUM:
+				return value(key, ((Enum<?>) o).name());
+			default:
+				return custom(dispatch, key, o);
+		}
+	}
+
+	@Override
+	public SELF value(int[] values) {
+		if (values == null)
+			return nul();
+		array();
+		ints(values);
+		return end();
+	}
+
+	@Override
+	public SELF value(long[] values) {
+		if (values == null)
+			return nul();
+		array();
+		longs(values);
+		return end();
+	}
+
+	@Override
+	public SELF value(double[] values) {
+		if (values == null)
+			return nul();
+		array();
+		doubles(values);
+		return end();
+	}
+
+	@Override
+	public SELF value(String key, int[] values) {
+		if (values == null)
+			return nul(key);
+		array(key);
+		ints(values);
+		return end();
+	}
+
+	@Override
+	public SELF value(String key, long[] values) {
+		if (values == null)
+			return nul(key);
+		array(key);
+		longs(values);
+		return end();
+	}
+
+	@Override
+	public SELF value(String key, double[] values) {
+		if (values == null)
+			return nul(key);
+		array(key);
+		doubles(values);
+		return end();
+	}
+
+	// The primitive array writers format each element, preceded by its comma,
+	// into the number buffer and copy both in one go. Like boxed elements,
+	// NaN and infinite elements are written as null
+
+	private void ints(int[] values) {
+		for (int i = 0; i < values.length; i++) {
+			numberBuffer[0] = ',';
+			int start = i == 0 ? 1 : 0;
+			rawNumber(start, NumberFormatter.writeLong(values[i], numberBuffer, 1));
+		}
+	}
+
+	private void longs(long[] values) {
+		for (int i = 0; i < values.length; i++) {
+			numberBuffer[0] = ',';
+			int start = i == 0 ? 1 : 0;
+			rawNumber(start, NumberFormatter.writeLong(values[i], numberBuffer, 1));
+		}
+	}
+
+	private void doubles(double[] values) {
+		for (int i = 0; i < values.length; i++) {
+			numberBuffer[0] = ',';
+			int start = i == 0 ? 1 : 0;
+			if (Double.isFinite(values[i]))
+				rawNumber(start, NumberFormatter.writeDouble(values[i], numberBuffer, 1));
+			else
+				nullElement(i);
+		}
+	}
+
+	private void floats(float[] values) {
+		for (int i = 0; i < values.length; i++) {
+			numberBuffer[0] = ',';
+			int start = i == 0 ? 1 : 0;
+			if (Float.isFinite(values[i]))
+				rawNumber(start, NumberFormatter.writeFloat(values[i], numberBuffer, 1));
+			else
+				nullElement(i);
+		}
+	}
+
+	private void nullElement(int i) {
+		if (i > 0)
+			raw(',');
+		raw(NULL);
+	}
+
+	private void booleans(boolean[] values) {
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0)
+				raw(',');
+			raw(values[i] ? TRUE : FALSE);
+		}
+	}
+
+	/**
+	 * Writes the elements of a parsed numeric array straight from its primitive storage, then ends it.
+	 */
+	private SELF numbers(NumericJsonArray array) {
+		if (array.ints() != null)
+			ints(array.ints());
+		else if (array.longs() != null)
+			longs(array.longs());
+		else if (array.doubles() != null)
+			doubles(array.doubles());
 		else
+			for (Object o : array)
+				value(o);
+		return end();
+	}
+
+	/**
+	 * Writes the elements of an array, then ends it.
+	 */
+	private SELF arrayElements(Object array) {
+		int length = Array.getLength(array);
+		for (int i = 0; i < length; i++)
+			value(Array.get(array, i));
+		return end();
+	}
+
+	/**
+	 * Writes a value through a registered {@link JsonSerializer}, or an arbitrary bean or record through its cached
+	 * {@link BeanSerializer}.
+	 */
+	private SELF custom(ValueDispatch dispatch, String key, Object o) {
+		if (dispatch.kind == ValueDispatch.SERIALIZER) {
+			if (key != null)
+				key(key);
+			dispatch.serializer.write(this, o);
+		} else if (dispatch.kind == ValueDispatch.BEAN) {
+			dispatch.bean.write(this, key, o);
+		} else {
 			throw new JsonWriterException("Unable to handle type: "
 					+ o.getClass());
+		}
+		return castThis();
 	}
 
 	@Override
@@ -218,14 +556,14 @@ class JsonWriterBase<SELF extends JsonWriterBase<SELF>> implements
 	@Override
 	public SELF value(int i) {
 		preValue();
-		raw(Integer.toString(i));
+		rawNumber(NumberFormatter.writeLong(i, numberBuffer, 0));
 		return castThis();
 	}
 
 	@Override
 	public SELF value(long l) {
 		preValue();
-		raw(Long.toString(l));
+		rawNumber(NumberFormatter.writeLong(l, numberBuffer, 0));
 		return castThis();
 	}
 
@@ -239,14 +577,14 @@ class JsonWriterBase<SELF extends JsonWriterBase<SELF>> implements
 	@Override
 	public SELF value(double d) {
 		preValue();
-		raw(Double.toString(d));
+		rawNumber(NumberFormatter.writeDouble(d, numberBuffer, 0));
 		return castThis();
 	}
 
 	@Override
 	public SELF value(float d) {
 		preValue();
-		raw(Float.toString(d));
+		rawNumber(NumberFormatter.writeFloat(d, numberBuffer, 0));
 		return castThis();
 	}
 
@@ -256,7 +594,7 @@ class JsonWriterBase<SELF extends JsonWriterBase<SELF>> implements
 		if (n == null || nullish(n))
 			raw(NULL);
 		else
-			raw(n.toString());
+			emitNumber(n);
 		return castThis();
 	}
 
@@ -272,14 +610,14 @@ class JsonWriterBase<SELF extends JsonWriterBase<SELF>> implements
 	@Override
 	public SELF value(String key, int i) {
 		preValue(key);
-		raw(Integer.toString(i));
+		rawNumber(NumberFormatter.writeLong(i, numberBuffer, 0));
 		return castThis();
 	}
 
 	@Override
 	public SELF value(String key, long l) {
 		preValue(key);
-		raw(Long.toString(l));
+		rawNumber(NumberFormatter.writeLong(l, numberBuffer, 0));
 		return castThis();
 	}
 
@@ -293,14 +631,14 @@ class JsonWriterBase<SELF extends JsonWriterBase<SELF>> implements
 	@Override
 	public SELF value(String key, double d) {
 		preValue(key);
-		raw(Double.toString(d));
+		rawNumber(NumberFormatter.writeDouble(d, numberBuffer, 0));
 		return castThis();
 	}
 
 	@Override
 	public SELF value(String key, float d) {
 		preValue(key);
-		raw(Float.toString(d));
+		rawNumber(NumberFormatter.writeFloat(d, numberBuffer, 0));
 		return castThis();
 	}
 
@@ -309,7 +647,7 @@ class JsonWriterBase<SELF extends JsonWriterBase<SELF>> implements
 		if (n == null)
 			return nul(key);
 		preValue(key);
-		raw(n.toString());
+		emitNumber(n);
 		return castThis();
 	}
 
@@ -386,13 +724,54 @@ class JsonWriterBase<SELF extends JsonWriterBase<SELF>> implements
 	public SELF key(String key) {
 		if (key == null)
 			throw new NullPointerException("key");
-		if (pendingKey != null)
+		if (pendingKey != null || pendingJsonKey != null)
+			throw new JsonWriterException(
+					"Invalid call to emit a key immediately after emitting a key");
+		pendingKey = key;
+		return castThis();
+	}
+
+	@Override
+	public SELF key(JsonKey key) {
+		if (key == null)
+			throw new NullPointerException("key");
+		if (pendingKey != null || pendingJsonKey != null)
+			throw new JsonWriterException(
+					"Invalid call to emit a key immediately after emitting a key");
+		pendingJsonKey = key;
+		return castThis();
+	}
+
+	/**
+	 * Sets the key for the next value from chars that may change once that value has been written, such as those of a
+	 * {@link JsonReader}.
+	 */
+	final SELF keyChars(CharSequence key) {
+		if (pendingKey != null || pendingJsonKey != null)
 			throw new JsonWriterException(
 					"Invalid call to emit a key immediately after emitting a key");
 		pendingKey = key;
 		return castThis();
 	}
 
+	/**
+	 * Writes a string value from chars, without building a {@link String}.
+	 */
+	final SELF stringChars(CharSequence s) {
+		preValue();
+		emitStringValue(s);
+		return castThis();
+	}
+
+	/**
+	 * Writes a number exactly as it appears in the chars, which must hold a valid JSON number.
+	 */
+	final SELF numberChars(char[] chars, int length) {
+		preValue();
+		raw(chars, length);
+		return castThis();
+	}
+
 	/**
 	 * Ensures that the object is in the finished state.
 	 *
@@ -426,41 +805,109 @@ class JsonWriterBase<SELF extends JsonWriterBase<SELF>> implements
 	private void raw(String s) {
 		if (utf8) {
 			int l = s.length();
-			if (bo + l > BUFFER_SIZE)
+			if (bo + l > byteLimit)
 				flush();
 			for (int i = 0; i < l; i++)
 				bb[bo++] = (byte) s.charAt(i);
 		} else {
 			buffer.append(s);
-			if (buffer.length() > BUFFER_SIZE) {
+			if (buffer.length() > charLimit) {
 				flush();
 			}
 		}
 	}
 
+	private void raw(JsonRaw r) {
+		if (utf8)
+			raw(r.utf8());
+		else
+			raw(r.toString());
+	}
+
 	private void raw(char[] c) {
+		raw(c, c.length);
+	}
+
+	private void raw(char[] c, int l) {
 		if (utf8) {
-			int l = c.length;
-			if (bo + l > BUFFER_SIZE)
+			if (bo + l > byteLimit)
 				flush();
 			for (int i = 0; i < l; i++)
 				bb[bo++] = (byte) c[i];
 		} else {
-			buffer.append(c);
-			if (buffer.length() > BUFFER_SIZE) {
+			buffer.append(c, 0, l);
+			if (buffer.length() > charLimit) {
+				flush();
+			}
+		}
+	}
+
+	/**
+	 * Copies a number formatted into {@link #numberBuffer}.
+	 */
+	private void rawNumber(int length) {
+		raw(numberBuffer, length);
+	}
+
+	/**
+	 * Copies part of {@link #numberBuffer}.
+	 */
+	private void rawNumber(int start, int end) {
+		int l = end - start;
+		if (utf8) {
+			if (bo + l > byteLimit)
+				flush();
+			for (int i = start; i < end; i++)
+				bb[bo++] = (byte) numberBuffer[i];
+		} else {
+			buffer.append(numberBuffer, start, l);
+			if (buffer.length() > charLimit)
 				flush();
+		}
+	}
+
+	/**
+	 * Writes a boxed number. Common types are formatted without allocating; lazily-parsed numbers are copied
+	 * through as parsed, and anything else falls back to {@link Number#toString()}.
+	 */
+	private void emitNumber(Number n) {
+		if (n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte)
+			rawNumber(NumberFormatter.writeLong(n.longValue(), numberBuffer, 0));
+		else if (n instanceof Double)
+			rawNumber(NumberFormatter.writeDouble(n.doubleValue(), numberBuffer, 0));
+		else if (n instanceof Float)
+			rawNumber(NumberFormatter.writeFloat(n.floatValue(), numberBuffer, 0));
+		else if (n instanceof JsonLazyNumber)
+			raw(((JsonLazyNumber) n).chars());
+		else
+			raw(n.toString());
+	}
+
+	private void raw(byte[] b) {
+		if (bo + b.length > byteLimit) {
+			flush();
+			if (bo + b.length > byteLimit) {
+				try {
+					out.write(b);
+				} catch (IOException e) {
+					throw new JsonWriterException(e);
+				}
+				attachBytes();
+				return;
 			}
 		}
+		System.arraycopy(b, 0, bb, bo, b.length);
+		bo += b.length;
 	}
 
 	private void raw(char c) {
 		if (utf8) {
-			if (bo + 1 > BUFFER_SIZE)
+			if (bo + 1 > byteLimit)
 				flush();
 			bb[bo++] = (byte) c;
 		} else {
 			buffer.append(c);
-			if (buffer.length() > BUFFER_SIZE) {
+			if (buffer.length() > charLimit) {
 				flush();
 			}
 		}
@@ -469,10 +916,13 @@ class JsonWriterBase<SELF extends JsonWriterBase<SELF>> implements
 	private void flush() {
 		try {
 			if (utf8) {
-				out.write(bb, 0, bo);
-				bo = 0;
-			} else {
-				appendable.append(buffer.toString());
+				if (bb == staging)
+					out.write(bb, 0, bo);
+				else
+					byteTarget.commit(bo);
+				attachBytes();
+			} else if (!direct) {
+				appendable.append(buffer);
 				buffer.setLength(0);
 			}
 		} catch (IOException e) {
@@ -480,6 +930,22 @@ class JsonWriterBase<SELF extends JsonWriterBase<SELF>> implements
 		}
 	}
 
+	/**
+	 * Encodes straight into the backing array of a {@link java.nio.ByteBuffer} target while it has room for a full
+	 * buffer, and otherwise into the staging buffer, whose bytes are copied into the target as it overflows.
+	 */
+	private void attachBytes() {
+		if (byteTarget != null && byteTarget.hasRoom(BUFFER_SIZE)) {
+			bb = byteTarget.array();
+			bo = byteTarget.start();
+			byteLimit = byteTarget.end();
+		} else {
+			bb = staging;
+			bo = 0;
+			byteLimit = BUFFER_SIZE;
+		}
+	}
+
 	private void pre() {
 		if (first) {
 			first = false;
@@ -496,11 +962,17 @@ class JsonWriterBase<SELF extends JsonWriterBase<SELF>> implements
 
 	private void preValue() {
 		if (pendingKey != null) {
-			String key = pendingKey;
+			CharSequence key = pendingKey;
 			pendingKey = null;
 			preValue(key);
 			return;
 		}
+		if (pendingJsonKey != null) {
+			JsonKey key = pendingJsonKey;
+			pendingJsonKey = null;
+			preValue(key);
+			return;
+		}
 		if (inObject)
 			throw new JsonWriterException(
 					"Invalid call to emit a keyless value while writing an object");
@@ -508,11 +980,11 @@ class JsonWriterBase<SELF extends JsonWriterBase<SELF>> implements
 		pre();
 	}
 
-	private void preValue(String key) {
+	private void preValue(CharSequence key) {
 		if (!inObject)
 			throw new JsonWriterException(
 					"Invalid call to emit a key value while not writing an object");
-		if (pendingKey != null)
+		if (pendingKey != null || pendingJsonKey != null)
 			throw new JsonWriterException(
 					"Invalid call to emit a key value immediately after emitting a key");
 
@@ -525,128 +997,200 @@ class JsonWriterBase<SELF extends JsonWriterBase<SELF>> implements
 		raw(':');
 	}
 
+	/**
+	 * Emits a pre-encoded key, which already includes its quotes and colon.
+	 */
+	private void preValue(JsonKey key) {
+		if (!inObject)
+			throw new JsonWriterException(
+					"Invalid call to emit a key value while not writing an object");
+
+		pre();
+
+		if (indentString != null) {
+			appendIndent();
+		}
+		if (utf8)
+			raw(key.utf8());
+		else
+			raw(key.chars());
+	}
+
 	/**
 	 * Emits a quoted string value, escaping characters that are required to be
-	 * escaped.
+	 * escaped. Runs of characters that need no escaping are copied in bulk.
 	 */
-	private void emitStringValue(String s) {
+	private void emitStringValue(CharSequence s) {
 		raw('"');
-		char b = 0, c = 0;
-		for (int i = 0; i < s.length(); i++) {
-			b = c;
-			c = s.charAt(i);
-
-			switch (c) {
-				case '\\':
-				case '"':
-					raw('\\');
-					raw(c);
-					break;
-				case '/':
-					// Special case to ensure that </script> doesn't appear in JSON
-					// output
-					if (b == '<')
-						raw('\\');
-					raw(c);
-					break;
-				case '\b':
-					raw("\\b");
-					break;
-				case '\t':
-					raw("\\t");
-					break;
-				case '\n':
-					raw("\\n");
-					break;
-				case '\f':
-					raw("\\f");
-					break;
-				case '\r':
-					raw("\\r");
+		if (utf8)
+			emitStringValueUtf8(s);
+		else
+			emitStringValueChars(s);
+		raw('"');
+	}
+
+	private void emitStringValueChars(CharSequence s) {
+		int len = s.length();
+		int i = 0;
+		while (i < len) {
+			// Bound each run by the room left in the buffer so it never grows past
+			// its limit by more than a single escape
+			int room = Math.max(charLimit - buffer.length(), MAX_ESCAPE_LENGTH);
+			int end = room >= len - i ? len : i + room;
+			int start = i;
+			char c = 0;
+			while (i < end && !needsEscape(c = s.charAt(i)))
+				i++;
+			buffer.append(s, start, i);
+			if (i < end) {
+				if (c < 0x80)
+					appendAsciiEscape(s, i, c);
+				else
+					appendUnicodeEscape(c);
+				i++;
+			}
+			if (buffer.length() > charLimit)
+				flush();
+		}
+	}
+
+	private void emitStringValueUtf8(CharSequence s) {
+		int len = s.length();
+		int i = 0;
+		while (i < len) {
+			// Clean ASCII goes straight into the byte buffer, with a single capacity
+			// check for the whole run
+			int end = Math.min(len, i + byteLimit - bo);
+			char c = 0;
+			while (i < end && (c = s.charAt(i)) < 0x80 && ESCAPES[c] == 0) {
+				bb[bo++] = (byte) c;
+				i++;
+			}
+			if (i == end) {
+				if (i < len)
+					flush();
+				continue;
+			}
+
+			// Make room for the largest escape, or a surrogate pair plus a few chars
+			// so that the non-ASCII run below always makes progress
+			if (bo + MAX_ESCAPE_LENGTH * 2 > byteLimit)
+				flush();
+			if (c < 0x80) {
+				appendAsciiEscape(s, i, c);
+				i++;
+			} else if (shouldBeEscaped(c)) {
+				appendUnicodeEscape(c);
+				i++;
+			} else {
+				i = encodeUtf8Run(s, i);
+			}
+		}
+	}
+
+	/**
+	 * Encodes a run of non-ASCII, non-escaped chars starting at {@code i} and
+	 * returns the index of the first char that was not encoded. Each char takes at
+	 * most three bytes (a surrogate pair takes four bytes for two chars), so the
+	 * run is bounded by a third of the room left in the buffer.
+	 */
+	private int encodeUtf8Run(CharSequence s, int i) {
+		int len = s.length();
+		int end = Math.min(len, i + (byteLimit - bo) / 3);
+		while (i < end) {
+			char c = s.charAt(i);
+			if (c < 0x80 || shouldBeEscaped(c))
+				break;
+			if (c < 0x800) {
+				bb[bo++] = (byte) (0xc0 | c >> 6);
+				bb[bo++] = (byte) (0x80 | c & 0x3f);
+			} else if (Character.isHighSurrogate(c)) {
+				// We have a high surrogate; must be followed by a low surrogate to form a
+				// valid code point.
+				if (i + 1 >= len)
+					throw new JsonWriterException("Invalid high surrogate at end of string");
+				// The pair would straddle the end of the room we reserved, so let the
+				// caller flush first
+				if (i + 1 >= end)
 					break;
-				default:
-					if (shouldBeEscaped(c)) {
-						if (c < 0x100) {
-							raw(UNICODE_SMALL);
-							raw(HEX[(c >> 4) & 0xf]);
-							raw(HEX[c & 0xf]);
-						} else {
-							raw(UNICODE_LARGE);
-							raw(HEX[(c >> 12) & 0xf]);
-							raw(HEX[(c >> 8) & 0xf]);
-							raw(HEX[(c >> 4) & 0xf]);
-							raw(HEX[c & 0xf]);
-						}
-					} else {
-						if (utf8) {
-							// Ensure space for the largest possible UTF-8 sequence (4 bytes) before
-							// encoding. Even if this char ultimately encodes to 1,2 or 3 bytes,
-							// reserving for 4 keeps logic simple and guarantees we never start a
-							// multi-byte sequence that would be split across a flush.
-							if (bo + 4 > BUFFER_SIZE) // 4 is the max UTF-8 byte length for a single Unicode scalar
-														// value
-								flush();
-							if (c < 0x80) {
-								bb[bo++] = (byte) c;
-							} else if (c < 0x800) {
-								bb[bo++] = (byte) (0xc0 | c >> 6);
-								bb[bo++] = (byte) (0x80 | c & 0x3f);
-							} else if (c < 0xd800) {
-								bb[bo++] = (byte) (0xe0 | c >> 12);
-								bb[bo++] = (byte) (0x80 | (c >> 6) & 0x3f);
-								bb[bo++] = (byte) (0x80 | c & 0x3f);
-							} else if (Character.isHighSurrogate(c)) {
-								// Surrogate pair handling (supplementary plane character)
-								// We have a high surrogate; must be followed by a low surrogate to form a valid
-								// code point.
-								if (i + 1 >= s.length()) {
-									throw new JsonWriterException("Invalid high surrogate at end of string");
-								}
-								char lowSurrogate = s.charAt(i + 1);
-								if (!Character.isLowSurrogate(lowSurrogate)) {
-									throw new JsonWriterException("Invalid surrogate pair: "
-											+ "high surrogate not followed by low surrogate");
-								}
-								// Need 4 bytes for any supplementary code point in UTF-8. Flush first if
-								// insufficient space
-								// so the 4-byte sequence is never split across buffers.
-								if (bo + 4 > BUFFER_SIZE)
-									flush();
-								i++; // consume the low surrogate
-								int fc = Character.toCodePoint(c, lowSurrogate); // full scalar value
-								// Unicode scalar values are defined only up to U+10FFFF
-								// (exclusive upper bound 0x110000).
-								if (fc < 0x110000) {
-									bb[bo++] = (byte) (0xf0 | (fc >> 18));
-									bb[bo++] = (byte) (0x80 | (fc >> 12) & 0x3f);
-									bb[bo++] = (byte) (0x80 | (fc >> 6) & 0x3f);
-									bb[bo++] = (byte) (0x80 | fc & 0x3f);
-								} else {
-									throw new JsonWriterException(
-											"Unable to encode character 0x" + Integer.toHexString(fc));
-								}
-							} else if (Character.isLowSurrogate(c)) {
-								throw new JsonWriterException(
-										"Invalid low surrogate without preceding high surrogate");
-							} else {
-								bb[bo++] = (byte) (0xe0 | c >> 12);
-								bb[bo++] = (byte) (0x80 | (c >> 6) & 0x3f);
-								bb[bo++] = (byte) (0x80 | c & 0x3f);
-							}
-						} else {
-							raw(c);
-						}
-					}
+				char lowSurrogate = s.charAt(i + 1);
+				if (!Character.isLowSurrogate(lowSurrogate))
+					throw new JsonWriterException("Invalid surrogate pair: "
+							+ "high surrogate not followed by low surrogate");
+				int fc = Character.toCodePoint(c, lowSurrogate);
+				bb[bo++] = (byte) (0xf0 | (fc >> 18));
+				bb[bo++] = (byte) (0x80 | (fc >> 12) & 0x3f);
+				bb[bo++] = (byte) (0x80 | (fc >> 6) & 0x3f);
+				bb[bo++] = (byte) (0x80 | fc & 0x3f);
+				i += 2;
+				continue;
+			} else if (Character.isLowSurrogate(c)) {
+				throw new JsonWriterException(
+						"Invalid low surrogate without preceding high surrogate");
+			} else {
+				bb[bo++] = (byte) (0xe0 | c >> 12);
+				bb[bo++] = (byte) (0x80 | (c >> 6) & 0x3f);
+				bb[bo++] = (byte) (0x80 | c & 0x3f);
 			}
+			i++;
 		}
+		return i;
+	}
 
-		raw('"');
+	/**
+	 * Returns true if the char can't be copied through as-is. A '/' is only
+	 * escaped after a '<', which is checked by the caller.
+	 */
+	private static boolean needsEscape(char c) {
+		return c < 0x80 ? ESCAPES[c] != 0 : shouldBeEscaped(c);
+	}
+
+	/**
+	 * Appends the escape for the ASCII char at {@code i}, using the
+	 * {@link #ESCAPES} table. The caller ensures there is room for it.
+	 */
+	private void appendAsciiEscape(CharSequence s, int i, char c) {
+		byte e = ESCAPES[c];
+		if (e == '/') {
+			// Special case to ensure that </script> doesn't appear in JSON output
+			if (i > 0 && s.charAt(i - 1) == '<')
+				rawUnchecked('\\');
+			rawUnchecked(c);
+		} else if (e == 'u') {
+			appendUnicodeEscape(c);
+		} else {
+			rawUnchecked('\\');
+			rawUnchecked((char) e);
+		}
+	}
+
+	/**
+	 * Appends a four-digit unicode escape. The caller ensures there is room for
+	 * it.
+	 */
+	private void appendUnicodeEscape(char c) {
+		rawUnchecked('\\');
+		rawUnchecked('u');
+		rawUnchecked(HEX[(c >> 12) & 0xf]);
+		rawUnchecked(HEX[(c >> 8) & 0xf]);
+		rawUnchecked(HEX[(c >> 4) & 0xf]);
+		rawUnchecked(HEX[c & 0xf]);
+	}
+
+	/**
+	 * Appends a single ASCII char without checking the buffer capacity.
+	 */
+	private void rawUnchecked(char c) {
+		if (utf8)
+			bb[bo++] = (byte) c;
+		else
+			buffer.append(c);
 	}
 
 	/**
 	 * json.org spec says that all control characters must be escaped.
 	 */
-	private boolean shouldBeEscaped(char c) {
+	private static boolean shouldBeEscaped(char c) {
 		return c < ' ' || (c >= '\u0080' && c < '\u00a0')
 				|| (c >= '\u2000' && c < '\u2100');
 	}
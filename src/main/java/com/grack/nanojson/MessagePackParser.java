@@ -0,0 +1,122 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import java.io.InputStream;
+
+/**
+ * Reads whole MessagePack documents into {@link JsonObject} and {@link JsonArray}, with the same entry points as
+ * {@link JsonParser}. Arrays and objects are sized from their MessagePack headers before they are filled.
+ *
+ * <pre>
+ * JsonObject json = MessagePackParser.object().from(bytes);
+ * </pre>
+ */
+public final class MessagePackParser {
+	/**
+	 * Caps the capacity taken from a header, so that a corrupt size cannot allocate more than the values it holds.
+	 */
+	private static final int MAX_PRESIZE = 1 << 16;
+	private static final float LOAD_FACTOR = 0.75f;
+
+	private MessagePackParser() {
+	}
+
+	/**
+	 * Returns a type-safe parser context for a {@link JsonObject}, {@link JsonArray} or "any" type from which you can
+	 * parse a byte array or an {@link InputStream}.
+	 *
+	 * @param <T>
+	 *            The parsed type.
+	 */
+	public static final class MessagePackParserContext<T> {
+		private final Class<T> clazz;
+
+		MessagePackParserContext(Class<T> clazz) {
+			this.clazz = clazz;
+		}
+
+		/**
+		 * Parses the current type from a byte array, which must hold exactly one value.
+		 */
+		public T from(byte[] bytes) throws JsonParserException {
+			return parse(MessagePackReader.from(bytes));
+		}
+
+		/**
+		 * Parses the current type from an {@link InputStream}, which must hold exactly one value. The stream is not
+		 * closed.
+		 */
+		public T from(InputStream in) throws JsonParserException {
+			return parse(MessagePackReader.from(in));
+		}
+
+		private T parse(MessagePackReader reader) throws JsonParserException {
+			Object parsed = value(reader);
+			if (!reader.atEnd())
+				throw reader.error("Expected end of input");
+			if (clazz != Object.class && !clazz.isInstance(parsed))
+				throw reader.error("MessagePack did not contain the correct type, expected " + clazz.getSimpleName()
+						+ ".");
+			return clazz.cast(parsed);
+		}
+	}
+
+	/**
+	 * Parses a {@link JsonObject}.
+	 */
+	public static MessagePackParserContext<JsonObject> object() {
+		return new MessagePackParserContext<>(JsonObject.class);
+	}
+
+	/**
+	 * Parses a {@link JsonArray}.
+	 */
+	public static MessagePackParserContext<JsonArray> array() {
+		return new MessagePackParserContext<>(JsonArray.class);
+	}
+
+	/**
+	 * Parses any value: null, a {@link String}, a {@link Number}, a {@link Boolean}, a {@link JsonObject} or a
+	 * {@link JsonArray}.
+	 */
+	public static MessagePackParserContext<Object> any() {
+		return new MessagePackParserContext<>(Object.class);
+	}
+
+	/**
+	 * Reads the current value and everything in it.
+	 */
+	private static Object value(MessagePackReader reader) throws JsonParserException {
+		switch (reader.current()) {
+			case OBJECT:
+				int size = (int) Math.min(reader.size(), MAX_PRESIZE);
+				JsonObject object = new JsonObject((int) (size / LOAD_FACTOR) + 1);
+				reader.object();
+				while (reader.next())
+					object.put(reader.key(), value(reader));
+				return object;
+			case ARRAY:
+				JsonArray array = new JsonArray((int) Math.min(reader.size(), MAX_PRESIZE));
+				reader.array();
+				while (reader.next())
+					array.add(value(reader));
+				return array;
+			default:
+				return reader.value();
+		}
+	}
+}
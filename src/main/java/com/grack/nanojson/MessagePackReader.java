@@ -0,0 +1,185 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import java.io.InputStream;
+import java.math.BigInteger;
+
+/**
+ * Streaming reader for MessagePack documents, with the pull API of {@link JsonReader}. Reads the output of
+ * {@link MessagePackWriter}, and any other MessagePack whose map keys are strings. Use {@link MessagePackParser} to
+ * read a whole document into a {@link JsonObject} or {@link JsonArray}.
+ *
+ * Integers are returned as {@link Integer} or {@link Long}, or {@link BigInteger} for a uint64 beyond the range of a
+ * long, and floats as {@link Float} or {@link Double}. Binary values are read as strings in unpadded base64url, like
+ * the byte strings of {@link CborReader}. Extension types are not supported.
+ *
+ * Like {@link CborReader}, this reader only mirrors the methods of {@link JsonReader} and is not interchangeable with
+ * it. {@link #transferTo(JsonSink)} copies MessagePack into any {@link JsonSink}, such as a {@link JsonWriter}.
+ */
+public final class MessagePackReader extends BinaryReader {
+	private MessagePackReader(InputStream in, byte[] buffer, int limit) throws JsonParserException {
+		super(in, buffer, limit);
+		readItem();
+	}
+
+	/**
+	 * Create a {@link MessagePackReader} from an {@link InputStream}.
+	 */
+	public static MessagePackReader from(InputStream in) throws JsonParserException {
+		return new MessagePackReader(in, new byte[JsonWriterBase.BUFFER_SIZE], 0);
+	}
+
+	/**
+	 * Create a {@link MessagePackReader} from a byte array.
+	 */
+	public static MessagePackReader from(byte[] bytes) throws JsonParserException {
+		return new MessagePackReader(null, bytes, bytes.length);
+	}
+
+	/**
+	 * Reads the next item and, for anything but an array or object, its contents.
+	 */
+	@Override
+	void readItem() throws JsonParserException {
+		int b = readByte();
+		unentered = false;
+		if (b <= MessagePackWriter.MAX_FIXINT) {
+			integer(b);
+		} else if (b >= MessagePackWriter.NEGATIVE_FIXINT) {
+			integer((byte) b);
+		} else if (b < MessagePackWriter.FIXARRAY) {
+			container(true, b & MessagePackWriter.MAX_FIXCONTAINER);
+		} else if (b < MessagePackWriter.FIXSTR) {
+			container(false, b & MessagePackWriter.MAX_FIXCONTAINER);
+		} else if (b < MessagePackWriter.NIL) {
+			string(false, b & MessagePackWriter.MAX_FIXSTR);
+		} else {
+			switch (b) {
+				case MessagePackWriter.NIL:
+					type = JsonReader.Type.NULL;
+					break;
+				case MessagePackWriter.FALSE:
+				case MessagePackWriter.TRUE:
+					type = JsonReader.Type.BOOLEAN;
+					bool = b == MessagePackWriter.TRUE;
+					break;
+				case MessagePackWriter.BIN8:
+					string(true, fixed(1));
+					break;
+				case MessagePackWriter.BIN16:
+					string(true, fixed(Short.BYTES));
+					break;
+				case MessagePackWriter.BIN32:
+					string(true, fixed(Integer.BYTES));
+					break;
+				case MessagePackWriter.FLOAT32:
+					type = JsonReader.Type.NUMBER;
+					kind = KIND_FLOAT;
+					floating = Float.intBitsToFloat((int) fixed(Integer.BYTES));
+					break;
+				case MessagePackWriter.FLOAT64:
+					type = JsonReader.Type.NUMBER;
+					kind = KIND_DOUBLE;
+					floating = Double.longBitsToDouble(fixed(Long.BYTES));
+					break;
+				case MessagePackWriter.UINT8:
+					integer(fixed(1));
+					break;
+				case MessagePackWriter.UINT16:
+					integer(fixed(Short.BYTES));
+					break;
+				case MessagePackWriter.UINT32:
+					integer(fixed(Integer.BYTES));
+					break;
+				case MessagePackWriter.UINT64:
+					long unsigned = fixed(Long.BYTES);
+					if (unsigned >= 0) {
+						integer(unsigned);
+					} else {
+						type = JsonReader.Type.NUMBER;
+						kind = KIND_BIG;
+						big = BigInteger.valueOf(unsigned & Long.MAX_VALUE).setBit(Long.SIZE - 1);
+					}
+					break;
+				case MessagePackWriter.INT8:
+					integer((byte) fixed(1));
+					break;
+				case MessagePackWriter.INT16:
+					integer((short) fixed(Short.BYTES));
+					break;
+				case MessagePackWriter.INT32:
+					integer((int) fixed(Integer.BYTES));
+					break;
+				case MessagePackWriter.INT64:
+					integer(fixed(Long.BYTES));
+					break;
+				case MessagePackWriter.STR8:
+					string(false, fixed(1));
+					break;
+				case MessagePackWriter.STR16:
+					string(false, fixed(Short.BYTES));
+					break;
+				case MessagePackWriter.STR32:
+					string(false, fixed(Integer.BYTES));
+					break;
+				case MessagePackWriter.ARRAY16:
+					container(false, fixed(Short.BYTES));
+					break;
+				case MessagePackWriter.ARRAY32:
+					container(false, fixed(Integer.BYTES));
+					break;
+				case MessagePackWriter.MAP16:
+					container(true, fixed(Short.BYTES));
+					break;
+				case MessagePackWriter.MAP32:
+					container(true, fixed(Integer.BYTES));
+					break;
+				default:
+					unread();
+					if (b >= MessagePackWriter.EXT8 && b <= MessagePackWriter.EXT32
+							|| b >= MessagePackWriter.FIXEXT1 && b <= MessagePackWriter.FIXEXT16)
+						throw error("Unsupported extension type");
+					throw error("Invalid type " + b);
+			}
+		}
+	}
+
+	private void integer(long value) {
+		type = JsonReader.Type.NUMBER;
+		kind = KIND_LONG;
+		integer = value;
+	}
+
+	private void container(boolean object, long count) {
+		type = object ? JsonReader.Type.OBJECT : JsonReader.Type.ARRAY;
+		size = count;
+		unentered = true;
+	}
+
+	/**
+	 * Reads a string or binary value of the given length into the text buffer.
+	 */
+	private void string(boolean bytes, long length) throws JsonParserException {
+		type = JsonReader.Type.STRING;
+		binary = bytes;
+		textLength = 0;
+		if (skipping)
+			skip(length);
+		else
+			readChunk(length);
+	}
+}
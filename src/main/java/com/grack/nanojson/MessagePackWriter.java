@@ -0,0 +1,298 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+//@formatter:off
+/**
+ * Writer that emits MessagePack through the same {@link JsonSink} API as the JSON writers, so code written against
+ * one can switch formats without changes. Read the output with {@link MessagePackReader} or
+ * {@link MessagePackParser}.
+ *
+ * <pre>
+ * OutputStream out = ...;
+ * MessagePackWriter.on(out)
+ *     .object()
+ *         .array("a")
+ *             .value(1)
+ *             .value(2)
+ *         .end()
+ *         .value("b", false)
+ *     .end()
+ * .done();
+ * </pre>
+ *
+ * MessagePack prefixes every array and map with its size. Collections, maps and Java arrays are written with the
+ * shortest size header, while arrays and objects started with {@link #array()} and {@link #object()} reserve a
+ * 32-bit size that {@link #end()} fills in, so output is held in memory until they are all ended. Integers and
+ * strings take their shortest forms, while floats and doubles keep their own precision so they read back as the same
+ * type. MessagePack has no big numbers, so {@link BigDecimal} values, and {@link BigInteger} values beyond 64 bits,
+ * are written as doubles.
+ * {@link JsonRaw} fragments are parsed and re-encoded.
+ */
+//@formatter:on
+public final class MessagePackWriter extends BinaryWriter<MessagePackWriter> {
+	static final int NIL = 0xc0;
+	static final int FALSE = 0xc2;
+	static final int TRUE = 0xc3;
+	static final int BIN8 = 0xc4;
+	static final int BIN16 = 0xc5;
+	static final int BIN32 = 0xc6;
+	static final int EXT8 = 0xc7;
+	static final int EXT16 = 0xc8;
+	static final int EXT32 = 0xc9;
+	static final int FLOAT32 = 0xca;
+	static final int FLOAT64 = 0xcb;
+	static final int UINT8 = 0xcc;
+	static final int UINT16 = 0xcd;
+	static final int UINT32 = 0xce;
+	static final int UINT64 = 0xcf;
+	static final int INT8 = 0xd0;
+	static final int INT16 = 0xd1;
+	static final int INT32 = 0xd2;
+	static final int INT64 = 0xd3;
+	static final int FIXEXT1 = 0xd4;
+	static final int FIXEXT16 = 0xd8;
+	static final int STR8 = 0xd9;
+	static final int STR16 = 0xda;
+	static final int STR32 = 0xdb;
+	static final int ARRAY16 = 0xdc;
+	static final int ARRAY32 = 0xdd;
+	static final int MAP16 = 0xde;
+	static final int MAP32 = 0xdf;
+	static final int FIXMAP = 0x80;
+	static final int FIXARRAY = 0x90;
+	static final int FIXSTR = 0xa0;
+	static final int NEGATIVE_FIXINT = 0xe0;
+	static final int MAX_FIXINT = 0x7f;
+	static final int MAX_FIXSTR = 0x1f;
+	static final int MAX_FIXCONTAINER = 0x0f;
+
+	/**
+	 * Room for the longest head: a type byte and an eight-byte value.
+	 */
+	private static final int MAX_HEAD = 9;
+	private static final int INITIAL_DEPTH = 16;
+
+	/**
+	 * The number of values in each open array or object, and the offset of its reserved size or -1 if it was written
+	 * with its size.
+	 */
+	private int[] counts = new int[INITIAL_DEPTH];
+	private int[] headers = new int[INITIAL_DEPTH];
+
+	/**
+	 * The number of open arrays and objects whose sizes are yet to be filled in.
+	 */
+	private int unsized;
+
+	MessagePackWriter(OutputStream out) {
+		super(out, "MessagePack");
+	}
+
+	/**
+	 * Creates a writer that emits MessagePack to an {@link OutputStream}. Call {@link #done()} when finished.
+	 */
+	public static MessagePackWriter on(OutputStream out) {
+		if (out == null)
+			throw new NullPointerException("out");
+		return new MessagePackWriter(out);
+	}
+
+	/**
+	 * Encodes a value as MessagePack.
+	 *
+	 * @throws JsonWriterException
+	 *             if the value contains an unsupported type.
+	 */
+	public static byte[] bytes(Object value) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new MessagePackWriter(bytes).value(value).done();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Writes the head of an array or object, with its size up front or, if it is not known, a 32-bit size to be filled
+	 * in by {@link #end()}.
+	 */
+	@Override
+	void startHead(int depth, boolean object, int size) {
+		if (depth == counts.length) {
+			counts = Arrays.copyOf(counts, depth * 2);
+			headers = Arrays.copyOf(headers, depth * 2);
+		}
+		if (size < 0) {
+			ensure(1 + Integer.BYTES);
+			headers[depth] = position;
+			buffer[position] = (byte) (object ? MAP32 : ARRAY32);
+			position += 1 + Integer.BYTES;
+			unsized++;
+		} else {
+			headers[depth] = -1;
+			if (size <= MAX_FIXCONTAINER)
+				put((object ? FIXMAP : FIXARRAY) | size);
+			else if (size < 0x10000)
+				head(object ? MAP16 : ARRAY16, size, Short.BYTES);
+			else
+				head(object ? MAP32 : ARRAY32, size, Integer.BYTES);
+		}
+		counts[depth] = 0;
+	}
+
+	@Override
+	void endHead(int depth) {
+		int header = headers[depth];
+		if (header >= 0) {
+			// Fill in the count reserved by startHead()
+			int count = counts[depth];
+			for (int i = 1; i <= Integer.BYTES; i++)
+				buffer[header + i] = (byte) (count >>> (Integer.BYTES - i) * 8);
+			unsized--;
+		}
+	}
+
+	@Override
+	void element(int depth) {
+		counts[depth]++;
+	}
+
+	@Override
+	void nullValue() {
+		put(NIL);
+	}
+
+	@Override
+	void booleanValue(boolean b) {
+		put(b ? TRUE : FALSE);
+	}
+
+	@Override
+	void number(Number n) {
+		if (n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte) {
+			integer(n.longValue());
+		} else if (n instanceof JsonLazyNumber) {
+			JsonLazyNumber lazy = (JsonLazyNumber) n;
+			if (lazy.isDouble())
+				floating(lazy.doubleValue());
+			else if (lazy.chars().length <= JsonReader.MAX_EXACT_LONG_CHARS)
+				integer(lazy.longValue());
+			else
+				bigInteger(new BigInteger(lazy.toString()));
+		} else if (n instanceof BigInteger) {
+			bigInteger((BigInteger) n);
+		} else if (n instanceof Float) {
+			floating(n.floatValue());
+		} else {
+			floating(n.doubleValue());
+		}
+	}
+
+	@Override
+	void integer(long l) {
+		if (l >= 0) {
+			if (l <= MAX_FIXINT)
+				put((int) l);
+			else if (l < 0x100)
+				head(UINT8, l, 1);
+			else if (l < 0x10000)
+				head(UINT16, l, Short.BYTES);
+			else if (l < 0x100000000L)
+				head(UINT32, l, Integer.BYTES);
+			else
+				head(UINT64, l, Long.BYTES);
+		} else {
+			if (l >= -32)
+				put((int) l & 0xff);
+			else if (l >= Byte.MIN_VALUE)
+				head(INT8, l, 1);
+			else if (l >= Short.MIN_VALUE)
+				head(INT16, l, Short.BYTES);
+			else if (l >= Integer.MIN_VALUE)
+				head(INT32, l, Integer.BYTES);
+			else
+				head(INT64, l, Long.BYTES);
+		}
+	}
+
+	/**
+	 * Writes an integer as a uint64 or int64 if it fits, and as a double otherwise.
+	 */
+	private void bigInteger(BigInteger b) {
+		if (b.bitLength() < Long.SIZE)
+			integer(b.longValue());
+		else if (b.signum() > 0 && b.bitLength() == Long.SIZE)
+			head(UINT64, b.longValue(), Long.BYTES);
+		else
+			floating(b.doubleValue());
+	}
+
+	@Override
+	void floating(float f) {
+		head(FLOAT32, Float.floatToIntBits(f), Integer.BYTES);
+	}
+
+	@Override
+	void floating(double d) {
+		head(FLOAT64, Double.doubleToLongBits(d), Long.BYTES);
+	}
+
+	@Override
+	void text(String s) {
+		int utf8 = utf8Length(s);
+		if (utf8 <= MAX_FIXSTR)
+			put(FIXSTR | utf8);
+		else if (utf8 < 0x100)
+			head(STR8, utf8, 1);
+		else if (utf8 < 0x10000)
+			head(STR16, utf8, Short.BYTES);
+		else
+			head(STR32, utf8, Integer.BYTES);
+		utf8(s);
+	}
+
+	/**
+	 * Writes a type byte followed by a big-endian value of the given width.
+	 */
+	private void head(int type, long value, int bytes) {
+		ensure(MAX_HEAD);
+		buffer[position++] = (byte) type;
+		for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8)
+			buffer[position++] = (byte) (value >>> shift);
+	}
+
+	private void put(int b) {
+		ensure(1);
+		buffer[position++] = (byte) b;
+	}
+
+	/**
+	 * Makes room for n bytes, flushing if no size is waiting to be filled in, and growing the buffer otherwise.
+	 */
+	@Override
+	void ensure(int n) {
+		if (buffer.length - position >= n)
+			return;
+		if (unsized == 0)
+			flush();
+		if (buffer.length - position < n)
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + n));
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.function.UnaryOperator;
+
+/**
+ * Internal NIO targets for the UTF-8 writer. The writer hands each full buffer of encoded bytes to one of these,
+ * which copies it onto a {@link WritableByteChannel} or into a {@link ByteBuffer}. A heap {@link ByteBuffer} with room
+ * to spare is instead encoded into in place, through its backing array.
+ */
+final class NioOutput {
+	private NioOutput() {
+	}
+
+	/**
+	 * Writes to a blocking {@link WritableByteChannel} through a reusable direct {@link ByteBuffer}.
+	 */
+	static final class ToChannel extends OutputStream {
+		private final ByteBuffer direct = ByteBuffer.allocateDirect(JsonWriterBase.BUFFER_SIZE);
+		private WritableByteChannel channel;
+
+		ToChannel(WritableByteChannel channel) {
+			this.channel = channel;
+		}
+
+		void reset(WritableByteChannel target) {
+			channel = target;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				int n = Math.min(len, direct.capacity());
+				direct.clear();
+				direct.put(b, off, n);
+				direct.flip();
+				while (direct.hasRemaining())
+					channel.write(direct);
+				off += n;
+				len -= n;
+			}
+		}
+	}
+
+	/**
+	 * Writes into a caller-supplied {@link ByteBuffer}, asking the overflow callback for more room when it fills.
+	 */
+	static final class ToBuffer extends OutputStream {
+		private ByteBuffer buffer;
+		private UnaryOperator<ByteBuffer> overflow;
+
+		ToBuffer(ByteBuffer buffer, UnaryOperator<ByteBuffer> overflow) {
+			this.buffer = buffer;
+			this.overflow = overflow;
+		}
+
+		/**
+		 * Returns true if the buffer has a backing array with at least the given room, which the writer may encode into
+		 * between {@link #start()} and {@link #end()} and then {@link #commit(int)}.
+		 */
+		boolean hasRoom(int room) {
+			return buffer.hasArray() && buffer.remaining() >= room;
+		}
+
+		byte[] array() {
+			return buffer.array();
+		}
+
+		int start() {
+			return buffer.arrayOffset() + buffer.position();
+		}
+
+		int end() {
+			return buffer.arrayOffset() + buffer.limit();
+		}
+
+		/**
+		 * Moves the buffer's position up to the given offset in its backing array.
+		 */
+		void commit(int offset) {
+			buffer.position(offset - buffer.arrayOffset());
+		}
+
+		void reset(ByteBuffer target, UnaryOperator<ByteBuffer> callback) {
+			buffer = target;
+			overflow = callback;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (overflow == null && len > buffer.remaining())
+				throw new IOException("ByteBuffer overflow: " + len + " bytes to write, "
+						+ buffer.remaining() + " remaining");
+			while (len > buffer.remaining()) {
+				int n = buffer.remaining();
+				buffer.put(b, off, n);
+				off += n;
+				len -= n;
+				ByteBuffer next = overflow.apply(buffer);
+				if (next == null || !next.hasRemaining())
+					throw new IOException("ByteBuffer overflow callback did not provide any room");
+				buffer = next;
+			}
+			buffer.put(b, off, len);
+		}
+	}
+}
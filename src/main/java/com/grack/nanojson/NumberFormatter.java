@@ -0,0 +1,383 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import java.math.BigInteger;
+
+/**
+ * Internal class that formats numbers into a caller-supplied char array without allocating.
+ *
+ * Doubles and floats are written as the shortest decimal that rounds back to the same value, using Raffaello
+ * Giulietti's Schubfach algorithm, and laid out exactly like {@link Double#toString(double)} and
+ * {@link Float#toString(float)} (ie: "1.0", "0.001", "1.0E7", "4.9E-324").
+ */
+final class NumberFormatter {
+	/**
+	 * Enough room for any number written by this class ("-2.2250738585072014E-308" is the longest).
+	 */
+	static final int MAX_LENGTH = 32;
+
+	private static final char[] LONG_MIN = Long.toString(Long.MIN_VALUE).toCharArray();
+	private static final char[] NAN = "NaN".toCharArray();
+	private static final char[] INFINITY = "Infinity".toCharArray();
+
+	private static final int DOUBLE_P = 53;
+	private static final int DOUBLE_Q_MIN = -1074;
+	private static final long DOUBLE_C_MIN = 1L << (DOUBLE_P - 1);
+	private static final int DOUBLE_C_TINY = 3;
+	private static final int DOUBLE_BQ_MASK = (1 << 11) - 1;
+
+	private static final int FLOAT_P = 24;
+	private static final int FLOAT_Q_MIN = -149;
+	private static final int FLOAT_C_MIN = 1 << (FLOAT_P - 1);
+	private static final int FLOAT_C_TINY = 8;
+	private static final int FLOAT_BQ_MASK = (1 << 8) - 1;
+
+	private static final long MASK_63 = (1L << 63) - 1;
+	private static final long MASK_32 = (1L << 32) - 1;
+
+	private NumberFormatter() {
+	}
+
+	/**
+	 * Writes a long at {@code pos}, returning the position after the last char.
+	 */
+	static int writeLong(long v, char[] buf, int pos) {
+		if (v < 0) {
+			if (v == Long.MIN_VALUE) {
+				System.arraycopy(LONG_MIN, 0, buf, pos, LONG_MIN.length);
+				return pos + LONG_MIN.length;
+			}
+			buf[pos++] = '-';
+			v = -v;
+		}
+		int end = pos + digitCount(v);
+		putDigits(buf, end, v);
+		return end;
+	}
+
+	/**
+	 * Writes a double at {@code pos}, returning the position after the last char.
+	 */
+	static int writeDouble(double v, char[] buf, int pos) {
+		long bits = Double.doubleToRawLongBits(v);
+		long t = bits & (DOUBLE_C_MIN - 1);
+		int bq = (int) (bits >>> (DOUBLE_P - 1)) & DOUBLE_BQ_MASK;
+		if (bq == DOUBLE_BQ_MASK)
+			return special(t != 0, bits < 0, buf, pos);
+		if (bits < 0)
+			buf[pos++] = '-';
+		if (bq != 0) {
+			int mq = -DOUBLE_Q_MIN + 1 - bq;
+			long c = DOUBLE_C_MIN | t;
+			// Integers below 2^53 are written as-is
+			if (0 < mq && mq < DOUBLE_P) {
+				long f = c >> mq;
+				if (f << mq == c)
+					return writeDecimal(f, 0, buf, pos);
+			}
+			return doubleToDecimal(-mq, c, 0, buf, pos);
+		}
+		if (t != 0) {
+			return t < DOUBLE_C_TINY
+					? doubleToDecimal(DOUBLE_Q_MIN, 10 * t, -1, buf, pos)
+					: doubleToDecimal(DOUBLE_Q_MIN, t, 0, buf, pos);
+		}
+		return zero(buf, pos);
+	}
+
+	/**
+	 * Writes a float at {@code pos}, returning the position after the last char.
+	 */
+	static int writeFloat(float v, char[] buf, int pos) {
+		int bits = Float.floatToRawIntBits(v);
+		int t = bits & (FLOAT_C_MIN - 1);
+		int bq = (bits >>> (FLOAT_P - 1)) & FLOAT_BQ_MASK;
+		if (bq == FLOAT_BQ_MASK)
+			return special(t != 0, bits < 0, buf, pos);
+		if (bits < 0)
+			buf[pos++] = '-';
+		if (bq != 0) {
+			int mq = -FLOAT_Q_MIN + 1 - bq;
+			int c = FLOAT_C_MIN | t;
+			if (0 < mq && mq < FLOAT_P) {
+				int f = c >> mq;
+				if (f << mq == c)
+					return writeDecimal(f, 0, buf, pos);
+			}
+			return floatToDecimal(-mq, c, 0, buf, pos);
+		}
+		if (t != 0) {
+			return t < FLOAT_C_TINY
+					? floatToDecimal(FLOAT_Q_MIN, 10 * t, -1, buf, pos)
+					: floatToDecimal(FLOAT_Q_MIN, t, 0, buf, pos);
+		}
+		return zero(buf, pos);
+	}
+
+	/**
+	 * Finds the shortest decimal in the rounding interval of {@code c * 2^q}, and the closest one if there are
+	 * several candidates.
+	 */
+	private static int doubleToDecimal(int q, long c, int dk, char[] buf, int pos) {
+		int out = (int) c & 1;
+		long cb = c << 2;
+		long cbr = cb + 2;
+		long cbl;
+		int k;
+		if (c != DOUBLE_C_MIN || q == DOUBLE_Q_MIN) {
+			cbl = cb - 2;
+			k = flog10pow2(q);
+		} else {
+			// The interval below a power of two is half as wide
+			cbl = cb - 1;
+			k = flog10threeQuartersPow2(q);
+		}
+		int h = q + flog2pow10(-k) + 2;
+
+		long g1 = Powers.g1(k);
+		long g0 = Powers.g0(k);
+
+		long vb = rop(g1, g0, cb << h);
+		long vbl = rop(g1, g0, cbl << h);
+		long vbr = rop(g1, g0, cbr << h);
+
+		long s = vb >> 2;
+		if (s >= 100) {
+			// Prefer a candidate one digit shorter when one is in the interval
+			long sp10 = 10 * Math.multiplyHigh(s, 115_292_150_460_684_698L << 4);
+			long tp10 = sp10 + 10;
+			boolean upin = vbl + out <= sp10 << 2;
+			boolean wpin = (tp10 << 2) + out <= vbr;
+			if (upin != wpin)
+				return writeDecimal(upin ? sp10 : tp10, k, buf, pos);
+		}
+
+		long t = s + 1;
+		boolean uin = vbl + out <= s << 2;
+		boolean win = (t << 2) + out <= vbr;
+		if (uin != win)
+			return writeDecimal(uin ? s : t, k + dk, buf, pos);
+		long cmp = vb - ((s + t) << 1);
+		return writeDecimal(cmp < 0 || cmp == 0 && (s & 1) == 0 ? s : t, k + dk, buf, pos);
+	}
+
+	private static int floatToDecimal(int q, int c, int dk, char[] buf, int pos) {
+		int out = c & 1;
+		long cb = c << 2;
+		long cbr = cb + 2;
+		long cbl;
+		int k;
+		if (c != FLOAT_C_MIN || q == FLOAT_Q_MIN) {
+			cbl = cb - 2;
+			k = flog10pow2(q);
+		} else {
+			cbl = cb - 1;
+			k = flog10threeQuartersPow2(q);
+		}
+		int h = q + flog2pow10(-k) + 33;
+
+		long g = Powers.g1(k) + 1;
+
+		int vb = rop(g, cb << h);
+		int vbl = rop(g, cbl << h);
+		int vbr = rop(g, cbr << h);
+
+		int s = vb >> 2;
+		if (s >= 100) {
+			int sp10 = 10 * (int) (s * 1_717_986_919L >>> 34);
+			int tp10 = sp10 + 10;
+			boolean upin = vbl + out <= sp10 << 2;
+			boolean wpin = (tp10 << 2) + out <= vbr;
+			if (upin != wpin)
+				return writeDecimal(upin ? sp10 : tp10, k, buf, pos);
+		}
+
+		int t = s + 1;
+		boolean uin = vbl + out <= s << 2;
+		boolean win = (t << 2) + out <= vbr;
+		if (uin != win)
+			return writeDecimal(uin ? s : t, k + dk, buf, pos);
+		int cmp = vb - ((s + t) << 1);
+		return writeDecimal(cmp < 0 || cmp == 0 && (s & 1) == 0 ? s : t, k + dk, buf, pos);
+	}
+
+	/**
+	 * Rounds {@code g * cp / 2^127} to odd, where g is the 126-bit {@code g1 * 2^63 + g0}.
+	 */
+	private static long rop(long g1, long g0, long cp) {
+		long x1 = Math.multiplyHigh(g0, cp);
+		long y0 = g1 * cp;
+		long y1 = Math.multiplyHigh(g1, cp);
+		long z = (y0 >>> 1) + x1;
+		long vbp = y1 + (z >>> 63);
+		return vbp | ((z & MASK_63) + MASK_63) >>> 63;
+	}
+
+	private static int rop(long g, long cp) {
+		long x1 = Math.multiplyHigh(g, cp);
+		long vbp = x1 >>> 31;
+		return (int) (vbp | ((x1 & MASK_32) + MASK_32) >>> 32);
+	}
+
+	/**
+	 * Writes {@code f * 10^e} in the layout of {@link Double#toString(double)}: plain notation for magnitudes in
+	 * [10^-3, 10^7), computerized scientific notation otherwise, and always at least one fractional digit.
+	 */
+	private static int writeDecimal(long f, int e, char[] buf, int pos) {
+		while (f % 10 == 0) {
+			f /= 10;
+			e++;
+		}
+		int len = digitCount(f);
+		// The value is 0.ddd * 10^exp
+		int exp = len + e;
+		if (0 < exp && exp <= 7) {
+			if (len <= exp) {
+				putDigits(buf, pos + len, f);
+				pos += len;
+				for (int i = len; i < exp; i++)
+					buf[pos++] = '0';
+				buf[pos++] = '.';
+				buf[pos++] = '0';
+				return pos;
+			}
+			putDigits(buf, pos + len + 1, f);
+			System.arraycopy(buf, pos + 1, buf, pos, exp);
+			buf[pos + exp] = '.';
+			return pos + len + 1;
+		}
+		if (-3 < exp && exp <= 0) {
+			buf[pos++] = '0';
+			buf[pos++] = '.';
+			for (int i = exp; i < 0; i++)
+				buf[pos++] = '0';
+			putDigits(buf, pos + len, f);
+			return pos + len;
+		}
+		putDigits(buf, pos + len + 1, f);
+		buf[pos] = buf[pos + 1];
+		buf[pos + 1] = '.';
+		if (len == 1) {
+			buf[pos + 2] = '0';
+			pos += 3;
+		} else {
+			pos += len + 1;
+		}
+		buf[pos++] = 'E';
+		return writeLong(exp - 1, buf, pos);
+	}
+
+	private static int zero(char[] buf, int pos) {
+		buf[pos++] = '0';
+		buf[pos++] = '.';
+		buf[pos++] = '0';
+		return pos;
+	}
+
+	private static int special(boolean nan, boolean negative, char[] buf, int pos) {
+		if (nan) {
+			System.arraycopy(NAN, 0, buf, pos, NAN.length);
+			return pos + NAN.length;
+		}
+		if (negative)
+			buf[pos++] = '-';
+		System.arraycopy(INFINITY, 0, buf, pos, INFINITY.length);
+		return pos + INFINITY.length;
+	}
+
+	private static int digitCount(long v) {
+		int n = 1;
+		for (long p = 10; n < 19 && v >= p; p *= 10)
+			n++;
+		return n;
+	}
+
+	/**
+	 * Writes the digits of a non-negative value right-to-left, ending just before {@code end}.
+	 */
+	private static void putDigits(char[] buf, int end, long v) {
+		while (v > Integer.MAX_VALUE) {
+			long q = v / 10;
+			buf[--end] = (char) ('0' + (int) (v - q * 10));
+			v = q;
+		}
+		int i = (int) v;
+		while (i >= 10) {
+			int q = i / 10;
+			buf[--end] = (char) ('0' + (i - q * 10));
+			i = q;
+		}
+		buf[--end] = (char) ('0' + i);
+	}
+
+	/**
+	 * floor(log10(2^e)).
+	 */
+	private static int flog10pow2(int e) {
+		return (int) (e * 661_971_961_083L >> 41);
+	}
+
+	/**
+	 * floor(log10(3/4 * 2^e)).
+	 */
+	private static int flog10threeQuartersPow2(int e) {
+		return (int) ((e * 661_971_961_083L - 274_743_187_321L) >> 41);
+	}
+
+	/**
+	 * floor(log2(10^e)).
+	 */
+	private static int flog2pow10(int e) {
+		return (int) (e * 913_124_641_741L >> 38);
+	}
+
+	/**
+	 * The 126-bit approximations of 10^-k used by Schubfach, computed on first use of a double or float. For
+	 * each k, {@code g1 * 2^63 + g0 = floor(10^-k * 2^(125 - floor(log2(10^-k)))) + 1}.
+	 */
+	private static final class Powers {
+		private static final int K_MIN = -324;
+		private static final int K_MAX = 292;
+		private static final long[] G = new long[2 * (K_MAX - K_MIN + 1)];
+
+		static {
+			for (int k = K_MIN; k <= K_MAX; k++) {
+				BigInteger num = k <= 0 ? BigInteger.TEN.pow(-k) : BigInteger.ONE;
+				BigInteger den = k <= 0 ? BigInteger.ONE : BigInteger.TEN.pow(k);
+				int shift = 125 - flog2pow10(-k);
+				if (shift >= 0)
+					num = num.shiftLeft(shift);
+				else
+					den = den.shiftLeft(-shift);
+				BigInteger g = num.divide(den).add(BigInteger.ONE);
+				G[2 * (k - K_MIN)] = g.shiftRight(63).longValue();
+				G[2 * (k - K_MIN) + 1] = g.longValue() & MASK_63;
+			}
+		}
+
+		private Powers() {
+		}
+
+		static long g1(int k) {
+			return G[2 * (k - K_MIN)];
+		}
+
+		static long g0(int k) {
+			return G[2 * (k - K_MIN) + 1];
+		}
+	}
+}
@@ -0,0 +1,603 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+import ch.randelshofer.fastdoubleparser.JavaDoubleParser;
+
+/**
+ * Internal {@link JsonArray} for arrays of numbers only, backed by exactly one of an {@code int[]}, {@code long[]} or
+ * {@code double[]}. Elements are boxed to {@link Integer}, {@link Long} or {@link Double} as they are read.
+ *
+ * The primitive storage is read-only: the first modification copies the boxed elements into the underlying
+ * {@link java.util.ArrayList} and releases it, after which the array behaves exactly like a {@link JsonArray}.
+ */
+final class NumericJsonArray extends JsonArray {
+	private static final long serialVersionUID = 1L;
+
+	// Exactly one of these is set while the array is primitive, and each is exactly as long as the array
+	private int[] ints;
+	private long[] longs;
+	private double[] doubles;
+
+	private NumericJsonArray(int[] ints, long[] longs, double[] doubles) {
+		super(0);
+		this.ints = ints;
+		this.longs = longs;
+		this.doubles = doubles;
+	}
+
+	/**
+	 * The backing {@code int[]}, or null. Must not be modified.
+	 */
+	int[] ints() {
+		return ints;
+	}
+
+	/**
+	 * The backing {@code long[]}, or null. Must not be modified.
+	 */
+	long[] longs() {
+		return longs;
+	}
+
+	/**
+	 * The backing {@code double[]}, or null. Must not be modified.
+	 */
+	double[] doubles() {
+		return doubles;
+	}
+
+	private boolean primitive() {
+		return ints != null || longs != null || doubles != null;
+	}
+
+	private int count() {
+		if (ints != null)
+			return ints.length;
+		return longs != null ? longs.length : doubles.length;
+	}
+
+	private Object box(int i) {
+		if (ints != null)
+			return ints[i];
+		if (longs != null)
+			return longs[i];
+		return doubles[i];
+	}
+
+	/**
+	 * Moves the elements into the underlying list, boxed. Iterators are unaffected, as no element changes.
+	 */
+	private void inflate() {
+		if (!primitive())
+			return;
+		Object[] boxed = toArray();
+		ints = null;
+		longs = null;
+		doubles = null;
+		int mods = modCount;
+		super.addAll(Arrays.asList(boxed));
+		modCount = mods;
+	}
+
+	@Override
+	public int size() {
+		return primitive() ? count() : super.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public Object get(int key) {
+		if (!primitive() || key < 0)
+			return super.get(key);
+		return key < count() ? box(key) : null;
+	}
+
+	@Override
+	public double getDouble(int key, double default_) {
+		if (!primitive() || key < 0 || key >= count())
+			return super.getDouble(key, default_);
+		if (ints != null)
+			return ints[key];
+		return longs != null ? longs[key] : doubles[key];
+	}
+
+	@Override
+	public int getInt(int key, int default_) {
+		if (!primitive() || key < 0 || key >= count())
+			return super.getInt(key, default_);
+		if (ints != null)
+			return ints[key];
+		return longs != null ? (int) longs[key] : (int) doubles[key];
+	}
+
+	@Override
+	public long getLong(int key, long default_) {
+		if (!primitive() || key < 0 || key >= count())
+			return super.getLong(key, default_);
+		if (ints != null)
+			return ints[key];
+		return longs != null ? longs[key] : (long) doubles[key];
+	}
+
+	@Override
+	public int[] toIntArray() {
+		if (ints != null)
+			return ints.clone();
+		return super.toIntArray();
+	}
+
+	@Override
+	public long[] toLongArray() {
+		if (longs != null)
+			return longs.clone();
+		if (ints != null)
+			return Arrays.stream(ints).asLongStream().toArray();
+		return super.toLongArray();
+	}
+
+	@Override
+	public double[] toDoubleArray() {
+		if (doubles != null)
+			return doubles.clone();
+		if (ints != null)
+			return Arrays.stream(ints).asDoubleStream().toArray();
+		if (longs != null)
+			return Arrays.stream(longs).asDoubleStream().toArray();
+		return super.toDoubleArray();
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return indexOf(o) >= 0;
+	}
+
+	@Override
+	public int indexOf(Object o) {
+		if (!primitive())
+			return super.indexOf(o);
+		for (int i = 0; i < count(); i++)
+			if (box(i).equals(o))
+				return i;
+		return -1;
+	}
+
+	@Override
+	public int lastIndexOf(Object o) {
+		if (!primitive())
+			return super.lastIndexOf(o);
+		for (int i = count() - 1; i >= 0; i--)
+			if (box(i).equals(o))
+				return i;
+		return -1;
+	}
+
+	@Override
+	public Object[] toArray() {
+		if (!primitive())
+			return super.toArray();
+		Object[] a = new Object[count()];
+		for (int i = 0; i < a.length; i++)
+			a[i] = box(i);
+		return a;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T[] toArray(T[] a) {
+		if (!primitive())
+			return super.toArray(a);
+		Object[] boxed = toArray();
+		if (a.length < boxed.length)
+			return (T[]) Arrays.copyOf(boxed, boxed.length, a.getClass());
+		System.arraycopy(boxed, 0, a, 0, boxed.length);
+		if (a.length > boxed.length)
+			a[boxed.length] = null;
+		return a;
+	}
+
+	@Override
+	public void forEach(Consumer<? super Object> action) {
+		if (!primitive()) {
+			super.forEach(action);
+			return;
+		}
+		for (int i = 0; i < count(); i++)
+			action.accept(box(i));
+	}
+
+	@Override
+	public Iterator<Object> iterator() {
+		return primitive() ? new Cursor(0) : super.iterator();
+	}
+
+	@Override
+	public ListIterator<Object> listIterator() {
+		return primitive() ? new Cursor(0) : super.listIterator();
+	}
+
+	@Override
+	public ListIterator<Object> listIterator(int index) {
+		if (!primitive())
+			return super.listIterator(index);
+		if (index < 0 || index > count())
+			throw new IndexOutOfBoundsException("Index: " + index);
+		return new Cursor(index);
+	}
+
+	@Override
+	public Spliterator<Object> spliterator() {
+		if (!primitive())
+			return super.spliterator();
+		return Spliterators.spliterator(this, Spliterator.ORDERED);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!primitive())
+			return super.equals(o);
+		if (o == this)
+			return true;
+		if (!(o instanceof List))
+			return false;
+		Iterator<?> it = ((List<?>) o).iterator();
+		for (int i = 0; i < count(); i++)
+			if (!it.hasNext() || !box(i).equals(it.next()))
+				return false;
+		return !it.hasNext();
+	}
+
+	@Override
+	public int hashCode() {
+		if (!primitive())
+			return super.hashCode();
+		// CHECKSTYLE_OFF: MagicNumber
+		int hash = 1;
+		for (int i = 0; i < count(); i++)
+			hash = 31 * hash + box(i).hashCode();
+		// CHECKSTYLE_ON: MagicNumber
+		return hash;
+	}
+
+	// Everything below modifies the array, which first moves it into the list
+
+	@Override
+	public void trimToSize() {
+		if (!primitive())
+			super.trimToSize();
+	}
+
+	@Override
+	public void ensureCapacity(int minCapacity) {
+		inflate();
+		super.ensureCapacity(minCapacity);
+	}
+
+	@Override
+	public Object set(int index, Object element) {
+		inflate();
+		return super.set(index, element);
+	}
+
+	@Override
+	public boolean add(Object e) {
+		inflate();
+		return super.add(e);
+	}
+
+	@Override
+	public void add(int index, Object element) {
+		inflate();
+		super.add(index, element);
+	}
+
+	@Override
+	public Object remove(int index) {
+		inflate();
+		return super.remove(index);
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		inflate();
+		return super.remove(o);
+	}
+
+	@Override
+	public void clear() {
+		inflate();
+		super.clear();
+	}
+
+	@Override
+	public boolean addAll(Collection<?> c) {
+		inflate();
+		return super.addAll(c);
+	}
+
+	@Override
+	public boolean addAll(int index, Collection<?> c) {
+		inflate();
+		return super.addAll(index, c);
+	}
+
+	@Override
+	protected void removeRange(int fromIndex, int toIndex) {
+		inflate();
+		super.removeRange(fromIndex, toIndex);
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		inflate();
+		return super.removeAll(c);
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		inflate();
+		return super.retainAll(c);
+	}
+
+	@Override
+	public boolean removeIf(Predicate<? super Object> filter) {
+		inflate();
+		return super.removeIf(filter);
+	}
+
+	@Override
+	public void replaceAll(UnaryOperator<Object> operator) {
+		inflate();
+		super.replaceAll(operator);
+	}
+
+	@Override
+	public void sort(Comparator<? super Object> c) {
+		inflate();
+		super.sort(c);
+	}
+
+	/**
+	 * Sub-lists are views that may write through, so they are taken from the list.
+	 */
+	@Override
+	public List<Object> subList(int fromIndex, int toIndex) {
+		inflate();
+		return super.subList(fromIndex, toIndex);
+	}
+
+	/**
+	 * Walks the array by index through the list methods, so it keeps working once a modification inflates it.
+	 */
+	private final class Cursor implements ListIterator<Object> {
+		private int next;
+		private int last = -1;
+		private int expected = modCount;
+
+		Cursor(int next) {
+			this.next = next;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next < size();
+		}
+
+		@Override
+		public Object next() {
+			check();
+			if (next >= size())
+				throw new NoSuchElementException();
+			last = next++;
+			return get(last);
+		}
+
+		@Override
+		public boolean hasPrevious() {
+			return next > 0;
+		}
+
+		@Override
+		public Object previous() {
+			check();
+			if (next <= 0)
+				throw new NoSuchElementException();
+			last = --next;
+			return get(last);
+		}
+
+		@Override
+		public int nextIndex() {
+			return next;
+		}
+
+		@Override
+		public int previousIndex() {
+			return next - 1;
+		}
+
+		@Override
+		public void remove() {
+			if (last < 0)
+				throw new IllegalStateException();
+			check();
+			NumericJsonArray.this.remove(last);
+			next = last;
+			last = -1;
+			expected = modCount;
+		}
+
+		@Override
+		public void set(Object e) {
+			if (last < 0)
+				throw new IllegalStateException();
+			check();
+			NumericJsonArray.this.set(last, e);
+			expected = modCount;
+		}
+
+		@Override
+		public void add(Object e) {
+			check();
+			NumericJsonArray.this.add(next++, e);
+			last = -1;
+			expected = modCount;
+		}
+
+		private void check() {
+			if (modCount != expected)
+				throw new ConcurrentModificationException();
+		}
+	}
+
+	/**
+	 * Accumulates the numbers of an array as the parser reads them, for as long as they share one primitive type.
+	 */
+	static final class Builder {
+		private static final int INITIAL_CAPACITY = 16;
+
+		private int[] ints;
+		private long[] longs;
+		private double[] doubles;
+		private int count;
+
+		// The text of the numbers, kept in case the array turns out not to be numeric
+		private char[] text = new char[INITIAL_CAPACITY * 4];
+		private int[] ends = new int[INITIAL_CAPACITY];
+
+		/**
+		 * Appends a number token, returning false if it does not fit the array's type: an integer in an array of
+		 * doubles or the reverse, an integer outside the range of a {@code long}, or a decimal outside the range of a
+		 * {@code double}, whose text only a boxed array can keep.
+		 */
+		boolean append(char[] chars, int length, boolean isDouble) {
+			int start = count == 0 ? 0 : ends[count - 1];
+			if (!store(chars, length, isDouble))
+				return false;
+			if (start + length > text.length)
+				text = Arrays.copyOf(text, Math.max(start + length, text.length * 2));
+			System.arraycopy(chars, 0, text, start, length);
+			if (count > ends.length)
+				ends = Arrays.copyOf(ends, ends.length * 2);
+			ends[count - 1] = start + length;
+			return true;
+		}
+
+		private boolean store(char[] chars, int length, boolean isDouble) {
+			if (isDouble) {
+				if (count > 0 && doubles == null)
+					return false;
+				double value = JavaDoubleParser.parseDouble(chars, 0, length);
+				if (!Double.isFinite(value))
+					return false;
+				if (doubles == null)
+					doubles = new double[INITIAL_CAPACITY];
+				else if (count == doubles.length)
+					doubles = Arrays.copyOf(doubles, count * 2);
+				doubles[count++] = value;
+				return true;
+			}
+			if (doubles != null)
+				return false;
+
+			// Accumulate negatively, as the range of a long is larger on that side
+			// CHECKSTYLE_OFF: MagicNumber
+			boolean negative = chars[0] == '-';
+			long value = 0;
+			for (int i = negative ? 1 : 0; i < length; i++) {
+				int digit = chars[i] - '0';
+				if (value < (Long.MIN_VALUE + digit) / 10)
+					return false;
+				value = value * 10 - digit;
+			}
+			if (!negative) {
+				if (value == Long.MIN_VALUE)
+					return false;
+				value = -value;
+			}
+			// CHECKSTYLE_ON: MagicNumber
+
+			if (longs == null && (int) value == value) {
+				if (ints == null)
+					ints = new int[INITIAL_CAPACITY];
+				else if (count == ints.length)
+					ints = Arrays.copyOf(ints, count * 2);
+				ints[count++] = (int) value;
+				return true;
+			}
+			if (longs == null) {
+				longs = new long[Math.max(INITIAL_CAPACITY, count * 2)];
+				for (int i = 0; i < count; i++)
+					longs[i] = ints[i];
+				ints = null;
+			} else if (count == longs.length) {
+				longs = Arrays.copyOf(longs, count * 2);
+			}
+			longs[count++] = value;
+			return true;
+		}
+
+		/**
+		 * Builds the array from a complete, non-empty run of numbers.
+		 */
+		JsonArray build() {
+			if (ints != null)
+				return new NumericJsonArray(Arrays.copyOf(ints, count), null, null);
+			if (longs != null)
+				return new NumericJsonArray(null, Arrays.copyOf(longs, count), null);
+			return new NumericJsonArray(null, null, Arrays.copyOf(doubles, count));
+		}
+
+		/**
+		 * The number of numbers appended.
+		 */
+		int size() {
+			return count;
+		}
+
+		/**
+		 * True if the numbers appended are decimals.
+		 */
+		boolean isDouble() {
+			return doubles != null;
+		}
+
+		/**
+		 * Returns the text of a number appended, as it was in the document.
+		 */
+		char[] text(int index) {
+			return Arrays.copyOfRange(text, index == 0 ? 0 : ends[index - 1], ends[index]);
+		}
+	}
+}
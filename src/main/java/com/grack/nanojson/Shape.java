@@ -0,0 +1,196 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Internal ordered key layout shared by every {@link FrozenJsonObject} with the same keys in the same order, in the
+ * manner of the hidden classes of JavaScript engines. Shapes form a tree rooted at the empty shape: adding a key to a
+ * shape follows, or creates, the transition to the shape with that key appended, so objects built key by key from the
+ * same root end up sharing one instance per distinct layout.
+ *
+ * Each shape builds its key index on first lookup, looking for a table size and hash mix under which no two keys
+ * collide, so that a lookup is a single probe. Shapes passed through while an object is built are never looked up,
+ * so only the shapes of finished objects pay for an index.
+ */
+final class Shape {
+	private static final int[] MIXES = { 16, 7, 11, 20, 24 };
+	private static final int MAX_SPREAD = 8;
+
+	private final String[] keys;
+	private Map<String, Shape> transitions;
+
+	private Index index;
+
+	private Shape(String[] keys) {
+		this.keys = keys;
+	}
+
+	/**
+	 * Creates the root of a new tree of shapes.
+	 */
+	static Shape root() {
+		return new Shape(new String[0]);
+	}
+
+	/**
+	 * A shape with the given keys, outside any tree of transitions. The keys must be distinct.
+	 */
+	static Shape of(String[] keys) {
+		return new Shape(keys);
+	}
+
+	/**
+	 * The shape already reached by appending the given key, or null. A key with a transition is never in this shape.
+	 */
+	Shape transition(String key) {
+		return transitions == null ? null : transitions.get(key);
+	}
+
+	/**
+	 * Returns the index of a key by comparing it with each key in turn, for shapes that are still being built and
+	 * have no index.
+	 */
+	int scan(String key) {
+		for (int i = 0; i < keys.length; i++)
+			if (keys[i].equals(key))
+				return i;
+		return -1;
+	}
+
+	/**
+	 * The shape with the given key appended. The key must not already be in this shape.
+	 */
+	Shape with(String key) {
+		if (transitions == null)
+			transitions = new HashMap<>();
+		Shape next = transitions.get(key);
+		if (next == null) {
+			String[] k = Arrays.copyOf(keys, keys.length + 1);
+			k[keys.length] = key;
+			next = new Shape(k);
+			transitions.put(key, next);
+		}
+		return next;
+	}
+
+	/**
+	 * A shape with the given key appended, outside the tree of transitions so that it may be called from any thread.
+	 * The key must not already be in this shape.
+	 */
+	Shape plus(String key) {
+		String[] k = Arrays.copyOf(keys, keys.length + 1);
+		k[keys.length] = key;
+		return new Shape(k);
+	}
+
+	/**
+	 * A shape with the key at the given index removed, outside the tree of transitions.
+	 */
+	Shape minus(int index) {
+		String[] k = new String[keys.length - 1];
+		System.arraycopy(keys, 0, k, 0, index);
+		System.arraycopy(keys, index + 1, k, index, k.length - index);
+		return new Shape(k);
+	}
+
+	int size() {
+		return keys.length;
+	}
+
+	String key(int i) {
+		return keys[i];
+	}
+
+	/**
+	 * Returns the index of a key, or -1.
+	 */
+	int indexOf(Object key) {
+		if (!(key instanceof String))
+			return -1;
+		Index idx = index;
+		if (idx == null) {
+			idx = new Index(keys);
+			index = idx;
+		}
+		int[] table = idx.table;
+		int mask = table.length - 1;
+		int slot = mix(key.hashCode(), idx.mix) & mask;
+		if (idx.perfect) {
+			int i = table[slot] - 1;
+			return i >= 0 && keys[i].equals(key) ? i : -1;
+		}
+		for (;; slot = (slot + 1) & mask) {
+			int i = table[slot] - 1;
+			if (i < 0 || keys[i].equals(key))
+				return i;
+		}
+	}
+
+	private static int mix(int h, int shift) {
+		return h ^ (h >>> shift);
+	}
+
+	/**
+	 * Table from mixed key hash to key index + 1, with 0 marking a free slot. Immutable, so frozen objects can be
+	 * shared between threads that race to build it.
+	 */
+	private static final class Index {
+		private final int[] table;
+		private final int mix;
+		private final boolean perfect;
+
+		Index(String[] keys) {
+			int min = Integer.highestOneBit(Math.max(1, keys.length * 2 - 1)) << 1;
+			int[] t = null;
+			int m = MIXES[0];
+			search:
+			for (int capacity = min; capacity <= min * MAX_SPREAD; capacity <<= 1) {
+				for (int candidate : MIXES) {
+					t = place(keys, capacity, candidate, false);
+					if (t != null) {
+						m = candidate;
+						break search;
+					}
+				}
+			}
+			perfect = t != null;
+			table = perfect ? t : place(keys, min, m, true);
+			mix = m;
+		}
+
+		/**
+		 * Places every key in a table, returning null on the first collision unless probing is allowed.
+		 */
+		private static int[] place(String[] keys, int capacity, int m, boolean probe) {
+			int[] t = new int[capacity];
+			int mask = capacity - 1;
+			for (int i = 0; i < keys.length; i++) {
+				int slot = mix(keys[i].hashCode(), m) & mask;
+				while (t[slot] != 0) {
+					if (!probe)
+						return null;
+					slot = (slot + 1) & mask;
+				}
+				t[slot] = i + 1;
+			}
+			return t;
+		}
+	}
+}
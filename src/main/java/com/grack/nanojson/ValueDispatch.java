@@ -0,0 +1,180 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Internal class that decides, once per class, how the writers emit values of that class. Writers switch on the
+ * cached {@link #kind} rather than testing each value against every supported type.
+ */
+final class ValueDispatch {
+	static final int STRING = 0;
+	static final int LAZY_STRING = 1;
+	static final int NUMBER = 2;
+	static final int BOOLEAN = 3;
+	static final int COLLECTION = 4;
+	static final int MAP = 5;
+	static final int ARRAY = 6;
+	static final int CONVERTIBLE = 7;
+	static final int SERIALIZER = 8;
+	static final int ENUM = 9;
+	static final int BEAN = 10;
+	static final int UNSUPPORTED = 11;
+	static final int INT_ARRAY = 12;
+	static final int LONG_ARRAY = 13;
+	static final int DOUBLE_ARRAY = 14;
+	static final int FLOAT_ARRAY = 15;
+	static final int BOOLEAN_ARRAY = 16;
+	static final int RAW = 17;
+	static final int NUMERIC_ARRAY = 18;
+
+	private static final Map<Class<?>, JsonSerializer<?>> REGISTERED = new ConcurrentHashMap<>();
+
+	/**
+	 * Samples of the values written natively. A serializer may not be registered for any of their supertypes, such as
+	 * {@link Object}, {@link Number} or {@link Iterable}, as it would take over the built-in handling.
+	 */
+	private static final Class<?>[] BUILT_IN = { String.class, Boolean.class, Integer.class, Long.class,
+			Double.class, BigDecimal.class, BigInteger.class, ArrayList.class, HashMap.class, JsonArray.class,
+			JsonObject.class, JsonRaw.class, Object[].class, int[].class };
+
+	/**
+	 * Replaced wholesale whenever a serializer is registered, as a registration can change the dispatch of any
+	 * subclass or implementation of the registered type.
+	 */
+	private static volatile ClassValue<ValueDispatch> cache = newCache();
+
+	final int kind;
+	final JsonSerializer<Object> serializer;
+	final BeanSerializer bean;
+
+	private ValueDispatch(int kind, JsonSerializer<Object> serializer, BeanSerializer bean) {
+		this.kind = kind;
+		this.serializer = serializer;
+		this.bean = bean;
+	}
+
+	/**
+	 * Returns the dispatch for a class.
+	 */
+	static ValueDispatch of(Class<?> c) {
+		return cache.get(c);
+	}
+
+	/**
+	 * Registers a serializer for a class and its subclasses, or for the implementations of an interface.
+	 */
+	static void register(Class<?> c, JsonSerializer<?> serializer) {
+		for (Class<?> builtIn : BUILT_IN)
+			if (c.isAssignableFrom(builtIn))
+				throw new IllegalArgumentException("Cannot register a serializer for " + c.getName()
+						+ ", which would replace the built-in handling of " + builtIn.getName());
+		REGISTERED.put(c, serializer);
+		cache = newCache();
+	}
+
+	/**
+	 * Removes the serializer registered for a class, returning true if there was one.
+	 */
+	static boolean unregister(Class<?> c) {
+		if (REGISTERED.remove(c) == null)
+			return false;
+		cache = newCache();
+		return true;
+	}
+
+	private static ClassValue<ValueDispatch> newCache() {
+		return new ClassValue<ValueDispatch>() {
+			@Override
+			protected ValueDispatch computeValue(Class<?> type) {
+				return compute(type);
+			}
+		};
+	}
+
+	@SuppressWarnings("unchecked")
+	private static ValueDispatch compute(Class<?> c) {
+		// Exact built-in types come first, so no registration can change how they are written
+		if (c == String.class)
+			return new ValueDispatch(STRING, null, null);
+		if (c == JsonRaw.class)
+			return new ValueDispatch(RAW, null, null);
+		if (c == Boolean.class)
+			return new ValueDispatch(BOOLEAN, null, null);
+		if (c == NumericJsonArray.class)
+			return new ValueDispatch(NUMERIC_ARRAY, null, null);
+		if (c == int[].class)
+			return new ValueDispatch(INT_ARRAY, null, null);
+		if (c == long[].class)
+			return new ValueDispatch(LONG_ARRAY, null, null);
+		if (c == double[].class)
+			return new ValueDispatch(DOUBLE_ARRAY, null, null);
+		if (c == float[].class)
+			return new ValueDispatch(FLOAT_ARRAY, null, null);
+		if (c == boolean[].class)
+			return new ValueDispatch(BOOLEAN_ARRAY, null, null);
+		JsonSerializer<?> serializer = registered(c);
+		if (serializer != null)
+			return new ValueDispatch(SERIALIZER, (JsonSerializer<Object>) serializer, null);
+		if (LazyString.class.isAssignableFrom(c))
+			return new ValueDispatch(LAZY_STRING, null, null);
+		if (Number.class.isAssignableFrom(c))
+			return new ValueDispatch(NUMBER, null, null);
+		if (Collection.class.isAssignableFrom(c))
+			return new ValueDispatch(COLLECTION, null, null);
+		if (Map.class.isAssignableFrom(c))
+			return new ValueDispatch(MAP, null, null);
+		if (c.isArray())
+			return new ValueDispatch(ARRAY, null, null);
+		if (JsonConvertible.class.isAssignableFrom(c))
+			return new ValueDispatch(CONVERTIBLE, null, null);
+		if (Enum.class.isAssignableFrom(c))
+			return new ValueDispatch(ENUM, null, null);
+		BeanSerializer bean = BeanSerializer.of(c);
+		if (bean != null)
+			return new ValueDispatch(BEAN, null, bean);
+		return new ValueDispatch(UNSUPPORTED, null, null);
+	}
+
+	/**
+	 * Finds the serializer registered for the closest superclass, falling back to the interfaces of each class in
+	 * turn.
+	 */
+	private static JsonSerializer<?> registered(Class<?> c) {
+		if (REGISTERED.isEmpty())
+			return null;
+		for (Class<?> k = c; k != null; k = k.getSuperclass()) {
+			JsonSerializer<?> serializer = REGISTERED.get(k);
+			if (serializer != null)
+				return serializer;
+		}
+		for (Class<?> k = c; k != null; k = k.getSuperclass()) {
+			for (Class<?> i : k.getInterfaces()) {
+				JsonSerializer<?> serializer = registered(i);
+				if (serializer != null)
+					return serializer;
+			}
+		}
+		return null;
+	}
+}
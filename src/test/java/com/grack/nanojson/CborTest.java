@@ -0,0 +1,273 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link CborWriter} and {@link CborReader}.
+ */
+public class CborTest {
+	// CHECKSTYLE_OFF: MagicNumber
+	// CHECKSTYLE_OFF: JavadocMethod
+
+	/**
+	 * Encodings from the examples in RFC 8949, appendix A.
+	 */
+	@Test
+	void specExamples() throws JsonParserException {
+		assertEncodes("00", 0);
+		assertEncodes("17", 23);
+		assertEncodes("1818", 24);
+		assertEncodes("1903e8", 1000);
+		assertEncodes("1a000f4240", 1000000);
+		assertEncodes("1bffffffffffffffff", new BigInteger("18446744073709551615"));
+		assertEncodes("c249010000000000000000", new BigInteger("18446744073709551616"));
+		assertEncodes("3bffffffffffffffff", new BigInteger("-18446744073709551616"));
+		assertEncodes("c349010000000000000000", new BigInteger("-18446744073709551617"));
+		assertEncodes("20", -1);
+		assertEncodes("3903e7", -1000);
+		assertEncodes("fa47c35000", 100000.0f);
+		assertEncodes("fb3ff199999999999a", 1.1);
+		assertEncodes("fa7f800000", Float.POSITIVE_INFINITY);
+		assertEncodes("fb7ff0000000000000", Double.POSITIVE_INFINITY);
+		assertEncodes("f4", false);
+		assertEncodes("f6", null);
+		assertEncodes("6161", "a");
+		assertEncodes("62c3bc", "\u00fc");
+		assertEncodes("64f0908591", "\ud800\udd51");
+		assertEncodes("8301820203820405", Arrays.asList(1, Arrays.asList(2, 3), new int[] { 4, 5 }));
+		assertEncodes("a26161016162820203", JsonObject.builder().value("a", 1).array("b").value(2).value(3).end()
+				.done());
+		assertEncodes("c48221196ab3", new BigDecimal("273.15"));
+
+		assertEquals(1.5f, CborReader.from(hex("f93e00")).value());
+		assertEquals(-4.0f, CborReader.from(hex("f9c400")).value());
+		assertEquals(5.960464477539063e-8f, CborReader.from(hex("f90001")).value());
+		assertEquals("AQIDBA", CborReader.from(hex("4401020304")).string());
+		assertEquals("streaming", CborReader.from(hex("7f657374726561646d696e67ff")).string());
+		assertEquals(1363896240L, CborReader.from(hex("c11a514b67b0")).longVal());
+		assertEquals(null, CborReader.from(hex("f7")).value());
+	}
+
+	@Test
+	void streamingWriter() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CborWriter.on(out).object().value("a", 1).array("b").value(2).value(3).end().end().done();
+		assertEquals("bf61610161629f0203ffff", hex(out.toByteArray()));
+
+		out.reset();
+		CborWriter.on(out).array().value(1).object().nul("k").value("s", (String) null)
+				.end().value(new long[] { Long.MIN_VALUE }).end().done();
+		assertEquals("9f01bf616bf66173f6ff813b7fffffffffffffffff", hex(out.toByteArray()));
+	}
+
+	@Test
+	void roundTrip() throws JsonParserException {
+		String json = "{\"a\":[1,-2,2147483648,1.5,0.1,123456789012345678901234567890,true,false,null],"
+				+ "\"b\":{\"\\u00e9\":\"\\u2603\\ud83d\\ude00\",\"c\":{},\"d\":[]},\"e\":\"\"}";
+		for (JsonParser.JsonParserContext<JsonObject> parser : Arrays.asList(JsonParser.object(),
+				JsonParser.object().withLazyNumbers().withLazyStrings(),
+				JsonParser.object().withPrimitiveArrays().withFrozenObjects())) {
+			JsonObject parsed = parser.from(json);
+			byte[] cbor = CborWriter.bytes(parsed);
+			assertEquals(JsonWriter.string(parsed), JsonWriter.string(read(CborReader.from(cbor))));
+			assertEquals(JsonWriter.string(parsed), JsonWriter.string(read(CborReader.from(new OneByteAtATime(cbor)))));
+		}
+	}
+
+	/**
+	 * Doubles and floats read back as the same type and value, even when a double holds a float exactly.
+	 */
+	@Test
+	void floatingRoundTrip() throws JsonParserException {
+		double widened = 0.1f;
+		assertEquals(widened, CborReader.from(CborWriter.bytes(widened)).value());
+		assertEquals(0.1f, CborReader.from(CborWriter.bytes(0.1f)).value());
+		assertEquals(1.5, CborReader.from(CborWriter.bytes(1.5)).value());
+		assertEquals(Arrays.asList(1.5, 0.5f, widened, Double.NaN),
+				read(CborReader.from(CborWriter.bytes(Arrays.asList(1.5, 0.5f, widened, Double.NaN)))));
+	}
+
+	@Test
+	void readerApi() throws JsonParserException {
+		byte[] cbor = CborWriter.bytes(JsonParser.object()
+				.from("{\"skip\":{\"x\":[1,[2]]},\"n\":[1.25,7,\"s\"],\"after\":[1,2,3],\"last\":true}"));
+		CborReader reader = CborReader.from(cbor);
+		assertEquals(JsonReader.Type.OBJECT, reader.current());
+		reader.object();
+		assertTrue(reader.next());
+		assertEquals("skip", reader.key());
+		assertEquals(JsonReader.Type.OBJECT, reader.current());
+		assertTrue(reader.next());
+		assertEquals("n", reader.key());
+		reader.array();
+		assertTrue(reader.next());
+		assertEquals(1.25, reader.doubleVal());
+		assertTrue(reader.next());
+		assertEquals(7, reader.intVal());
+		assertEquals(7L, reader.longVal());
+		assertThrows(JsonParserException.class, reader::bool);
+		assertTrue(reader.next());
+		assertEquals("s", reader.string());
+		assertFalse(reader.next());
+		assertTrue(reader.next());
+		assertEquals("after", reader.key());
+		reader.array();
+		assertTrue(reader.next());
+		assertTrue(reader.pop());
+		assertEquals("last", reader.key());
+		assertTrue(reader.bool());
+		assertFalse(reader.next());
+		assertThrows(JsonParserException.class, reader::next);
+	}
+
+	@Test
+	void transferTo() throws JsonParserException {
+		String json = "{\"a\":[1,-2,2147483648,1.5,123456789012345678901234567890,true,false,null],"
+				+ "\"b\":{\"\u00e9\":\"\u2603\",\"c\":{},\"d\":[]},\"e\":\"\"}";
+		byte[] cbor = CborWriter.bytes(JsonParser.object().from(json));
+		assertEquals(json, CborReader.from(cbor).transferTo(JsonWriter.string()).done());
+		assertEquals("[" + json + "]", JsonWriter.string(CborReader.from(cbor).transferTo(JsonArray.builder()).done()));
+		assertEquals("{\"A\":[1,-2,2147483648,1.5,123456789012345678901234567890,true,false,null],\"E\":\"\"}",
+				CborReader.from(cbor).transferTo(JsonWriter.string(), k -> k.equals("b") ? null : k.toUpperCase())
+						.done());
+
+		CborReader reader = CborReader.from(cbor);
+		reader.object();
+		assertTrue(reader.next());
+		assertTrue(reader.next());
+		assertEquals("{\"\u00e9\":\"\u2603\",\"c\":{},\"d\":[]}", reader.transferTo(JsonWriter.string()).done());
+		assertTrue(reader.next());
+		assertEquals("e", reader.key());
+		assertEquals("\"AQI\"", CborReader.from(hex("420102")).transferTo(JsonWriter.string()).done());
+	}
+
+	@Test
+	void writerFailures() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertThrows(JsonWriterException.class, () -> CborWriter.on(out).array().value("a", 1));
+		assertThrows(JsonWriterException.class, () -> CborWriter.on(out).object().value(1));
+		assertThrows(JsonWriterException.class, () -> CborWriter.on(out).object().done());
+		assertThrows(JsonWriterException.class, () -> CborWriter.on(out).value(1).value(2));
+		assertThrows(JsonWriterException.class, () -> CborWriter.on(out).end());
+		assertThrows(JsonWriterException.class, () -> CborWriter.on(out).done());
+		assertThrows(JsonWriterException.class, () -> CborWriter.bytes("\ud800"));
+		assertThrows(JsonWriterException.class, () -> CborWriter.bytes(new Object()));
+	}
+
+	@Test
+	void readerFailures() {
+		assertThrows(JsonParserException.class, () -> CborReader.from(new byte[0]));
+		assertThrows(JsonParserException.class, () -> CborReader.from(hex("62c3")));
+		assertThrows(JsonParserException.class, () -> CborReader.from(hex("ff")));
+		assertThrows(JsonParserException.class, () -> CborReader.from(hex("1c")));
+		assertThrows(JsonParserException.class, () -> CborReader.from(hex("f0")));
+		assertThrows(JsonParserException.class, () -> CborReader.from(hex("01")).next());
+		assertThrows(JsonParserException.class, () -> {
+			CborReader reader = CborReader.from(hex("a10102"));
+			reader.object();
+			reader.next();
+		});
+		assertThrows(JsonParserException.class, () -> {
+			CborReader reader = CborReader.from(hex("9f01"));
+			reader.array();
+			reader.next();
+			reader.next();
+		});
+	}
+
+	/**
+	 * Reads the current value and everything in it.
+	 */
+	private static Object read(CborReader reader) throws JsonParserException {
+		switch (reader.current()) {
+			case OBJECT:
+				JsonObject object = new JsonObject();
+				reader.object();
+				while (reader.next())
+					object.put(reader.key(), read(reader));
+				return object;
+			case ARRAY:
+				JsonArray array = new JsonArray();
+				reader.array();
+				while (reader.next())
+					array.add(read(reader));
+				return array;
+			default:
+				return reader.value();
+		}
+	}
+
+	private static void assertEncodes(String expected, Object value) throws JsonParserException {
+		byte[] cbor = CborWriter.bytes(value);
+		assertEquals(expected, hex(cbor));
+		if (value instanceof Number)
+			assertEquals(value.toString(), CborReader.from(cbor).number().toString());
+		else if (value == null || value instanceof String || value instanceof Boolean)
+			assertEquals(value, CborReader.from(cbor).value());
+	}
+
+	private static byte[] hex(String s) {
+		byte[] bytes = new byte[s.length() / 2];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = (byte) Integer.parseInt(s.substring(i * 2, i * 2 + 2), 16);
+		return bytes;
+	}
+
+	private static String hex(byte[] bytes) {
+		StringBuilder s = new StringBuilder();
+		for (byte b : bytes)
+			s.append(String.format("%02x", b));
+		return s.toString();
+	}
+
+	/**
+	 * Returns one byte per read, to exercise buffer refills.
+	 */
+	private static final class OneByteAtATime extends InputStream {
+		private final byte[] bytes;
+		private int position;
+
+		OneByteAtATime(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		@Override
+		public int read() {
+			return position < bytes.length ? bytes[position++] & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (position == bytes.length)
+				return -1;
+			b[off] = bytes[position++];
+			return 1;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link JsonBinary}.
+ */
+class JsonBinaryTest {
+	// CHECKSTYLE_OFF: MagicNumber
+	// CHECKSTYLE_OFF: JavadocMethod
+
+	@Test
+	void parsedRoundTrip() throws JsonParserException {
+		String json = "{\"a\":[1,-2,2147483648,-0,1.50,1e400,123456789012345678901234567890,true,false,null],"
+				+ "\"b\":{\"a\":\"\\u00e9\\u2603\\ud83d\\ude00\",\"c\":{}},\"c\":[]}";
+		JsonObject parsed = JsonParser.object().from(json);
+		JsonObject decoded = JsonBinary.decode(JsonBinary.encode(parsed), JsonObject.class);
+		assertEquals(json.replace("\\u00e9\\u2603\\ud83d\\ude00", "\u00e9\u2603\ud83d\ude00"),
+				JsonWriter.string(decoded));
+		assertEquals(Integer.valueOf(-2), decoded.getArray("a").get(1));
+		assertEquals(Long.valueOf(2147483648L), decoded.getArray("a").get(2));
+		assertEquals(1.5, decoded.getArray("a").getDouble(4));
+		assertNull(decoded.getArray("a").get(9));
+		assertTrue(decoded.getArray("a").has(9));
+	}
+
+	@Test
+	void javaValues() throws JsonParserException {
+		JsonArray values = JsonArray.from(1, 2L, (short) 3, 4.25, 5.5f, new BigInteger("-99999999999999999999"),
+				new BigDecimal("1.000"), Double.NaN, "", Arrays.asList("x", JsonObject.builder().value("k", 1).done()));
+		JsonArray decoded = (JsonArray) JsonBinary.decode(JsonBinary.encode(values));
+		assertEquals(JsonArray.from(1, 2, 3, 4.25, 5.5f).toString(), decoded.subList(0, 5).toString());
+		assertEquals(Float.class, decoded.get(4).getClass());
+		assertEquals("-99999999999999999999", decoded.get(5).toString());
+		assertEquals("1.000", decoded.get(6).toString());
+		assertTrue(Double.isNaN(decoded.getDouble(7)));
+		assertEquals("", decoded.getString(8));
+		assertEquals(1, decoded.getArray(9).getObject(1).getInt("k"));
+	}
+
+	@Test
+	void keyDictionaryAndStreams() throws JsonParserException {
+		JsonArray rows = new JsonArray();
+		for (int i = 0; i < 1000; i++)
+			rows.add(JsonObject.builder().value("identifier", i).value("description", "row").done());
+		byte[] bytes = JsonBinary.encode(rows);
+		assertTrue(bytes.length * 3 < JsonWriter.string(rows).getBytes(StandardCharsets.UTF_8).length);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		JsonBinary.encode(rows, out);
+		JsonArray decoded = (JsonArray) JsonBinary.decode(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(rows, decoded);
+		assertTrue(decoded.getObject(0).keySet().iterator().next() == decoded.getObject(999).keySet().iterator()
+				.next());
+	}
+
+	@Test
+	void failures() {
+		byte[] bytes = JsonBinary.encode(JsonObject.builder().value("a", "bcd").done());
+		assertThrows(JsonParserException.class, () -> JsonBinary.decode(Arrays.copyOf(bytes, bytes.length - 1)));
+		assertThrows(JsonParserException.class, () -> JsonBinary.decode(Arrays.copyOf(bytes, bytes.length + 1)));
+		assertThrows(JsonParserException.class, () -> JsonBinary.decode("{}".getBytes(StandardCharsets.UTF_8)));
+		assertThrows(JsonParserException.class, () -> JsonBinary.decode(bytes, JsonArray.class));
+		assertThrows(JsonWriterException.class, () -> JsonBinary.encode(new Object()));
+	}
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.grack.nanojson.Users.Friend;
+import com.grack.nanojson.Users.User;
+
+/**
+ * Tests for {@link JsonBinder}.
+ */
+class JsonBinderTest {
+	// CHECKSTYLE_OFF: MagicNumber
+	// CHECKSTYLE_OFF: JavadocMethod
+	// CHECKSTYLE_OFF: VisibilityModifier
+
+	enum Color {
+		RED, GREEN
+	}
+
+	static final class Point {
+		public int x;
+		public long y;
+		public double z;
+		public boolean visible;
+		public Integer weight;
+		public Color color;
+		public char tag;
+	}
+
+	static final class Bean {
+		private String name;
+		private float ratio;
+
+		public void setName(String name) {
+			this.name = name.toUpperCase();
+		}
+
+		public void setRatio(float ratio) {
+			this.ratio = ratio;
+		}
+	}
+
+	static final class Node {
+		public String name;
+		public Node next;
+		public List<Node> children;
+	}
+
+	static final class Containers {
+		public int[] ints;
+		public String[] strings;
+		public Set<String> set;
+		public Map<String, List<Integer>> map;
+		public Object any;
+		public JsonObject object;
+	}
+
+	@Test
+	void primitives() throws JsonParserException {
+		Point p = JsonBinder.of(Point.class).from(
+				"{\"x\":1,\"y\":12345678901,\"z\":1.5,\"visible\":true,\"weight\":null,\"color\":\"GREEN\",\"tag\":\"q\"}");
+		assertEquals(1, p.x);
+		assertEquals(12345678901L, p.y);
+		assertEquals(1.5, p.z);
+		assertTrue(p.visible);
+		assertNull(p.weight);
+		assertEquals(Color.GREEN, p.color);
+		assertEquals('q', p.tag);
+	}
+
+	@Test
+	void setters() throws JsonParserException {
+		Bean b = JsonBinder.of(Bean.class).from("{\"name\":\"abc\",\"ratio\":0.25}");
+		assertEquals("ABC", b.name);
+		assertEquals(0.25f, b.ratio);
+	}
+
+	@Test
+	void unknownKeysSkipped() throws JsonParserException {
+		Point p = JsonBinder.of(Point.class).from("{\"a\":{\"b\":[1,{\"c\":[]}]},\"x\":7,\"d\":[[],{}]}");
+		assertEquals(7, p.x);
+	}
+
+	@Test
+	void nullPrimitiveKeepsDefault() throws JsonParserException {
+		Point p = JsonBinder.of(Point.class).from("{\"x\":null}");
+		assertEquals(0, p.x);
+	}
+
+	@Test
+	void recursive() throws JsonParserException {
+		Node n = JsonBinder.of(Node.class).from(
+				"{\"name\":\"a\",\"next\":{\"name\":\"b\"},\"children\":[{\"name\":\"c\"},{\"name\":\"d\"}]}");
+		assertEquals("a", n.name);
+		assertEquals("b", n.next.name);
+		assertNull(n.next.next);
+		assertEquals(2, n.children.size());
+		assertEquals("d", n.children.get(1).name);
+	}
+
+	@Test
+	void containers() throws JsonParserException {
+		Containers c = JsonBinder.of(Containers.class).from("{\"ints\":[1,2,3],\"strings\":[\"a\",null],"
+				+ "\"set\":[\"x\",\"x\",\"y\"],\"map\":{\"k\":[4,5]},\"any\":[1,{\"a\":true}],\"object\":{\"b\":\"c\"}}");
+		assertArrayEquals(new int[] { 1, 2, 3 }, c.ints);
+		assertArrayEquals(new String[] { "a", null }, c.strings);
+		assertEquals(2, c.set.size());
+		assertEquals(Arrays.asList(4, 5), c.map.get("k"));
+		assertEquals(JsonArray.class, c.any.getClass());
+		assertEquals(true, ((JsonArray) c.any).getObject(1).getBoolean("a"));
+		assertEquals("c", c.object.getString("b"));
+	}
+
+	@Test
+	void rootTypes() throws JsonParserException {
+		assertEquals(Integer.valueOf(5), JsonBinder.of(Integer.class).from("5"));
+		assertEquals("x", JsonBinder.of(String.class).from("\"x\""));
+		assertArrayEquals(new long[] { 1, 2 }, JsonBinder.of(long[].class).from("[1,2]"));
+		assertNull(JsonBinder.of(Point.class).from("null"));
+	}
+
+	@Test
+	void cached() {
+		assertSame(JsonBinder.of(Point.class), JsonBinder.of(Point.class));
+	}
+
+	@Test
+	void typeMismatch() {
+		assertThrows(JsonParserException.class, () -> JsonBinder.of(Point.class).from("{\"x\":\"1\"}"));
+		assertThrows(JsonParserException.class, () -> JsonBinder.of(Point.class).from("{\"color\":\"BLUE\"}"));
+		assertThrows(JsonParserException.class, () -> JsonBinder.of(Point.class).from("[]"));
+	}
+
+	@Test
+	void noDefaultConstructor() {
+		assertThrows(IllegalArgumentException.class, () -> JsonBinder.of(Unbindable.class));
+	}
+
+	static final class Unbindable {
+		Unbindable(int x) {
+		}
+	}
+
+	/**
+	 * Binds the {@link Users} class from java-json-benchmark.
+	 */
+	@Test
+	void jsonBenchmarkUser() throws JsonParserException {
+		Users users = JsonBinder.of(Users.class).from(getClass().getResourceAsStream("/users.json"));
+		User first = users.users.get(0);
+		assertEquals("abc", first._id);
+		assertEquals(123, first.age);
+		assertTrue(first.isActive);
+		assertEquals(Arrays.asList("hi", "there"), first.tags);
+		assertEquals(new Friend("def", "Jon"), first.friends.get(1));
+		assertEquals(users.users.size(), JsonParser.object().from(getClass().getResourceAsStream("/users.json"))
+				.getArray("users").size());
+	}
+
+	/**
+	 * Binding a list of objects from inside a manually-driven {@link JsonReader}.
+	 */
+	@Test
+	void readFromReader() throws JsonParserException {
+		JsonReader reader = JsonReader.from("{\"points\":[{\"x\":1},{\"x\":2}],\"after\":3}");
+		JsonBinder<Point> binder = JsonBinder.of(Point.class);
+		reader.object();
+		assertTrue(reader.next());
+		reader.array();
+		int sum = 0;
+		while (reader.next())
+			sum += binder.read(reader).x;
+		assertEquals(3, sum);
+		assertTrue(reader.next());
+		assertEquals("after", reader.key());
+		assertEquals(3, reader.intVal());
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link JsonColumns}.
+ */
+class JsonColumnsTest {
+	// CHECKSTYLE_OFF: MagicNumber
+	// CHECKSTYLE_OFF: JavadocMethod
+
+	private static final JsonColumns COLUMNS = JsonColumns.builder()
+			.column("id", JsonColumns.Type.LONG)
+			.column("price", JsonColumns.Type.DOUBLE)
+			.column("active", JsonColumns.Type.BOOLEAN)
+			.column("seller.country", JsonColumns.Type.STRING)
+			.build();
+
+	@Test
+	void columns() throws JsonParserException {
+		JsonColumns.Table table = COLUMNS.from("[{\"id\":1,\"price\":9.5,\"active\":true,\"seller\":{\"country\":\"NZ\"}},"
+				+ "{\"extra\":[1,{\"id\":99}],\"price\":1,\"id\":-12345678901234,\"seller\":{\"name\":\"x\",\"country\":\"DE\"}},"
+				+ "null,"
+				+ "{\"id\":3,\"price\":null,\"active\":false,\"seller\":{\"country\":\"NZ\"}},"
+				+ "{\"id\":4,\"seller\":\"unknown\"}]");
+		assertEquals(5, table.size());
+
+		JsonColumns.Column id = table.column("id");
+		assertArrayEquals(new long[] { 1, -12345678901234L, 0, 3, 4 }, id.longs());
+		assertTrue(id.isNull(2));
+		assertFalse(id.isNull(4));
+
+		JsonColumns.Column price = table.column("price");
+		assertArrayEquals(new double[] { 9.5, 1, 0, 0, 0 }, price.doubles());
+		assertEquals(3, price.nulls().cardinality());
+		assertTrue(price.isNull(3));
+
+		assertArrayEquals(new boolean[] { true, false, false, false, false }, table.column("active").booleans());
+		assertFalse(table.column("active").isNull(3));
+		assertTrue(table.column("active").isNull(1));
+
+		JsonColumns.Column country = table.column("seller.country");
+		assertArrayEquals(new int[] { 0, 1, -1, 0, -1 }, country.codes());
+		assertEquals(Arrays.asList("NZ", "DE"), country.dictionary());
+		assertEquals("DE", country.string(1));
+		assertNull(country.string(4));
+		assertTrue(country.isNull(4));
+
+		assertThrows(IllegalStateException.class, () -> id.doubles());
+		assertThrows(IllegalArgumentException.class, () -> table.column("seller"));
+	}
+
+	@Test
+	void manyRowsFromStream() throws JsonParserException {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < 10000; i++)
+			sb.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append(",\"seller\":{\"country\":\"c\u00e9")
+					.append(i % 300).append("\"}}");
+		sb.append(']');
+		JsonColumns.Table table = COLUMNS.from(new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8)));
+		assertEquals(10000, table.size());
+		assertEquals(10000, table.column("id").longs().length);
+		assertEquals(9999, table.column("id").longs()[9999]);
+		assertEquals(300, table.column("seller.country").dictionary().size());
+		assertEquals("c\u00e9" + 7, table.column("seller.country").string(9607));
+		assertEquals(10000, table.column("price").nulls().cardinality());
+	}
+
+	@Test
+	void readerPositioned() throws JsonParserException {
+		JsonReader reader = JsonReader.from("{\"rows\":[{\"id\":7}],\"after\":true}");
+		reader.object();
+		assertTrue(reader.next());
+		JsonColumns.Table table = COLUMNS.read(reader);
+		assertArrayEquals(new long[] { 7 }, table.column("id").longs());
+		assertTrue(reader.next());
+		assertEquals("after", reader.key());
+	}
+
+	@Test
+	void failures() {
+		assertThrows(JsonParserException.class, () -> COLUMNS.from("[{\"id\":\"1\"}]"));
+		assertThrows(JsonParserException.class, () -> COLUMNS.from("[{\"seller\":{\"country\":[]}}]"));
+		assertThrows(JsonParserException.class, () -> COLUMNS.from("[1]"));
+		assertThrows(JsonParserException.class, () -> COLUMNS.from("{}"));
+		assertThrows(IllegalArgumentException.class,
+				() -> JsonColumns.builder().column("a", JsonColumns.Type.LONG).column("a", JsonColumns.Type.LONG));
+		assertThrows(IllegalArgumentException.class, () -> JsonColumns.builder().column("a", JsonColumns.Type.LONG)
+				.column("a.b", JsonColumns.Type.LONG).build());
+	}
+}
@@ -17,7 +17,10 @@ package com.grack.nanojson;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -124,4 +127,56 @@ class JsonNumberTest {
         String json = JsonWriter.string().value(value).done();
         assertEquals("1.000", json);
     }
+
+    /**
+     * Doubles and floats are written in the same layout as {@link Double#toString(double)}, with the shortest
+     * digits that round-trip.
+     */
+    @Test
+    void doubleWrite() {
+        JsonArray array = JsonArray.from(0.0, -0.0, 1.5, 100.0, 1234567.0, 1.0E7, 12345678.9, 0.001, 9.99E-4,
+                0.1, 0.3, -1.0E-10, 2.0E22, 1.0E23, Double.MAX_VALUE, Double.MIN_VALUE, Double.MIN_NORMAL);
+        assertEquals("[0.0,-0.0,1.5,100.0,1234567.0,1.0E7,1.23456789E7,0.001,9.99E-4,0.1,0.3,-1.0E-10,2.0E22,"
+                + "1.0E23,1.7976931348623157E308,4.9E-324,2.2250738585072014E-308]",
+                JsonWriter.string().array(array).done());
+        assertEquals("[0.1,1.4E-45,3.4028235E38,1.1754944E-38,1.6777216E7,-2.5E-5]", JsonWriter.string().array()
+                .value(0.1f).value(Float.MIN_VALUE).value(Float.MAX_VALUE).value(Float.MIN_NORMAL)
+                .value(16777216.0f).value(-2.5E-5f).end().done());
+        assertEquals("{\"a\":-1.0,\"b\":1.25}", JsonWriter.string().object().value("a", -1.0)
+                .value("b", Float.valueOf(1.25f)).end().done());
+    }
+
+    /**
+     * Random doubles and floats read back as the same value, through both the string and UTF-8 writers.
+     */
+    @Test
+    void doubleRoundTrip() throws JsonParserException {
+        Random r = new Random(1);
+        JsonStringWriter writer = JsonWriter.string().array();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonAppendableWriter stream = JsonWriter.on(bytes).array();
+        double[] doubles = new double[10000];
+        float[] floats = new float[doubles.length];
+        for (int i = 0; i < doubles.length; i++) {
+            do {
+                doubles[i] = Double.longBitsToDouble(r.nextLong());
+                floats[i] = Float.intBitsToFloat(r.nextInt());
+            } while (Double.isNaN(doubles[i]) || Double.isInfinite(doubles[i]) || Float.isNaN(floats[i])
+                    || Float.isInfinite(floats[i]));
+            writer.value(doubles[i]).value(floats[i]);
+            stream.value(doubles[i]).value(floats[i]);
+        }
+        String json = writer.end().done();
+        stream.end().done();
+        assertEquals(json, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+
+        JsonReader reader = JsonReader.from(json);
+        reader.array();
+        for (int i = 0; i < doubles.length; i++) {
+            reader.next();
+            assertEquals(Double.doubleToLongBits(doubles[i]), Double.doubleToLongBits(reader.doubleVal()));
+            reader.next();
+            assertEquals(Float.floatToIntBits(floats[i]), Float.floatToIntBits(reader.floatVal()));
+        }
+    }
 }
@@ -15,10 +15,12 @@
  */
 package com.grack.nanojson;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -26,8 +28,11 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
+import java.math.BigInteger;
 import java.nio.charset.Charset;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -91,6 +96,322 @@ class JsonParserTest {
 		assertEquals("{}", JsonParser.object().from("{}").toString());
 	}
 
+	/**
+	 * Compact objects behave like regular ones, including their iteration order and output.
+	 */
+	@Test
+	void compactObjects() throws JsonParserException {
+		String json = "{\"z\":1,\"a\":\"x\",\"m\":{\"n\":null,\"b\":true},\"l\":[1,{}]}";
+		JsonObject regular = JsonParser.object().from(json);
+		JsonObject compact = JsonParser.object().withCompactObjects().from(json);
+		assertEquals(CompactJsonObject.class, compact.getClass());
+		assertEquals(CompactJsonObject.class, compact.getObject("m").getClass());
+		assertEquals(regular.toString(), compact.toString());
+		assertEquals(json, JsonWriter.string(compact));
+		JsonObject copy = new JsonObject(compact);
+		assertEquals(copy, compact);
+		assertEquals(compact, copy);
+		assertEquals(copy.hashCode(), compact.hashCode());
+		assertEquals(1, compact.getInt("z"));
+		assertEquals("x", compact.getString("a"));
+		assertTrue(compact.getObject("m").isNull("n"));
+		assertTrue(compact.getObject("m").has("n"));
+		assertFalse(compact.has("n"));
+		assertTrue(compact.getObject("m").getBoolean("b"));
+		assertEquals(2, compact.getArray("l").size());
+	}
+
+	/**
+	 * Exercises the {@link java.util.Map} API of compact objects on both sides of the switch to a hashed index.
+	 */
+	@Test
+	void compactObjectMapApi() throws JsonParserException {
+		JsonObject compact = JsonParser.object().withCompactObjects().from("{}");
+		JsonObject regular = new JsonObject();
+		for (int i = 0; i < 100; i++) {
+			compact.put("k" + i, i);
+			regular.put("k" + i, i);
+		}
+		assertEquals(regular, compact);
+		assertEquals(Integer.valueOf(42), compact.get("k42"));
+		assertNull(compact.get("k100"));
+
+		for (int i = 0; i < 100; i += 3) {
+			assertEquals(i, compact.remove("k" + i));
+			regular.remove("k" + i);
+		}
+		assertEquals(regular, compact);
+		assertEquals(Arrays.asList(regular.keySet().toArray()), Arrays.asList(compact.keySet().toArray()));
+
+		compact.entrySet().removeIf(e -> ((Integer) e.getValue()) % 2 == 0);
+		regular.entrySet().removeIf(e -> ((Integer) e.getValue()) % 2 == 0);
+		assertEquals(regular, compact);
+		assertEquals(regular.toString(), compact.toString());
+
+		compact.merge("k1", 10, (a, b) -> (Integer) a + (Integer) b);
+		compact.computeIfAbsent("new", k -> "v");
+		compact.computeIfPresent("k5", (k, v) -> null);
+		compact.putIfAbsent("k7", "ignored");
+		compact.replaceAll((k, v) -> v instanceof Integer ? -(Integer) v : v);
+		assertEquals(-11, compact.getInt("k1"));
+		assertEquals("v", compact.getString("new"));
+		assertFalse(compact.has("k5"));
+		assertEquals(-7, compact.getInt("k7"));
+
+		JsonObject copy = (JsonObject) compact.clone();
+		compact.clear();
+		assertTrue(compact.isEmpty());
+		assertEquals("{}", compact.toString());
+		assertEquals(-11, copy.getInt("k1"));
+		compact.putAll(copy);
+		assertEquals(copy, compact);
+	}
+
+	/**
+	 * Arrays of one kind of number are backed by primitive arrays; anything else falls back to a regular array.
+	 */
+	@Test
+	void primitiveArrays() throws JsonParserException {
+		String json = "[[1,-2,3],[1,3000000000,-9223372036854775808],[1.5,-2000.25],[1,2.5],[1,\"a\",[2]],[99999999999999999999,1],[]]";
+		JsonArray a = JsonParser.array().withPrimitiveArrays().from(json);
+		assertEquals(json, JsonWriter.string(a));
+		assertEquals(JsonParser.array().from(json).toString(), a.toString());
+
+		JsonArray ints = a.getArray(0);
+		assertEquals(NumericJsonArray.class, ints.getClass());
+		assertEquals(Integer.valueOf(-2), ints.get(1));
+		assertNull(ints.get(3));
+		assertArrayEquals(new int[] { 1, -2, 3 }, ints.toIntArray());
+		assertArrayEquals(new double[] { 1, -2, 3 }, ints.toDoubleArray());
+		assertEquals(JsonArray.from(1, -2, 3), ints);
+		assertEquals(ints, JsonArray.from(1, -2, 3));
+		assertEquals(JsonArray.from(1, -2, 3).hashCode(), ints.hashCode());
+
+		JsonArray longs = a.getArray(1);
+		assertEquals(NumericJsonArray.class, longs.getClass());
+		assertEquals(Long.valueOf(3000000000L), longs.get(1));
+		assertEquals(Long.MIN_VALUE, longs.getLong(2));
+		assertArrayEquals(new long[] { 1, 3000000000L, Long.MIN_VALUE }, longs.toLongArray());
+
+		JsonArray doubles = a.getArray(2);
+		assertEquals(NumericJsonArray.class, doubles.getClass());
+		assertEquals(Double.valueOf(-2000.25), doubles.get(1));
+		assertArrayEquals(new double[] { 1.5, -2000.25 }, doubles.toDoubleArray());
+
+		assertEquals(JsonArray.class, a.getArray(3).getClass());
+		assertEquals(2.5, a.getArray(3).getDouble(1));
+		assertEquals(JsonArray.class, a.getArray(4).getClass());
+		assertEquals(NumericJsonArray.class, a.getArray(4).getArray(2).getClass());
+		assertEquals(JsonArray.class, a.getArray(5).getClass());
+		assertEquals(new BigInteger("99999999999999999999"), new BigInteger(a.getArray(5).get(0).toString()));
+		assertEquals(JsonArray.class, a.getArray(6).getClass());
+		assertThrows(IndexOutOfBoundsException.class, () -> ints.get(-1));
+		assertThrows(IndexOutOfBoundsException.class, () -> doubles.getDouble(-1));
+
+		String huge = "[[1e400,2.5],[2.5,-1e400]]";
+		JsonArray overflow = JsonParser.array().withPrimitiveArrays().withLazyNumbers().from(huge);
+		assertEquals(huge, JsonWriter.string(overflow));
+		assertEquals(JsonArray.class, overflow.getArray(0).getClass());
+		assertEquals(JsonArray.class, overflow.getArray(1).getClass());
+		assertEquals(JsonParser.array().from(huge).toString(), JsonParser.array().withPrimitiveArrays().from(huge).toString());
+
+		String mixed = "[[1.50,\"x\"],[1,2,1.0e2,null],[1,3000000000,2000000000,true],[-0,9223372036854775807,[]]]";
+		for (boolean lazy : new boolean[] { false, true }) {
+			JsonArray plain = (lazy ? JsonParser.array().withLazyNumbers() : JsonParser.array()).from(mixed);
+			JsonArray boxed = (lazy ? JsonParser.array().withLazyNumbers() : JsonParser.array()).withPrimitiveArrays()
+					.from(mixed);
+			assertEquals(JsonWriter.string(plain), JsonWriter.string(boxed));
+			for (int i = 0; i < plain.size(); i++)
+				for (int j = 0; j < plain.getArray(i).size(); j++) {
+					Object value = plain.getArray(i).get(j);
+					assertEquals(value == null ? null : value.getClass(), boxed.getArray(i).get(j) == null ? null
+							: boxed.getArray(i).get(j).getClass(), mixed + " at " + i + "," + j);
+				}
+		}
+		assertEquals(mixed, JsonWriter.string(JsonParser.array().withLazyNumbers().withPrimitiveArrays().from(mixed)));
+
+		for (String bad : new String[] { "[1,2,]", "[1 2]", "[1,]", "[1,:]" }) {
+			try {
+				JsonParser.array().withPrimitiveArrays().from(bad);
+				fail("Should have failed to parse " + bad);
+			} catch (JsonParserException e) {
+				// expected
+			}
+		}
+	}
+
+	/**
+	 * Modifying a primitive-backed array moves it into the list without disturbing its contents.
+	 */
+	@Test
+	void primitiveArrayModification() throws JsonParserException {
+		JsonArray a = JsonParser.array().withPrimitiveArrays().from("[1,2,3,4]");
+		Iterator<Object> it = a.iterator();
+		assertEquals(1, it.next());
+		assertEquals(2, it.next());
+		it.remove();
+		assertEquals(3, it.next());
+		a.add("x");
+		assertEquals("[1, 3, 4, x]", a.toString());
+		assertEquals(4, a.size());
+		assertEquals(4, a.getInt(2));
+		assertEquals("[1,3,4,\"x\"]", JsonWriter.string(a));
+
+		JsonArray b = JsonParser.array().withPrimitiveArrays().from("[5,6]");
+		JsonArray copy = (JsonArray) b.clone();
+		b.set(0, 7);
+		assertEquals("[7, 6]", b.toString());
+		assertEquals("[5, 6]", copy.toString());
+		assertEquals(11, copy.stream().mapToInt(o -> (Integer) o).sum());
+	}
+
+	/**
+	 * Frozen objects with the same keys in the same order share one shape.
+	 */
+	@Test
+	void frozenObjects() throws JsonParserException {
+		String json = "[{\"id\":1,\"name\":\"a\"},{\"id\":2,\"name\":\"b\",\"tags\":{\"x\":true}},"
+				+ "{\"id\":3,\"name\":\"c\"},{\"name\":\"d\",\"id\":4},{}]";
+		JsonArray a = JsonParser.array().withFrozenObjects().from(json);
+		assertEquals(json, JsonWriter.string(a));
+		assertEquals(JsonParser.array().from(json).toString(), a.toString());
+
+		FrozenJsonObject first = (FrozenJsonObject) a.getObject(0);
+		FrozenJsonObject third = (FrozenJsonObject) a.getObject(2);
+		FrozenJsonObject reordered = (FrozenJsonObject) a.getObject(3);
+		assertTrue(first.shape() == third.shape());
+		assertFalse(first.shape() == reordered.shape());
+		assertEquals(3, third.getInt("id"));
+		assertEquals("c", third.getString("name"));
+		assertFalse(third.has("tags"));
+		assertTrue(a.getObject(1).getObject("tags").getBoolean("x"));
+		assertEquals(new JsonObject(first), first);
+		assertEquals(first, new JsonObject(first));
+		assertTrue(a.getObject(4).isEmpty());
+
+		try {
+			first.put("id", 5);
+			fail("Should not modify a frozen object");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		try {
+			first.keySet().remove("id");
+			fail("Should not modify a frozen object");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Lookups find every key of a large shape, and a repeated key keeps its first position and its last value.
+	 */
+	@Test
+	void frozenObjectLookups() throws JsonParserException {
+		StringBuilder sb = new StringBuilder("{");
+		for (int i = 0; i < 200; i++)
+			sb.append('"').append("key").append(i).append("\":").append(i).append(',');
+		sb.append("\"key7\":-7}");
+		JsonObject o = JsonParser.object().withFrozenObjects().from(sb.toString());
+		assertEquals(200, o.size());
+		for (int i = 0; i < 200; i++)
+			assertEquals(i == 7 ? -7 : i, o.getInt("key" + i));
+		assertFalse(o.has("key200"));
+		assertNull(o.get(7));
+		assertEquals("key7", o.keySet().toArray()[7]);
+	}
+
+	/**
+	 * A map-like object with many distinct keys parses in linear time, and objects with the same small layout still
+	 * share a shape alongside it.
+	 */
+	@Test
+	void frozenLargeObject() throws JsonParserException {
+		StringBuilder sb = new StringBuilder("[{\"a\":1,\"b\":2},{");
+		for (int i = 0; i < 100000; i++)
+			sb.append("\"key").append(i).append("\":").append(i).append(',');
+		sb.append("\"key3\":-3,\"key99999\":-1},{\"a\":3,\"b\":4}]");
+		JsonArray a = JsonParser.array().withFrozenObjects().from(sb.toString());
+		JsonObject o = a.getObject(1);
+		assertEquals(100000, o.size());
+		assertEquals(-3, o.getInt("key3"));
+		assertEquals(-1, o.getInt("key99999"));
+		assertEquals(JsonParser.MAX_SHARED_KEYS + 1, o.getInt("key" + (JsonParser.MAX_SHARED_KEYS + 1)));
+		assertEquals("key3", o.keySet().toArray()[3]);
+		assertEquals("key99999", o.keySet().toArray()[99999]);
+		assertTrue(((FrozenJsonObject) a.getObject(0)).shape() == ((FrozenJsonObject) a.getObject(2)).shape());
+	}
+
+	/**
+	 * Identical inputs are parsed once and share an unmodifiable tree.
+	 */
+	@Test
+	void documentCache() throws JsonParserException {
+		JsonDocumentCache cache = new JsonDocumentCache(1 << 20);
+		String json = "{\"a\":[1,2,{\"b\":\"c\"}],\"d\":1.5}";
+		JsonObject first = JsonParser.object().withCache(cache).from(json);
+		JsonObject second = JsonParser.object().withCache(cache).from(new String(json.toCharArray()));
+		assertTrue(first == second);
+		assertEquals(json, JsonWriter.string(first));
+		assertEquals(1, cache.hits());
+		assertEquals(1, cache.misses());
+		assertTrue(cache.bytes() > json.length());
+
+		byte[] bytes = json.getBytes(Charset.forName("UTF-8"));
+		JsonObject fromBytes = JsonParser.object().withCache(cache).from(new ByteArrayInputStream(bytes));
+		assertTrue(fromBytes == JsonParser.object().withCache(cache).from(new ByteArrayInputStream(bytes)));
+		assertEquals(json, JsonWriter.string(fromBytes));
+		assertEquals(2, cache.size());
+
+		// Inputs are closed whether or not a cache is set
+		for (JsonDocumentCache c : Arrays.asList(cache, null)) {
+			boolean[] closed = new boolean[2];
+			JsonParser.object().withCache(c).from(new ByteArrayInputStream(bytes) {
+				@Override
+				public void close() {
+					closed[0] = true;
+				}
+			});
+			JsonParser.object().withCache(c).from(new StringReader(json) {
+				@Override
+				public void close() {
+					closed[1] = true;
+				}
+			});
+			assertArrayEquals(new boolean[] { true, true }, closed);
+		}
+
+		try {
+			JsonParser.array().withCache(cache).from(json);
+			fail("Should check the type of a cached document");
+		} catch (JsonParserException e) {
+			// expected
+		}
+		for (Runnable modification : Arrays.<Runnable>asList(() -> first.put("e", 1),
+				() -> first.getArray("a").add(3), () -> first.getArray("a").subList(0, 1).set(0, 2), () -> {
+					Iterator<Object> it = first.getArray("a").iterator();
+					it.next();
+					it.remove();
+				})) {
+			try {
+				modification.run();
+				fail("Should not modify a cached document");
+			} catch (UnsupportedOperationException e) {
+				// expected
+			}
+		}
+
+		// Least recently used documents are evicted to stay within the limit, and oversized ones are not kept
+		JsonDocumentCache small = new JsonDocumentCache(2000);
+		for (int i = 0; i < 50; i++)
+			JsonParser.any().withCache(small).from("[" + i + ",\"padding padding padding\"]");
+		assertTrue(small.evictions() > 0);
+		assertTrue(small.bytes() <= 2000);
+		assertEquals(50 - small.evictions(), small.size());
+		JsonParser.any().withCache(small).from("\"" + "x".repeat(2000) + "\"");
+		assertEquals(50 - small.evictions(), small.size());
+	}
+
 	@Test
 	void objectOneElement() throws JsonParserException {
 		assertEquals(JsonObject.class, JsonParser.object().from("{\"a\":1}").getClass());
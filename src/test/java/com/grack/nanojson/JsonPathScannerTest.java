@@ -0,0 +1,148 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link JsonPathScanner}.
+ */
+public class JsonPathScannerTest {
+	// CHECKSTYLE_OFF: MagicNumber
+	// CHECKSTYLE_OFF: JavadocMethod
+
+	private static final String STORE = "{\"store\":{\"book\":["
+			+ "{\"title\":\"A\",\"price\":8.95,\"tags\":[\"x\"]},"
+			+ "{\"title\":\"B\",\"price\":12.99,\"isbn\":null},"
+			+ "{\"title\":\"C\",\"price\":22,\"isbn\":\"0-553\"}],"
+			+ "\"bicycle\":{\"color\":\"red\",\"price\":19.95}},\"a/b\":1,\"m~n\":2,\"\":3}";
+
+	/**
+	 * Every path gives the same values as evaluating it over the parsed document, in the same order unless a descent
+	 * matches values inside one another.
+	 */
+	@Test
+	void matchesDom() throws JsonParserException {
+		JsonObject doc = JsonParser.object().from(STORE);
+		for (String path : new String[] { "$", "$.store.book[1].title", "$.store.book[*].title", "$..price",
+				"$.store.*", "$..book[0]", "$.store.book[-1].title", "$.store.book[?(@.price < 20)].title",
+				"$..book[?(@.isbn)].title", "$..[?(@.title == 'C')].price", "$..[-1]", "/store/book/2/isbn",
+				"/a~1b", "/", "$.store.book[1].isbn", "$.missing", "$.store.book[5]", "$..tags[0]" }) {
+			List<Object> scanned = new ArrayList<>();
+			JsonPathScanner.builder().path(path, scanned::add).build().from(STORE);
+			assertEquals(JsonWriter.string(JsonPath.compile(path).readAll(doc)), JsonWriter.string(scanned), path);
+		}
+
+		List<Object> all = new ArrayList<>();
+		JsonPathScanner.builder().path("$..*", all::add).build().from(STORE);
+		List<String> expected = new ArrayList<>();
+		for (Object value : JsonPath.compile("$..*").readAll(doc))
+			expected.add(JsonWriter.string(value));
+		List<String> actual = new ArrayList<>();
+		for (Object value : all)
+			actual.add(JsonWriter.string(value));
+		assertEquals(expected.get(0), actual.get(0));
+		expected.sort(null);
+		actual.sort(null);
+		assertEquals(expected, actual);
+	}
+
+	/**
+	 * Paths with nested descents deliver each value once for every way they reach it, like the DOM engine.
+	 */
+	@Test
+	void nestedDescentsMatchDom() throws JsonParserException {
+		for (String json : new String[] { "{\"b\":{\"b\":{\"c\":true}}}", "{\"b\":{\"b\":{\"c\":1},\"c\":2}}",
+				"[[1,[2,[3]]],{\"b\":[{\"c\":[4]}]}]", STORE }) {
+			Object doc = JsonParser.any().from(json);
+			for (String path : new String[] { "$..b..c", "$..*..*", "$..b..*", "$..[0]..[0]", "$..*[0]", "$..book..price",
+					"$..[?(@.c)]..c", "$..b.b..c" }) {
+				List<Object> scanned = new ArrayList<>();
+				JsonPathScanner.builder().path(path, scanned::add).build().from(json);
+				assertEquals(sorted(JsonPath.compile(path).readAll(doc)), sorted(scanned), path + " over " + json);
+			}
+		}
+		List<Object> scanned = new ArrayList<>();
+		JsonPathScanner.builder().path("$..b..c", scanned::add).build().from("{\"b\":{\"b\":{\"c\":true}}}");
+		assertEquals(Arrays.asList(true, true), scanned);
+	}
+
+	@Test
+	void severalPaths() throws JsonParserException {
+		List<Object> titles = new ArrayList<>();
+		List<Object> prices = new ArrayList<>();
+		List<Object> cheap = new ArrayList<>();
+		JsonPathScanner scanner = JsonPathScanner.builder()
+				.path("$.store.book[*].title", titles::add)
+				.path(JsonPath.compile("$..price"), prices::add)
+				.path("$.store.book[?(@.price < 10)]", cheap::add)
+				.path("$.store.book[*].title", titles::add)
+				.build();
+		scanner.from(new ByteArrayInputStream(STORE.getBytes(StandardCharsets.UTF_8)));
+		assertEquals(Arrays.asList("A", "A", "B", "B", "C", "C"), strings(titles));
+		assertEquals(Arrays.asList("8.95", "12.99", "22", "19.95"), strings(prices));
+		assertEquals("[{\"title\":\"A\",\"price\":8.95,\"tags\":[\"x\"]}]", JsonWriter.string(cheap));
+	}
+
+	@Test
+	void readerPositionedInside() throws JsonParserException {
+		List<Object> ids = new ArrayList<>();
+		JsonPathScanner scanner = JsonPathScanner.builder().path("$[*].id", ids::add).build();
+		JsonReader reader = JsonReader.from("{\"skip\":[{\"id\":0}],"
+				+ "\"rows\":[{\"id\":1},{\"id\":2,\"x\":[]}],\"after\":true}");
+		reader.object();
+		reader.next();
+		reader.skipValue();
+		reader.next();
+		scanner.read(reader);
+		reader.next();
+		assertEquals("after", reader.key());
+		assertEquals(Arrays.asList("1", "2"), strings(ids));
+	}
+
+	@Test
+	void failures() {
+		JsonPathScanner scanner = JsonPathScanner.builder().path("$.a", v -> { }).build();
+		assertThrows(JsonParserException.class, () -> scanner.from("{\"a\":1,\"b\":[}"));
+		assertThrows(JsonParserException.class, () -> scanner.from("{\"a\":[1,}"));
+		assertThrows(NullPointerException.class, () -> JsonPathScanner.builder().path("$.a", null));
+		assertThrows(IllegalArgumentException.class, () -> JsonPathScanner.builder().path("$.", v -> { }));
+	}
+
+	private static List<String> sorted(List<Object> values) {
+		List<String> s = new ArrayList<>();
+		for (Object value : values)
+			s.add(JsonWriter.string(value));
+		s.sort(null);
+		return s;
+	}
+
+	private static List<String> strings(List<Object> values) {
+		String[] s = new String[values.size()];
+		for (int i = 0; i < s.length; i++)
+			s[i] = String.valueOf(values.get(i));
+		return Arrays.asList(s);
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link JsonPath}.
+ */
+public class JsonPathTest {
+	// CHECKSTYLE_OFF: MagicNumber
+	// CHECKSTYLE_OFF: JavadocMethod
+
+	private static final String STORE = "{\"store\":{\"book\":["
+			+ "{\"title\":\"A\",\"price\":8.95,\"tags\":[\"x\"]},"
+			+ "{\"title\":\"B\",\"price\":12.99,\"isbn\":null},"
+			+ "{\"title\":\"C\",\"price\":22,\"isbn\":\"0-553\"}],"
+			+ "\"bicycle\":{\"color\":\"red\",\"price\":19.95}},\"a/b\":1,\"m~n\":2,\"\":3}";
+
+	@Test
+	void definitePaths() throws JsonParserException {
+		for (JsonParser.JsonParserContext<JsonObject> parser : Arrays.asList(JsonParser.object(),
+				JsonParser.object().withLazyNumbers().withLazyStrings(), JsonParser.object().withFrozenObjects())) {
+			JsonObject doc = parser.from(STORE);
+			assertEquals("B", JsonPath.compile("$.store.book[1].title").read(doc, String.class));
+			assertEquals("C", JsonPath.compile("$['store'][\"book\"][-1].title").read(doc, String.class));
+			assertEquals("red", JsonPath.compile("$.store.bicycle.color").read(doc).toString());
+			assertNull(JsonPath.compile("$.store.book[3].title").read(doc));
+			assertNull(JsonPath.compile("$.store.book[0].title.missing").read(doc));
+			assertNull(JsonPath.compile("$.store.book[0].price").read(doc, String.class));
+			assertTrue(JsonPath.compile("$.store.book[1].isbn").exists(doc));
+			assertFalse(JsonPath.compile("$.store.book[0].isbn").exists(doc));
+			assertEquals(Collections.singletonList(null), JsonPath.compile("$.store.book[1].isbn").readAll(doc));
+			assertTrue(JsonPath.compile("$").read(doc) == doc);
+		}
+	}
+
+	@Test
+	void pointers() throws JsonParserException {
+		JsonObject doc = JsonParser.object().from(STORE);
+		assertEquals("A", JsonPath.compile("/store/book/0/title").read(doc, String.class));
+		assertEquals(1, JsonPath.compile("/a~1b").read(doc, Number.class).intValue());
+		assertEquals(2, JsonPath.compile("/m~0n").read(doc, Number.class).intValue());
+		assertEquals(3, JsonPath.compile("/").read(doc, Number.class).intValue());
+		assertTrue(JsonPath.compile("").read(doc) == doc);
+		assertNull(JsonPath.compile("/store/book/-").read(doc));
+		assertNull(JsonPath.compile("/store/book/01").read(doc));
+	}
+
+	@Test
+	void wildcardsAndFilters() throws JsonParserException {
+		JsonObject doc = JsonParser.object().withLazyNumbers().from(STORE);
+		assertEquals(Arrays.asList("A", "B", "C"), strings(JsonPath.compile("$.store.book[*].title").readAll(doc)));
+		assertEquals(Arrays.asList("8.95", "12.99", "22", "19.95"),
+				strings(JsonPath.compile("$..price").readAll(doc)));
+		assertEquals(Arrays.asList("A", "B"), strings(JsonPath.compile("$.store.book[?(@.price < 20)].title")
+				.readAll(doc)));
+		assertEquals(Arrays.asList("C"), strings(JsonPath.compile("$..book[?(@.isbn != null)].title").readAll(doc)));
+		assertEquals(Arrays.asList("B", "C"), strings(JsonPath.compile("$..book[?(@.isbn)].title").readAll(doc)));
+		assertEquals(Arrays.asList("C"), strings(JsonPath.compile("$..[?(@.title == 'C')].title").readAll(doc)));
+		assertEquals(Arrays.asList("x"), strings(JsonPath.compile("$..tags[?(@ >= \"x\")]").readAll(doc)));
+		assertEquals(Arrays.asList("A", "C"), strings(JsonPath.compile("$.store.book.*.title").stream(doc)
+				.filter(t -> !"B".equals(t.toString())).collect(Collectors.toList())));
+		assertEquals("A", JsonPath.compile("$..title").read(doc, String.class));
+		assertFalse(JsonPath.compile("$..title").isDefinite());
+		assertTrue(JsonPath.compile("$.store['book'][0]").isDefinite());
+	}
+
+	/**
+	 * A descent applies its step to a value before the values inside it, and matches a value once for each way in.
+	 */
+	@Test
+	void descentOrder() throws JsonParserException {
+		Object doc = JsonParser.any().from("{\"a\":{\"x\":1},\"b\":2}");
+		assertEquals("[{\"x\":1},2,1]", JsonWriter.string(JsonPath.compile("$..*").readAll(doc)));
+		Object nested = JsonParser.any().from("{\"b\":{\"b\":{\"c\":1},\"c\":2}}");
+		assertEquals("[2,1,1]", JsonWriter.string(JsonPath.compile("$..b..c").readAll(nested)));
+	}
+
+	@Test
+	void lazyResults() {
+		Iterator<Integer> counter = new Iterator<Integer>() {
+			private int next;
+
+			@Override
+			public boolean hasNext() {
+				return true;
+			}
+
+			@Override
+			public Integer next() {
+				return next++;
+			}
+		};
+		JsonArray huge = new JsonArray() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Stream<Object> stream() {
+				return Stream.generate(counter::next);
+			}
+		};
+		assertEquals(3, JsonPath.compile("$[?(@ > 2)]").read(huge));
+	}
+
+	@Test
+	void compileCachesAndFailures() {
+		assertTrue(JsonPath.compile("$.a.b[0].c") == JsonPath.compile("$.a.b[0].c"));
+		assertEquals("$.a.b[0].c", JsonPath.compile("$.a.b[0].c").toString());
+		for (String bad : new String[] { "a.b", "$.", "$[", "$[x]", "$['a'", "$.a b", "$[?(@.a ~ 1)]",
+				"$[?(@..a)]", "$[?(@.a == x)]", "/a~2", "/a~" })
+			assertThrows(IllegalArgumentException.class, () -> JsonPath.compile(bad), bad);
+	}
+
+	private static List<String> strings(List<Object> values) {
+		String[] s = new String[values.size()];
+		for (int i = 0; i < s.length; i++)
+			s[i] = String.valueOf(values.get(i));
+		return Arrays.asList(s);
+	}
+}
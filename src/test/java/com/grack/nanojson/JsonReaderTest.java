@@ -23,6 +23,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 
 import com.grack.nanojson.Users.Friend;
@@ -364,6 +365,103 @@ public class JsonReaderTest {
 		return json;
 	}
 
+	/**
+	 * Raw values are captured exactly, and reading continues after them.
+	 */
+	@Test
+	void rawValue() throws JsonParserException {
+		String json = "{\"a\": { \"b\" : [1, 2.50, \"\\u0041\"] },\"s\":\"x\\n\",\"n\":-1.0e5,\"t\":true,\"z\":null,\"c\":3}";
+		JsonReader reader = JsonReader.from(json);
+		reader.object();
+		assertTrue(reader.next());
+		assertEquals("{ \"b\" : [1, 2.50, \"\\u0041\"] }", reader.rawValue().toString());
+		assertTrue(reader.next());
+		assertEquals("\"x\\n\"", reader.rawValue().toString());
+		assertTrue(reader.next());
+		assertEquals("-1.0e5", reader.rawValue().toString());
+		assertTrue(reader.next());
+		assertEquals("true", reader.rawValue().toString());
+		assertTrue(reader.next());
+		assertEquals("null", reader.rawValue().toString());
+		assertTrue(reader.next());
+		assertEquals("c", reader.key());
+		assertEquals(3, reader.intVal());
+		assertFalse(reader.next());
+	}
+
+	/**
+	 * Raw values larger than the tokener's buffer, from both a string and a UTF-8 stream, round-trip through the
+	 * writer unchanged.
+	 */
+	@Test
+	void rawValueAcrossBuffers() throws JsonParserException {
+		StringBuilder sb = new StringBuilder("[ {\"x\": [");
+		for (int i = 0; i < 20000; i++)
+			sb.append(i == 0 ? "" : ", ").append("\"\u00e9\u2603").append(i).append('"');
+		sb.append("] } , 7]");
+		String json = sb.toString();
+		String inner = json.substring(2, json.lastIndexOf(',') - 1);
+
+		JsonReader reader = JsonReader.from(json);
+		reader.array();
+		assertTrue(reader.next());
+		JsonRaw raw = reader.rawValue();
+		assertEquals(inner, raw.toString());
+		assertTrue(reader.next());
+		assertEquals(7, reader.intVal());
+
+		reader = JsonReader.from(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+		reader.array();
+		assertTrue(reader.next());
+		raw = reader.rawValue();
+		assertEquals(inner, raw.toString());
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		JsonWriter.on(bytes).array().value(raw).value(7).end().done();
+		assertEquals("[" + inner + ",7]", new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+		assertEquals("{\"r\":" + inner + "}", JsonWriter.string().object().value("r", raw).end().done());
+	}
+
+	/**
+	 * Copy documents to writers and other sinks, whole, in part and with keys filtered.
+	 */
+	@Test
+	void transferTo() throws JsonParserException {
+		String json = "{\"a\":[1,-0,1.5e10,123456789012345678901234567890,true,false,null],"
+				+ "\"b\":{\"s\":\"\\\"\\\\\\n\\u2603\\ud83d\\ude00</\",\"\\u00e9\":{}},\"c\":[[],{}]}";
+		String expected = JsonWriter.string(JsonParser.any().withLazyNumbers().from(json));
+		assertEquals(expected, JsonReader.from(json).transferTo(JsonWriter.string()).done());
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		JsonReader.from(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)))
+				.transferTo(JsonWriter.indent("  ").on(bytes)).done();
+		assertEquals(JsonWriter.indent("  ").string().value(JsonParser.any().withLazyNumbers().from(json)).done(),
+				new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+
+		JsonArray built = JsonReader.from(json).transferTo(JsonArray.builder()).done();
+		assertEquals("[" + expected + "]", JsonWriter.string(built));
+
+		String filtered = JsonReader.from(json).transferTo(JsonWriter.string(),
+				k -> k.equals("a") ? null : k.equals("s") ? "t" : k).done();
+		assertEquals("{\"b\":{\"t\":\"\\\"\\\\\\n\u2603\ud83d\ude00<\\/\",\"\u00e9\":{}},\"c\":[[],{}]}",
+				filtered);
+
+		JsonReader reader = JsonReader.from(json);
+		reader.object();
+		reader.next();
+		assertEquals("[1,-0,1.5e10,123456789012345678901234567890,true,false,null]",
+				reader.transferTo(JsonWriter.string()).done());
+		reader.next();
+		assertEquals("[\"b\",{\"s\":\"\\\"\\\\\\n\u2603\ud83d\ude00<\\/\",\"\u00e9\":{}}]",
+				reader.transferTo(JsonWriter.string().array().value("b")).end().done());
+		assertTrue(reader.next());
+		assertEquals("c", reader.key());
+		assertEquals("[[],{}]", reader.transferTo(JsonWriter.string()).done());
+		assertFalse(reader.next());
+
+		assertEquals("5", JsonReader.from(" 5 ").transferTo(JsonWriter.string()).done());
+	}
+
 	/**
 	 * Entry point for test for profiling.
 	 */
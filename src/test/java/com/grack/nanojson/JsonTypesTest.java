@@ -224,4 +224,42 @@ class JsonTypesTest {
 			},
 			a.keySet().toArray(new String[0]));
 	}
+
+	@Test
+	void persistentVersions() throws JsonParserException {
+		String json = "{\"a\":{\"b\":1,\"c\":[1,2]},\"d\":{\"e\":true}}";
+		for (JsonParser.JsonParserContext<JsonObject> parser : Arrays.asList(JsonParser.object(),
+				JsonParser.object().withFrozenObjects())) {
+			JsonObject doc = parser.from(json);
+			JsonObject next = doc.with("a", doc.getObject("a").with("b", 2));
+			assertEquals("{\"a\":{\"b\":1,\"c\":[1,2]},\"d\":{\"e\":true}}", JsonWriter.string(doc));
+			assertEquals("{\"a\":{\"b\":2,\"c\":[1,2]},\"d\":{\"e\":true}}", JsonWriter.string(next));
+			assertTrue(doc.get("d") == next.get("d"));
+			assertTrue(doc.getObject("a").get("c") == next.getObject("a").get("c"));
+
+			JsonObject added = next.with("f", "x").without("d");
+			assertEquals("{\"a\":{\"b\":2,\"c\":[1,2]},\"f\":\"x\"}", JsonWriter.string(added));
+			assertEquals(2, next.size());
+			assertEquals(next, next.without("missing"));
+		}
+
+		JsonObject plain = JsonParser.object().from(json);
+		JsonObject copy = plain.without("missing");
+		assertFalse(copy == plain);
+		copy.put("b", 2);
+		assertFalse(plain.containsKey("b"));
+
+		JsonObject frozen = JsonParser.object().withFrozenObjects().from(json);
+		assertTrue(frozen.without("missing") == frozen);
+		assertThrows(UnsupportedOperationException.class, () -> frozen.with("z", 1).put("y", 2));
+		assertThrows(UnsupportedOperationException.class, () -> frozen.without("a").put("y", 2));
+
+		JsonArray array = JsonArray.from(1, 2, 3);
+		assertEquals(JsonArray.from(1, 5, 3), array.with(1, 5));
+		assertEquals(JsonArray.from(1, 2, 3), array);
+		assertThrows(IndexOutOfBoundsException.class, () -> array.with(3, 0));
+		JsonArray frozenArray = new FrozenJsonArray(array);
+		assertEquals(JsonArray.from(4, 2, 3), frozenArray.with(0, 4));
+		assertThrows(UnsupportedOperationException.class, () -> frozenArray.with(0, 4).add(1));
+	}
 }
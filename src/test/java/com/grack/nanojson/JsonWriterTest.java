@@ -20,15 +20,24 @@ import org.junit.jupiter.api.Test;
 import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.Serializable;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -94,6 +103,28 @@ class JsonWriterTest {
         }
     }
 
+    /**
+     * Write progressively longer strings mixing clean runs, escapes and
+     * multi-byte chars so that every kind of run straddles the buffer boundary.
+     */
+    @Test
+    void mixedRunsAroundBufferSize() throws JsonParserException {
+        String mixed = "ab\"\\\n</\u0001\u0085\u00e9\u2028\u4e2d" + new String(new int[]{0x1f600}, 0, 1);
+        char[] c = new char[JsonWriterBase.BUFFER_SIZE - 64];
+        Arrays.fill(c, 'x');
+        String base = new String(c);
+        for (int i = 0; i < 64; i++) {
+            base += "y";
+            String s = base + mixed + mixed + base;
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            JsonWriter.on(bytes).value(s).done();
+            String chars = JsonWriter.string(s);
+            assertEquals(chars, new String(bytes.toByteArray(), UTF8));
+            assertEquals(s, JsonParser.any().from(chars).toString());
+        }
+        assertEquals("\"ab\\\"\\\\\\n<\\/\\u0001\\u0085\u00e9\\u2028\u4e2d\ud83d\ude00\"", JsonWriter.string(mixed));
+    }
+
     /**
      * Write progressively longer string + array to see if we can tickle a
      * boundary exception.
@@ -149,6 +180,256 @@ class JsonWriterTest {
                         .end().end().done());
     }
 
+    /**
+     * Pre-encoded keys write the same output as string keys, to every kind of sink.
+     */
+    @Test
+    void jsonKey() throws JsonParserException {
+        JsonKey a = JsonKey.of("a\n\u00e9");
+        JsonKey b = JsonKey.of("b");
+        assertEquals("{\"a\\n\u00e9\":1,\"b\":[true],\"c\":{\"b\":null}}", JsonWriter.string().object()
+                .value(a, 1).array(b).value(true).end().object("c").nul(b).end().end().done());
+        assertEquals("{\n  \"b\":2.5,\n  \"a\\n\u00e9\":\"x\"\n}", JsonWriter.indent("  ").string().object()
+                .value(b, 2.5).key(a).value("x").end().done());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonWriter.on(bytes).object().value(a, 1L).value(b, Arrays.asList(1, 2)).end().done();
+        assertEquals("{\"a\\n\u00e9\":1,\"b\":[1,2]}", new String(bytes.toByteArray(), UTF8));
+
+        JsonObject built = JsonObject.builder().value(a, 1).object(b).value(b, "c").end().done();
+        assertEquals(1, built.getInt("a\n\u00e9"));
+        assertEquals("c", built.getObject("b").getString("b"));
+
+        assertThrows(JsonWriterException.class, () -> JsonWriter.string().array().value(b, 1));
+        assertThrows(JsonWriterException.class, () -> JsonWriter.string().object().key(a).key(b));
+    }
+
+    /**
+     * Writers can be reset and reused for further documents, including after an abandoned one.
+     */
+    @Test
+    void reset() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonAppendableWriter writer = JsonWriter.on(bytes);
+        writer.object().value("a", 1).end().done();
+        assertEquals("{\"a\":1}", new String(bytes.toByteArray(), UTF8));
+
+        bytes.reset();
+        writer.reset(bytes).array().object().key("x");
+        writer.reset(bytes).array().value(2).end().done();
+        assertEquals("[2]", new String(bytes.toByteArray(), UTF8));
+
+        StringBuilder sb = new StringBuilder();
+        writer.reset(sb).value("b").done();
+        assertEquals("\"b\"", sb.toString());
+
+        JsonStringWriter string = JsonWriter.indent(" ").string();
+        assertEquals("{\n \"a\":1\n}", string.object().value("a", 1).end().done());
+        string.reset().array().array();
+        assertEquals("[]", string.reset().array().end().done());
+    }
+
+    /**
+     * The pooled string writer is reused on a thread, but never handed out twice while in use.
+     */
+    @Test
+    void pooledString() {
+        JsonStringWriter writer = JsonWriter.pooledString();
+        assertEquals("[1]", writer.array().value(1).end().done());
+        assertTrue(writer == JsonWriter.pooledString());
+
+        JsonStringWriter nested = JsonWriter.pooledString();
+        assertTrue(writer != nested);
+        assertEquals("[2]", nested.array().value(2).end().done());
+        assertEquals("[3]", writer.array().value(3).end().done());
+        assertTrue(nested == JsonWriter.pooledString());
+    }
+
+    /**
+     * Writing to a {@link java.nio.channels.WritableByteChannel}, with documents larger than the writer's buffer.
+     */
+    @Test
+    void channel() {
+        JsonArray array = new JsonArray();
+        for (int i = 0; i < 5000; i++)
+            array.add("\u00e9" + i);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonAppendableWriter writer = JsonWriter.on(Channels.newChannel(bytes));
+        writer.value(array).done();
+        assertEquals(JsonWriter.string(array), new String(bytes.toByteArray(), UTF8));
+
+        ByteArrayOutputStream again = new ByteArrayOutputStream();
+        writer.reset(Channels.newChannel(again)).object().value("a", 1).end().done();
+        assertEquals("{\"a\":1}", new String(again.toByteArray(), UTF8));
+    }
+
+    /**
+     * Writing into a {@link ByteBuffer}, growing it through the overflow callback.
+     */
+    @Test
+    void byteBuffer() {
+        ByteBuffer fixed = ByteBuffer.allocate(16);
+        JsonWriter.on(fixed).object().value("a", "\u00e9").end().done();
+        fixed.flip();
+        assertEquals("{\"a\":\"\u00e9\"}", UTF8.decode(fixed).toString());
+
+        assertThrows(JsonWriterException.class, () -> JsonWriter.on(ByteBuffer.allocate(4)).value("abcd").done());
+
+        ByteBuffer[] out = { ByteBuffer.allocate(10) };
+        JsonAppendableWriter writer = JsonWriter.on(out[0], full -> {
+            out[0] = ByteBuffer.allocate(full.capacity() * 2).put(full.flip());
+            return out[0];
+        });
+        JsonArray array = new JsonArray();
+        for (int i = 0; i < 5000; i++)
+            array.add("\u00e9" + i);
+        writer.value(array).done();
+        out[0].flip();
+        assertEquals(JsonWriter.string(array), UTF8.decode(out[0]).toString());
+
+        ByteBuffer reused = ByteBuffer.allocate(8);
+        writer.reset(reused, null).value(true).done();
+        reused.flip();
+        assertEquals("true", UTF8.decode(reused).toString());
+
+        // Heap buffers with room are encoded into in place, direct ones through the staging buffer, and both may
+        // overflow part way through a document
+        JsonArray large = new JsonArray();
+        for (int i = 0; i < 20000; i++)
+            large.add(i % 3 == 0 ? "\u00e9\"" + i : "\ud83d\ude00" + i);
+        String expected = JsonWriter.string(large);
+        ByteBuffer backing = ByteBuffer.allocate(1 << 16);
+        backing.position(100);
+        for (ByteBuffer start : new ByteBuffer[] { backing.slice(), ByteBuffer.allocateDirect(1 << 16) }) {
+            start.position(7);
+            ByteBuffer[] current = { start };
+            JsonWriter.on(start, full -> {
+                current[0] = ByteBuffer.allocate(full.capacity() * 2).put(full.flip());
+                return current[0];
+            }).value(large).done();
+            current[0].flip().position(7);
+            assertEquals(expected, UTF8.decode(current[0]).toString());
+            assertEquals(0, current[0].get(0));
+        }
+        ByteBuffer roomy = ByteBuffer.allocate(1 << 20);
+        JsonWriter.on(roomy, null).value(large).done();
+        assertEquals(expected.getBytes(UTF8).length, roomy.position());
+        assertThrows(JsonWriterException.class, () -> JsonWriter.on(ByteBuffer.allocate(1 << 16), null).value(large)
+                .done());
+    }
+
+    /**
+     * The string writer writes without a staging buffer, and must match the buffered {@link Appendable} writer for
+     * output that is Latin-1 at first and only later needs wider chars.
+     */
+    @Test
+    void stringWriterMatchesAppendable() {
+        JsonArray array = new JsonArray();
+        for (int i = 0; i < 3000; i++)
+            array.add("\u00e9\"" + i);
+        array.add("\u2603");
+        StringBuilder sb = new StringBuilder();
+        JsonWriter.on(sb).value(array).done();
+        assertEquals(sb.toString(), JsonWriter.string(array));
+        assertEquals("\u2603\\n", JsonWriter.escape("\u2603\n"));
+    }
+
+    /**
+     * Parallel array output is identical to sequential output for every kind of writer.
+     */
+    @Test
+    void parallelArray() {
+        JsonArray array = new JsonArray();
+        for (int i = 0; i < 50000; i++) {
+            if (i % 3 == 0)
+                array.add(i);
+            else if (i % 3 == 1)
+                array.add("\u00e9" + i);
+            else
+                array.add(JsonObject.builder().value("a", i).array("b").value(1.5).end().done());
+        }
+        JsonObject map = new JsonObject();
+        map.put("x", array);
+
+        assertEquals(JsonWriter.string(array), JsonWriter.string().parallelArray(array).done());
+        assertEquals(JsonWriter.string(map), JsonWriter.string().object().parallelArray("x", array).end().done());
+        assertEquals(JsonWriter.indent("  ").string().object(map).done(),
+                JsonWriter.indent("  ").string().object().parallelArray("x", array).end().done());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonWriter.on(bytes).parallelArray(array).done();
+        assertEquals(JsonWriter.string(array), new String(bytes.toByteArray(), UTF8));
+
+        assertEquals("[1,2]", JsonWriter.string().parallelArray(Arrays.asList(1, 2)).done());
+    }
+
+    /**
+     * Arrays can be written lazily from iterators and streams, flushing output before the source is exhausted.
+     */
+    @Test
+    void lazyArray() {
+        assertEquals("[1,2,3]", JsonWriter.string().array(Arrays.asList(1, 2, 3).iterator()).done());
+        assertEquals("{\"a\":[\"x\",\"y\"],\"b\":[0,1]}", JsonWriter.string().object()
+                .array("a", Stream.of("x", "y")).array("b", IntStream.range(0, 2).boxed().iterator()).end().done());
+        assertEquals(JsonArray.from(1, 2), JsonArray.builder().array(Stream.of(1, 2)).done().getArray(0));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Iterator<Integer> source = new Iterator<Integer>() {
+            private int i;
+
+            @Override
+            public boolean hasNext() {
+                return i < 100000;
+            }
+
+            @Override
+            public Integer next() {
+                if (i == 50000)
+                    assertTrue(bytes.size() > 0, "Output should be flushed while iterating");
+                return i++;
+            }
+        };
+        JsonWriter.on(bytes).array(source).done();
+        assertEquals(JsonWriter.string(IntStream.range(0, 100000).boxed().collect(Collectors.toList())),
+                new String(bytes.toByteArray(), UTF8));
+    }
+
+    /**
+     * Primitive arrays are written without boxing, with the same output as their boxed equivalents.
+     */
+    @Test
+    void primitiveArrays() {
+        int[] ints = { 1, -2, Integer.MIN_VALUE };
+        long[] longs = { Long.MAX_VALUE, 0 };
+        double[] doubles = { 1.5, -0.0, 1e-10 };
+        assertEquals("[1,-2,-2147483648]", JsonWriter.string().value(ints).done());
+        assertEquals("{\"a\":[9223372036854775807,0],\"b\":[1.5,-0.0,1.0E-10],\"c\":null,\"d\":[]}",
+                JsonWriter.string().object().value("a", longs).value("b", doubles).value("c", (int[]) null)
+                        .value("d", new double[0]).end().done());
+        assertEquals("[[1,-2,-2147483648],[0.5,2.0],[true,false],[\"x\"]]", JsonWriter.string(new Object[] { ints,
+                new float[] { 0.5f, 2f }, new boolean[] { true, false }, new String[] { "x" } }));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int[] large = new int[10000];
+        for (int i = 0; i < large.length; i++)
+            large[i] = i * 7919;
+        JsonWriter.on(bytes).object().value("x", large).end().done();
+        JsonObject expected = new JsonObject();
+        expected.put("x", Arrays.stream(large).boxed().collect(Collectors.toList()));
+        assertEquals(JsonWriter.string(expected), new String(bytes.toByteArray(), UTF8));
+
+        assertEquals(JsonArray.from(1, -2, Integer.MIN_VALUE), JsonArray.builder().value(ints).done().getArray(0));
+
+        double[] nonFinite = { 1.0, Double.NaN, Double.POSITIVE_INFINITY };
+        assertEquals("[1.0,null,null]", JsonWriter.string().value(nonFinite).done());
+        assertEquals("[null,1.0]", JsonWriter.string(new double[] { Double.NEGATIVE_INFINITY, 1.0 }));
+        assertEquals("{\"a\":[1.0,null,null]}", JsonWriter.string().object().value("a", nonFinite).end().done());
+        assertEquals("[null,0.5,null]", JsonWriter.string(new float[] { Float.NaN, 0.5f, Float.NEGATIVE_INFINITY }));
+        assertEquals(JsonWriter.string(new Object[] { 1.0, Double.NaN, Double.POSITIVE_INFINITY }),
+                JsonWriter.string(nonFinite));
+        assertEquals(JsonArray.from(1.0, null, null), JsonArray.builder().value(nonFinite).done().getArray(0));
+    }
+
     /**
      * Test escaping of chars < 256.
      */
@@ -346,6 +627,143 @@ class JsonWriterTest {
                         .getMessage());
     }
 
+    public enum Shape {
+        SQUARE, CIRCLE
+    }
+
+    public static final class Item {
+        public final String name;
+        public final Shape shape;
+        private final int count;
+
+        Item(String name, Shape shape, int count) {
+            this.name = name;
+            this.shape = shape;
+            this.count = count;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public boolean isEmpty() {
+            return count == 0;
+        }
+    }
+
+    /**
+     * Test writing beans through their public fields and getters.
+     */
+    @Test
+    void bean() {
+        assertEquals("{\"name\":\"a\",\"shape\":\"CIRCLE\",\"count\":2,\"empty\":false}",
+                JsonWriter.string(new Item("a", Shape.CIRCLE, 2)));
+        assertEquals("[{\"name\":null,\"shape\":null,\"count\":0,\"empty\":true}]",
+                JsonWriter.string(Collections.singletonList(new Item(null, null, 0))));
+        assertEquals("{\"x\":{\"name\":\"b\",\"shape\":\"SQUARE\",\"count\":1,\"empty\":false}}",
+                JsonWriter.string().object().value("x", new Item("b", Shape.SQUARE, 1)).end().done());
+        assertEquals("\"SQUARE\"", JsonWriter.string(Shape.SQUARE));
+    }
+
+    public static final class Node {
+        private Node next;
+
+        public Node getNext() {
+            return next;
+        }
+    }
+
+    /**
+     * JDK classes are not written as beans, and bean cycles and runaway nesting fail cleanly.
+     */
+    @Test
+    void beanLimits() {
+        for (Object o : new Object[] { new java.io.File("/tmp"), Thread.currentThread(), java.util.Optional.of(1),
+                java.time.Instant.ofEpochSecond(5), Stream.of(1), new Object() })
+            assertEquals("Unable to handle type: " + o.getClass(),
+                    assertThrows(JsonWriterException.class, () -> JsonWriter.string(o)).getMessage());
+
+        Node cycle = new Node();
+        cycle.next = new Node();
+        cycle.next.next = cycle;
+        assertThrows(JsonWriterException.class, () -> JsonWriter.string(cycle));
+
+        Node deep = new Node();
+        for (int i = 0; i < BeanSerializer.MAX_DEPTH; i++) {
+            Node n = new Node();
+            n.next = deep;
+            deep = n;
+        }
+        Node tooDeep = deep;
+        assertThrows(JsonWriterException.class, () -> JsonWriter.string(tooDeep));
+        Node fits = deep.next;
+        String written = JsonWriter.string(fits);
+        assertTrue(written.startsWith("{\"next\":{\"next\":"), written);
+    }
+
+    public interface Tagged {
+        String tag();
+    }
+
+    public static final class Money implements Tagged {
+        public final long cents;
+
+        Money(long cents) {
+            this.cents = cents;
+        }
+
+        @Override
+        public String tag() {
+            return "money";
+        }
+    }
+
+    public static final class Label implements Tagged {
+        @Override
+        public String tag() {
+            return "label";
+        }
+    }
+
+    /**
+     * Registered serializers replace the built-in handling, including for types that were already written.
+     */
+    @Test
+    void registeredSerializer() {
+        assertEquals("{\"cents\":150}", JsonWriter.string(new Money(150)));
+        JsonWriter.registerSerializer(Money.class, (sink, m) -> sink.value(m.cents / 100 + "." + m.cents % 100));
+        JsonWriter.registerSerializer(Tagged.class, (sink, t) -> sink.object().value("tag", t.tag()).end());
+        try {
+            assertEquals("\"1.50\"", JsonWriter.string(new Money(150)));
+            assertEquals("{\"a\":\"2.50\",\"b\":[{\"tag\":\"label\"}]}", JsonWriter.string().object()
+                    .value("a", new Money(250)).value("b", Collections.singletonList(new Label())).end().done());
+            assertEquals("{\"x\":{\"tag\":\"label\"}}", JsonWriter.indent("").string().object()
+                    .value("x", (Object) new Label()).end().done().replace("\n", ""));
+        } finally {
+            assertTrue(JsonWriter.unregisterSerializer(Money.class));
+            assertTrue(JsonWriter.unregisterSerializer(Tagged.class));
+        }
+        assertFalse(JsonWriter.unregisterSerializer(Money.class));
+        assertEquals("{\"cents\":150}", JsonWriter.string(new Money(150)));
+
+        for (Class<?> builtIn : new Class<?>[] { Object.class, Number.class, Comparable.class, CharSequence.class,
+            Iterable.class, Map.class, Serializable.class, String.class, Integer.class }) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> JsonWriter.registerSerializer(builtIn, (sink, o) -> sink.nul()), builtIn.getName());
+        }
+        assertEquals("[\"a\",1,{}]", JsonWriter.string(Arrays.asList("a", 1, new HashMap<>())));
+    }
+
+    /**
+     * Beans written by the writer can be bound back with {@link JsonBinder}.
+     */
+    @Test
+    void beanRoundTrip() throws JsonParserException {
+        Users users = JsonBinder.of(Users.class).from(getClass().getResourceAsStream("/users.json"));
+        String json = JsonWriter.string(users);
+        assertEquals(users, JsonBinder.of(Users.class).from(json));
+    }
+
     /**
      * Test an array of empty arrays.
      */
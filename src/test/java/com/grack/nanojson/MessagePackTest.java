@@ -0,0 +1,183 @@
+/*
+ * Copyright 2011 The nanojson Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.grack.nanojson;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link MessagePackWriter}, {@link MessagePackReader} and {@link MessagePackParser}.
+ */
+public class MessagePackTest {
+	// CHECKSTYLE_OFF: MagicNumber
+	// CHECKSTYLE_OFF: JavadocMethod
+
+	@Test
+	void encodings() throws JsonParserException {
+		assertEncodes("00", 0);
+		assertEncodes("7f", 127);
+		assertEncodes("cc80", 128);
+		assertEncodes("cd0100", 256);
+		assertEncodes("ce00010000", 65536);
+		assertEncodes("cf0000000100000000", 4294967296L);
+		assertEncodes("cfffffffffffffffff", new BigInteger("18446744073709551615"));
+		assertEncodes("ff", -1);
+		assertEncodes("e0", -32);
+		assertEncodes("d0df", -33);
+		assertEncodes("d1ff7f", -129);
+		assertEncodes("d2ffff7fff", -32769);
+		assertEncodes("d38000000000000000", Long.MIN_VALUE);
+		assertEncodes("ca3fc00000", 1.5f);
+		assertEncodes("cb3ff8000000000000", 1.5);
+		assertEncodes("cb3ff199999999999a", 1.1);
+		assertEncodes("c0", null);
+		assertEncodes("c3", true);
+		assertEncodes("a0", "");
+		assertEncodes("a3e29883", "\u2603");
+		assertEncodes("d920" + "61".repeat(32), "a".repeat(32));
+		assertEncodes("da0100" + "61".repeat(256), "a".repeat(256));
+		assertEncodes("920191a0", Arrays.asList(1, new String[] { "" }));
+		assertEncodes("dc0010" + "c2".repeat(16), new boolean[16]);
+		assertEncodes("81a16101", JsonObject.builder().value("a", 1).done());
+
+		assertEquals("AQI", MessagePackReader.from(hex("c4020102")).string());
+		assertEquals(-128, MessagePackReader.from(hex("d080")).intVal());
+		assertEquals(4294967295L, MessagePackReader.from(hex("ceffffffff")).longVal());
+	}
+
+	/**
+	 * Doubles, and the big numbers written as doubles, keep double precision; floats read back as floats.
+	 */
+	@Test
+	void floatingRoundTrip() throws JsonParserException {
+		double widened = 0.1f;
+		assertEquals(widened, MessagePackParser.any().from(MessagePackWriter.bytes(widened)));
+		assertEquals(0.1f, MessagePackParser.any().from(MessagePackWriter.bytes(0.1f)));
+		BigInteger big = new BigInteger("-18446744073709551616");
+		assertEquals(big.doubleValue(), MessagePackParser.any().from(MessagePackWriter.bytes(big)));
+		BigDecimal decimal = new BigDecimal("0.10000000149011612");
+		assertEquals(decimal.doubleValue(), MessagePackParser.any().from(MessagePackWriter.bytes(decimal)));
+	}
+
+	@Test
+	void streamingWriter() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		MessagePackWriter.on(out).object().value("a", 1).array("b").value(2).object().end().end().end().done();
+		assertEquals("df00000002a16101a162dd0000000202df00000000", hex(out.toByteArray()));
+
+		// Output is held back until the outermost size is known, then written in one go
+		out.reset();
+		MessagePackWriter writer = MessagePackWriter.on(out).array();
+		for (int i = 0; i < 100000; i++)
+			writer.value(i);
+		assertEquals(0, out.size());
+		writer.end().done();
+		byte[] bytes = out.toByteArray();
+		assertEquals("dd000186a0", hex(Arrays.copyOf(bytes, 5)));
+	}
+
+	@Test
+	void parser() throws JsonParserException {
+		String json = "{\"a\":[1,-2,2147483648,1.5,0.1,true,false,null],"
+				+ "\"b\":{\"\\u00e9\":\"\\u2603\\ud83d\\ude00\",\"c\":{},\"d\":[]},\"e\":\"\"}";
+		JsonObject parsed = JsonParser.object().from(json);
+		byte[] bytes = MessagePackWriter.bytes(parsed);
+		assertEquals(JsonWriter.string(parsed), JsonWriter.string(MessagePackParser.object().from(bytes)));
+		assertEquals(JsonWriter.string(parsed),
+				JsonWriter.string(MessagePackParser.any().from(new ByteArrayInputStream(bytes))));
+		assertEquals(2147483648L, MessagePackParser.object().from(bytes).getArray("a").get(2));
+
+		assertThrows(JsonParserException.class, () -> MessagePackParser.array().from(bytes));
+		assertThrows(JsonParserException.class, () -> MessagePackParser.object().from(Arrays.copyOf(bytes,
+				bytes.length + 1)));
+		assertThrows(JsonParserException.class, () -> MessagePackParser.object().from(Arrays.copyOf(bytes,
+				bytes.length - 1)));
+	}
+
+	@Test
+	void reader() throws JsonParserException {
+		byte[] bytes = MessagePackWriter.bytes(JsonParser.object()
+				.from("{\"skip\":{\"x\":[1,[\"long string to step over\"]]},\"n\":[1.25,7],\"last\":true}"));
+		MessagePackReader reader = MessagePackReader.from(bytes);
+		reader.object();
+		assertTrue(reader.next());
+		assertEquals("skip", reader.key());
+		assertTrue(reader.next());
+		assertEquals("n", reader.key());
+		reader.array();
+		assertTrue(reader.next());
+		assertEquals(1.25f, reader.floatVal());
+		assertTrue(reader.pop());
+		assertEquals("last", reader.key());
+		assertTrue(reader.bool());
+		assertFalse(reader.next());
+	}
+
+	@Test
+	void transferTo() throws JsonParserException {
+		String json = "{\"a\":[1,-2,2147483648,1.5,true,false,null],\"b\":{\"c\":{},\"d\":[\"\u2603\"]}}";
+		byte[] bytes = MessagePackWriter.bytes(JsonParser.object().from(json));
+		assertEquals(json, MessagePackReader.from(bytes).transferTo(JsonWriter.string()).done());
+		assertEquals("{\"b\":{\"d\":[\"\u2603\"]}}", MessagePackReader.from(bytes)
+				.transferTo(JsonWriter.string(), k -> k.equals("a") || k.equals("c") ? null : k).done());
+	}
+
+	@Test
+	void failures() {
+		assertThrows(JsonWriterException.class, () -> MessagePackWriter.on(new ByteArrayOutputStream()).array()
+				.value("a", 1));
+		assertThrows(JsonWriterException.class, () -> MessagePackWriter.on(new ByteArrayOutputStream()).object()
+				.done());
+		assertThrows(JsonParserException.class, () -> MessagePackReader.from(hex("c1")));
+		assertThrows(JsonParserException.class, () -> MessagePackReader.from(hex("d40100")));
+		assertThrows(JsonParserException.class, () -> MessagePackReader.from(hex("a2")));
+		assertThrows(JsonParserException.class, () -> MessagePackParser.object().from(hex("810102")));
+	}
+
+	private static void assertEncodes(String expected, Object value) throws JsonParserException {
+		byte[] bytes = MessagePackWriter.bytes(value);
+		assertEquals(expected, hex(bytes));
+		Object read = MessagePackParser.any().from(bytes);
+		if (value instanceof Number)
+			assertEquals(value.toString(), read.toString());
+		else if (value == null || value instanceof String || value instanceof Boolean)
+			assertEquals(value, read);
+	}
+
+	private static byte[] hex(String s) {
+		byte[] bytes = new byte[s.length() / 2];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = (byte) Integer.parseInt(s.substring(i * 2, i * 2 + 2), 16);
+		return bytes;
+	}
+
+	private static String hex(byte[] bytes) {
+		StringBuilder s = new StringBuilder();
+		for (byte b : bytes)
+			s.append(String.format("%02x", b));
+		return s.toString();
+	}
+}